@@ -0,0 +1,90 @@
+package com.example.benchmark.audit;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.example.common.audit.AuditFillContext;
+import com.example.common.config.MyMetaObjectHandler;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert fill of one statement with the given rows: the previous strict-fill handler against
+ * MyMetaObjectHandler, per row and with one audit snapshot per statement.
+ * <pre>
+ * mvn -Pbenchmark package -pl micro-service-benchmark -am
+ * java -jar micro-service-benchmark/target/benchmarks.jar AuditFillBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuditFillBenchmark {
+
+    @Param({"1", "100"})
+    private int rows;
+
+    private MybatisConfiguration configuration;
+
+    private MetaObjectHandler strictFill;
+
+    private MetaObjectHandler plannedFill;
+
+    @Setup
+    public void setup() {
+        configuration = new MybatisConfiguration();
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(configuration, "");
+        assistant.setCurrentNamespace(AuditedEntity.class.getName());
+        TableInfoHelper.initTableInfo(assistant, AuditedEntity.class);
+        strictFill = new StrictFillHandler();
+        plannedFill = new MyMetaObjectHandler();
+    }
+
+    @Benchmark
+    public void strictFill(Blackhole blackhole) {
+        fill(strictFill, blackhole);
+    }
+
+    @Benchmark
+    public void plannedFill(Blackhole blackhole) {
+        fill(plannedFill, blackhole);
+    }
+
+    @Benchmark
+    public void plannedFillPerStatement(Blackhole blackhole) {
+        try (AuditFillContext.Scope ignored = AuditFillContext.open()) {
+            fill(plannedFill, blackhole);
+        }
+    }
+
+    private void fill(MetaObjectHandler handler, Blackhole blackhole) {
+        for (int i = 0; i < rows; i++) {
+            AuditedEntity entity = new AuditedEntity();
+            handler.insertFill(configuration.newMetaObject(entity));
+            blackhole.consume(entity);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AuditFillBenchmark.class.getSimpleName()).build()).run();
+    }
+}
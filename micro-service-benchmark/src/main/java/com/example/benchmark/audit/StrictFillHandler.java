@@ -0,0 +1,31 @@
+package com.example.benchmark.audit;
+
+import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
+import org.apache.ibatis.reflection.MetaObject;
+
+import java.time.LocalDateTime;
+
+/**
+ * The strict-fill handler MyMetaObjectHandler replaced, kept as the baseline
+ */
+public class StrictFillHandler implements MetaObjectHandler {
+
+    @Override
+    public void insertFill(MetaObject metaObject) {
+        this.strictInsertFill(metaObject, "createTime", LocalDateTime.class, LocalDateTime.now());
+        this.strictInsertFill(metaObject, "updateTime", LocalDateTime.class, LocalDateTime.now());
+        this.strictInsertFill(metaObject, "createBy", String.class, getCurrentUsername());
+        this.strictInsertFill(metaObject, "updateBy", String.class, getCurrentUsername());
+        this.strictInsertFill(metaObject, "deleted", Integer.class, 0);
+    }
+
+    @Override
+    public void updateFill(MetaObject metaObject) {
+        this.strictUpdateFill(metaObject, "updateTime", LocalDateTime.class, LocalDateTime.now());
+        this.strictUpdateFill(metaObject, "updateBy", String.class, getCurrentUsername());
+    }
+
+    private String getCurrentUsername() {
+        return "system";
+    }
+}
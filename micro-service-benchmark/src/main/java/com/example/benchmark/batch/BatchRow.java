@@ -0,0 +1,18 @@
+package com.example.benchmark.batch;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+@Data
+@TableName("batch_row")
+public class BatchRow {
+
+    @TableId(type = IdType.INPUT)
+    private Long id;
+
+    private String name;
+
+    private Integer amount;
+}
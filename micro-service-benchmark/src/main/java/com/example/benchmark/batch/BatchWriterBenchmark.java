@@ -0,0 +1,134 @@
+package com.example.benchmark.batch;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.example.database.batch.BatchWriter;
+import com.example.database.config.MicroDatabaseProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert of the given rows on H2 in MySQL mode: one INSERT per row, as saveBatch sends without
+ * rewriteBatchedStatements, against the multi-row statements of BatchWriter. H2 runs in process,
+ * so the gap leaves out the network round trip each statement costs on a real database.
+ * <pre>
+ * mvn -Pbenchmark package -pl micro-service-benchmark -am
+ * java -jar micro-service-benchmark/target/benchmarks.jar BatchWriterBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchWriterBenchmark {
+
+    private static final String INSERT = "INSERT INTO batch_row (id, name, amount) VALUES (?, ?, ?)";
+
+    @Param({"100", "1000"})
+    private int rows;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private HikariDataSource dataSource;
+
+    private AnnotationConfigApplicationContext context;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private BatchWriter batchWriter;
+
+    private long nextId;
+
+    @Setup
+    public void setup() {
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(configuration, "");
+        assistant.setCurrentNamespace(BatchRow.class.getName());
+        TableInfoHelper.initTableInfo(assistant, BatchRow.class);
+
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:batch;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(Math.max(parallelism, 2));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS batch_row "
+                + "(id BIGINT PRIMARY KEY, name VARCHAR(64) NOT NULL, amount INT NOT NULL)");
+
+        MicroDatabaseProperties properties = new MicroDatabaseProperties();
+        properties.getBatch().setParallelism(parallelism);
+        // Several statements per call, so parallelism has chunks to spread
+        properties.getBatch().setBatchSize(Math.max(1, rows / 4));
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(DataSource.class, () -> dataSource);
+        context.registerBean(MicroDatabaseProperties.class, () -> properties);
+        context.registerBean(BatchWriter.class);
+        context.refresh();
+        batchWriter = context.getBean(BatchWriter.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE TABLE batch_row");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public int perRowInsert() {
+        int affected = 0;
+        for (BatchRow row : rows()) {
+            affected += jdbcTemplate.update(INSERT, row.getId(), row.getName(), row.getAmount());
+        }
+        return affected;
+    }
+
+    @Benchmark
+    public int batchWriterInsert() {
+        return batchWriter.insert(rows());
+    }
+
+    private List<BatchRow> rows() {
+        List<BatchRow> batch = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            BatchRow row = new BatchRow();
+            row.setId(++nextId);
+            row.setName("row-" + nextId);
+            row.setAmount(i);
+            batch.add(row);
+        }
+        return batch;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BatchWriterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
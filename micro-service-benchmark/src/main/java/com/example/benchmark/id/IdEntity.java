@@ -0,0 +1,15 @@
+package com.example.benchmark.id;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.example.common.entity.BaseEntity;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+@TableName("id_entity")
+public class IdEntity extends BaseEntity {
+    private static final long serialVersionUID = 1L;
+
+    private String name;
+}
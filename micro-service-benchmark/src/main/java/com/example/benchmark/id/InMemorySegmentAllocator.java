@@ -0,0 +1,26 @@
+package com.example.benchmark.id;
+
+import com.example.database.id.Segment;
+import com.example.database.id.SegmentAllocator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocator without storage, so the benchmark measures the generator and not the database
+ */
+public class InMemorySegmentAllocator implements SegmentAllocator {
+
+    private final AtomicLong next = new AtomicLong(1);
+
+    private final long step;
+
+    public InMemorySegmentAllocator(long step) {
+        this.step = step;
+    }
+
+    @Override
+    public Segment allocate(String tag) {
+        long start = next.getAndAdd(step);
+        return new Segment(start, start + step);
+    }
+}
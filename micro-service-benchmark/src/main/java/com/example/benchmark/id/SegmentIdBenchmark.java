@@ -0,0 +1,84 @@
+package com.example.benchmark.id;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.incrementer.DefaultIdentifierGenerator;
+import com.baomidou.mybatisplus.core.incrementer.IdentifierGenerator;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.example.database.id.SegmentIdGenerator;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Id of one insert from several threads: the default snowflake generator against SegmentIdGenerator
+ * over an in-memory allocator, so only the generators are measured.
+ * <pre>
+ * mvn -Pbenchmark package -pl micro-service-benchmark -am
+ * java -jar micro-service-benchmark/target/benchmarks.jar SegmentIdBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class SegmentIdBenchmark {
+
+    @Param({"1000", "100000"})
+    private long step;
+
+    private final IdEntity entity = new IdEntity();
+
+    private IdentifierGenerator snowflake;
+
+    private SegmentIdGenerator segment;
+
+    @Setup
+    public void setup() {
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(configuration, "");
+        assistant.setCurrentNamespace(IdEntity.class.getName());
+        TableInfoHelper.initTableInfo(assistant, IdEntity.class);
+        snowflake = DefaultIdentifierGenerator.getInstance();
+        segment = new SegmentIdGenerator(new InMemorySegmentAllocator(step),
+                Collections.singleton("id_entity"), 0.1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        segment.shutdown();
+    }
+
+    @Benchmark
+    public Number snowflake() {
+        return snowflake.nextId(entity);
+    }
+
+    @Benchmark
+    public Number segment() {
+        return segment.nextId(entity);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SegmentIdBenchmark.class.getSimpleName()).build()).run();
+    }
+}
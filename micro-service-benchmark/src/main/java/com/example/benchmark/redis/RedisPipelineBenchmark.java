@@ -0,0 +1,149 @@
+package com.example.benchmark.redis;
+
+import com.example.redis.cluster.SlotAwareExecutor;
+import com.example.redis.config.MicroRedisProperties;
+import com.example.redis.config.RedisConfig;
+import com.example.redis.metrics.RedisCommandMetrics;
+import com.example.redis.script.RedisScriptExecutor;
+import com.example.redis.util.RedisUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read and write of the given keys: one command and round trip per key against the pipelined
+ * batches of RedisUtil. Needs a Redis server, localhost:6379 unless -p redis=host:port is given.
+ * <pre>
+ * mvn -Pbenchmark package -pl micro-service-benchmark -am
+ * java -jar micro-service-benchmark/target/benchmarks.jar RedisPipelineBenchmark -p redis=localhost:6379
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisPipelineBenchmark {
+
+    private static final String PREFIX = "benchmark:pipeline:";
+
+    @Param({"localhost:6379"})
+    private String redis;
+
+    @Param({"10", "100", "1000"})
+    private int keys;
+
+    private AnnotationConfigApplicationContext context;
+
+    private RedisUtil redisUtil;
+
+    private List<String> keyList;
+
+    private Map<String, Object> values;
+
+    @Setup
+    public void setup() {
+        int colon = redis.lastIndexOf(':');
+        RedisStandaloneConfiguration server = new RedisStandaloneConfiguration(redis.substring(0, colon),
+                Integer.parseInt(redis.substring(colon + 1)));
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(RedisStandaloneConfiguration.class, () -> server);
+        context.register(BenchmarkRedisConfig.class, RedisScriptExecutor.class, SlotAwareExecutor.class,
+                RedisUtil.class);
+        context.refresh();
+        redisUtil = context.getBean(RedisUtil.class);
+
+        keyList = new ArrayList<>(keys);
+        values = new LinkedHashMap<>();
+        for (int i = 0; i < keys; i++) {
+            keyList.add(PREFIX + i);
+            values.put(PREFIX + i, "value-" + i);
+        }
+        redisUtil.mSet(values);
+    }
+
+    @TearDown
+    public void tearDown() {
+        redisUtil.delete(keyList);
+        context.close();
+    }
+
+    @Benchmark
+    public void perKeyGet(Blackhole blackhole) {
+        for (String key : keyList) {
+            blackhole.consume(redisUtil.get(key));
+        }
+    }
+
+    @Benchmark
+    public List<Object> pipelinedGet() {
+        return redisUtil.mGet(keyList);
+    }
+
+    @Benchmark
+    public void perKeySet() {
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            redisUtil.set(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Benchmark
+    public void pipelinedSet() {
+        redisUtil.mSet(values);
+    }
+
+    /**
+     * The template of RedisConfig on a plain Lettuce connection, without the caching setup
+     */
+    @Configuration(proxyBeanMethods = false)
+    static class BenchmarkRedisConfig {
+
+        @Bean
+        public LettuceConnectionFactory redisConnectionFactory(RedisStandaloneConfiguration server) {
+            return new LettuceConnectionFactory(server);
+        }
+
+        @Bean
+        public MicroRedisProperties microRedisProperties() {
+            return new MicroRedisProperties();
+        }
+
+        @Bean
+        public RedisTemplate<String, Object> redisTemplate(LettuceConnectionFactory connectionFactory,
+                                                           MicroRedisProperties properties,
+                                                           ObjectProvider<RedisCommandMetrics> commandMetrics) {
+            return new RedisConfig().redisTemplate(connectionFactory, properties, commandMetrics);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RedisPipelineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.common.audit;
+
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+/**
+ * Timestamp and user written into audit fields. Inside {@link #call(Supplier)} or an open
+ * {@link Scope} every row filled on the thread shares the snapshot taken for the first one, e.g.
+ * all rows of a batch insert. {@link AuditFillInterceptor} opens a scope per statement.
+ */
+public final class AuditFillContext {
+
+    private static final ThreadLocal<Boolean> SCOPED = new ThreadLocal<>();
+
+    private static final ThreadLocal<AuditFillContext> CURRENT = new ThreadLocal<>();
+
+    private final LocalDateTime time;
+
+    private final String username;
+
+    private AuditFillContext(LocalDateTime time, String username) {
+        this.time = time;
+        this.username = username;
+    }
+
+    /**
+     * Run action with one audit snapshot for all rows it fills
+     *
+     * @param action action inserting or updating rows
+     * @param <T>    result type
+     * @return action result
+     */
+    public static <T> T call(Supplier<T> action) {
+        try (Scope ignored = open()) {
+            return action.get();
+        }
+    }
+
+    /**
+     * Share one audit snapshot for all rows filled until the scope is closed
+     *
+     * @return scope, closing it does nothing when a scope was already open
+     */
+    public static Scope open() {
+        if (SCOPED.get() != null) {
+            return new Scope(false);
+        }
+        SCOPED.set(Boolean.TRUE);
+        return new Scope(true);
+    }
+
+    /**
+     * Snapshot of the current scope, or a new one outside a scope
+     *
+     * @param username user of a new snapshot
+     * @return audit snapshot
+     */
+    public static AuditFillContext current(Supplier<String> username) {
+        AuditFillContext current = CURRENT.get();
+        if (current != null) {
+            return current;
+        }
+        current = new AuditFillContext(LocalDateTime.now(), username.get());
+        if (SCOPED.get() != null) {
+            CURRENT.set(current);
+        }
+        return current;
+    }
+
+    public LocalDateTime getTime() {
+        return time;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Open audit scope of the current thread
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final boolean owner;
+
+        private Scope(boolean owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void close() {
+            if (owner) {
+                SCOPED.remove();
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.common.audit;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+/**
+ * Fills every row of one INSERT or UPDATE statement with the same audit snapshot, e.g. the rows
+ * of a multi-row insert. saveBatch sends a statement per row; wrap it in
+ * {@link AuditFillContext#call} to share one snapshot across the batch.
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class AuditFillInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        try (AuditFillContext.Scope ignored = AuditFillContext.open()) {
+            return invocation.proceed();
+        }
+    }
+}
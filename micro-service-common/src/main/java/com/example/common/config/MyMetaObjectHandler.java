@@ -1,31 +1,129 @@
 package com.example.common.config;
 
 import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.example.common.audit.AuditFillContext;
+import com.example.common.entity.BaseEntity;
 import org.apache.ibatis.reflection.MetaObject;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Fills audit fields. BaseEntity subclasses are filled through their setters, following a plan
+ * built once per class from the entity's fill annotations; other entities use strict fill.
+ * Empty fields only are filled, with one timestamp and user per statement, or per
+ * {@link AuditFillContext} scope.
+ */
 @Component
 public class MyMetaObjectHandler implements MetaObjectHandler {
 
+    private final ConcurrentMap<Class<?>, FillPlan> plans = new ConcurrentHashMap<>();
+
     @Override
     public void insertFill(MetaObject metaObject) {
-        this.strictInsertFill(metaObject, "createTime", LocalDateTime.class, LocalDateTime.now());
-        this.strictInsertFill(metaObject, "updateTime", LocalDateTime.class, LocalDateTime.now());
-        this.strictInsertFill(metaObject, "createBy", String.class, getCurrentUsername());
-        this.strictInsertFill(metaObject, "updateBy", String.class, getCurrentUsername());
+        AuditFillContext audit = AuditFillContext.current(this::getCurrentUsername);
+        Object original = metaObject.getOriginalObject();
+        if (original instanceof BaseEntity) {
+            BaseEntity entity = (BaseEntity) original;
+            FillPlan plan = plan(entity.getClass());
+            if (plan.createTime && entity.getCreateTime() == null) {
+                entity.setCreateTime(audit.getTime());
+            }
+            if (plan.insertUpdateTime && entity.getUpdateTime() == null) {
+                entity.setUpdateTime(audit.getTime());
+            }
+            if (plan.createBy && entity.getCreateBy() == null) {
+                entity.setCreateBy(audit.getUsername());
+            }
+            if (plan.insertUpdateBy && entity.getUpdateBy() == null) {
+                entity.setUpdateBy(audit.getUsername());
+            }
+            if (plan.deleted && entity.getDeleted() == null) {
+                entity.setDeleted(0);
+            }
+            return;
+        }
+        this.strictInsertFill(metaObject, "createTime", LocalDateTime.class, audit.getTime());
+        this.strictInsertFill(metaObject, "updateTime", LocalDateTime.class, audit.getTime());
+        this.strictInsertFill(metaObject, "createBy", String.class, audit.getUsername());
+        this.strictInsertFill(metaObject, "updateBy", String.class, audit.getUsername());
         this.strictInsertFill(metaObject, "deleted", Integer.class, 0);
     }
 
     @Override
     public void updateFill(MetaObject metaObject) {
-        this.strictUpdateFill(metaObject, "updateTime", LocalDateTime.class, LocalDateTime.now());
-        this.strictUpdateFill(metaObject, "updateBy", String.class, getCurrentUsername());
+        AuditFillContext audit = AuditFillContext.current(this::getCurrentUsername);
+        Object original = metaObject.getOriginalObject();
+        if (original instanceof BaseEntity) {
+            BaseEntity entity = (BaseEntity) original;
+            FillPlan plan = plan(entity.getClass());
+            if (plan.updateUpdateTime && entity.getUpdateTime() == null) {
+                entity.setUpdateTime(audit.getTime());
+            }
+            if (plan.updateUpdateBy && entity.getUpdateBy() == null) {
+                entity.setUpdateBy(audit.getUsername());
+            }
+            return;
+        }
+        this.strictUpdateFill(metaObject, "updateTime", LocalDateTime.class, audit.getTime());
+        this.strictUpdateFill(metaObject, "updateBy", String.class, audit.getUsername());
     }
 
     private String getCurrentUsername() {
         // TODO: 实现获取当前登录用户的逻辑
         return "system";
     }
-} 
\ No newline at end of file
+
+    private FillPlan plan(Class<?> entityType) {
+        return plans.computeIfAbsent(entityType, type -> new FillPlan(TableInfoHelper.getTableInfo(type)));
+    }
+
+    /**
+     * Audit fields a class fills on insert and update, same as strict fill would
+     */
+    private static final class FillPlan {
+        private boolean createTime;
+        private boolean insertUpdateTime;
+        private boolean createBy;
+        private boolean insertUpdateBy;
+        private boolean deleted;
+        private boolean updateUpdateTime;
+        private boolean updateUpdateBy;
+
+        private FillPlan(TableInfo tableInfo) {
+            if (tableInfo == null) {
+                return;
+            }
+            for (TableFieldInfo field : tableInfo.getFieldList()) {
+                boolean insert = tableInfo.isWithInsertFill() && field.isWithInsertFill();
+                boolean update = tableInfo.isWithUpdateFill() && field.isWithUpdateFill();
+                switch (field.getProperty()) {
+                    case "createTime":
+                        createTime = insert;
+                        break;
+                    case "updateTime":
+                        insertUpdateTime = insert;
+                        updateUpdateTime = update;
+                        break;
+                    case "createBy":
+                        createBy = insert;
+                        break;
+                    case "updateBy":
+                        insertUpdateBy = insert;
+                        updateUpdateBy = update;
+                        break;
+                    case "deleted":
+                        deleted = insert;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+}
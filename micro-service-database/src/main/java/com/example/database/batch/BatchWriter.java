@@ -0,0 +1,391 @@
+package com.example.database.batch;
+
+import com.baomidou.dynamic.datasource.toolkit.DynamicDataSourceContextHolder;
+import com.baomidou.mybatisplus.annotation.FieldFill;
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
+import com.baomidou.mybatisplus.core.incrementer.IdentifierGenerator;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.core.toolkit.GlobalConfigUtils;
+import com.example.common.audit.AuditFillContext;
+import com.example.database.cache.QueryCacheInterceptor;
+import com.example.database.config.MicroDatabaseProperties;
+import com.example.database.routing.ReadWriteContext;
+import com.example.database.shard.Shard;
+import com.example.database.shard.ShardRouter;
+import com.example.database.shard.ShardingRule;
+import com.example.database.tenant.TenantContext;
+import com.example.database.tenant.TenantRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes entities as multi-row INSERT and INSERT ... ON DUPLICATE KEY UPDATE statements, instead of
+ * the one INSERT per row that saveBatch sends without rewriteBatchedStatements.
+ * <p>
+ * Rows are chunked by batch-size and max-parameters. Ids are assigned and the MetaObjectHandler
+ * fills each row as on a MyBatis-Plus insert. Null columns are written as DEFAULT, so database
+ * defaults apply like with a single insert. On upsert null properties leave the existing column
+ * untouched, like updateById does; rows are grouped by which update columns they set.
+ * <p>
+ * Outside a transaction chunks are written in parallel on separate connections, and a failure
+ * leaves the chunks written so far in place. Inside a transaction chunks run on its connection.
+ * <p>
+ * Rows of sharded tables are grouped by shard first and each chunk goes to its shard's datasource
+ * and table, so shards are written in parallel. Spring transactions are bound to one connection:
+ * inside one, rows of a shard on another datasource fail the write before anything is written.
+ * Use @DSTransactional for atomic writes across shards.
+ * <p>
+ * Parallel chunks run as the caller's tenant, and table names are qualified with its schema since
+ * the statements bypass MyBatis.
+ */
+@Component
+public class BatchWriter {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MicroDatabaseProperties databaseProperties;
+
+    @Autowired(required = false)
+    private QueryCacheInterceptor queryCacheInterceptor;
+
+    @Autowired(required = false)
+    private ShardRouter shardRouter;
+
+    @Autowired(required = false)
+    private TenantRouter tenantRouter;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("db-batch-writer-");
+        threadFactory.setDaemon(true);
+        executor = Executors.newFixedThreadPool(Math.max(1, databaseProperties.getBatch().getParallelism()),
+                threadFactory);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * Insert entities with multi-row INSERT statements
+     *
+     * @param entities entities of one class
+     * @param <T>      entity type
+     * @return affected rows
+     */
+    public <T> int insert(Collection<T> entities) {
+        return write(entities, false, null);
+    }
+
+    /**
+     * Insert entities, updating rows whose primary or unique key already exists
+     *
+     * @param entities entities of one class
+     * @param <T>      entity type
+     * @return affected rows, MySQL counts an updated row twice
+     */
+    public <T> int upsert(Collection<T> entities) {
+        return write(entities, true, null);
+    }
+
+    /**
+     * Insert entities, updating only the given properties of rows whose key already exists
+     *
+     * @param entities         entities of one class
+     * @param updateProperties entity properties overwritten on duplicate key when not null
+     * @param <T>              entity type
+     * @return affected rows, MySQL counts an updated row twice
+     */
+    public <T> int upsert(Collection<T> entities, String... updateProperties) {
+        return write(entities, true, new HashSet<>(Arrays.asList(updateProperties)));
+    }
+
+    private <T> int write(Collection<T> entities, boolean upsert, Set<String> updateProperties) {
+        if (entities == null || entities.isEmpty()) {
+            return 0;
+        }
+        List<T> rows = new ArrayList<>(entities);
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(rows.get(0).getClass());
+        if (tableInfo == null) {
+            throw new IllegalArgumentException("Not a MyBatis-Plus entity: " + rows.get(0).getClass().getName());
+        }
+        List<String> properties = new ArrayList<>();
+        List<String> columns = new ArrayList<>();
+        if (tableInfo.havePK()) {
+            properties.add(tableInfo.getKeyProperty());
+            columns.add(tableInfo.getKeyColumn());
+        }
+        List<TableFieldInfo> updateFields = new ArrayList<>();
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            properties.add(field.getProperty());
+            columns.add(field.getColumn());
+            boolean update = updateProperties == null
+                    ? field.getFieldFill() != FieldFill.INSERT
+                    : updateProperties.contains(field.getProperty());
+            if (update) {
+                updateFields.add(field);
+            }
+        }
+
+        MicroDatabaseProperties.Batch batch = databaseProperties.getBatch();
+        int chunkSize = Math.max(1, Math.min(batch.getBatchSize(), batch.getMaxParameters() / columns.size()));
+        // Fill on the caller thread, handlers may read the current user from thread-local state,
+        // all rows share one audit timestamp and user
+        AuditFillContext.call(() -> {
+            fill(tableInfo, rows);
+            return null;
+        });
+
+        // Group by shard once ids and fill values are set, the sharding key may be one of them
+        Map<Shard, List<T>> rowsByShard = new LinkedHashMap<>();
+        ShardingRule rule = shardRouter != null ? shardRouter.rule(tableInfo.getTableName()) : null;
+        if (rule == null) {
+            // Unsharded tables stay on the caller's datasource
+            rowsByShard.put(new Shard(tableInfo.getTableName(), null, tableInfo.getTableName()), rows);
+        } else {
+            for (T row : rows) {
+                Object key = rule.keyOf(tableInfo, row);
+                if (key == null) {
+                    throw new IllegalArgumentException("No sharding key " + rule.getColumn() + " on " + row);
+                }
+                rowsByShard.computeIfAbsent(rule.route(key), shard -> new ArrayList<>()).add(row);
+            }
+        }
+        List<Chunk<T>> chunks = new ArrayList<>();
+        for (Map.Entry<Shard, List<T>> entry : rowsByShard.entrySet()) {
+            Collection<List<T>> groups = upsert ? groupByUpdates(tableInfo, entry.getValue(), updateFields)
+                    : Collections.singletonList(entry.getValue());
+            for (List<T> group : groups) {
+                List<String> updateColumns = upsert ? updateColumns(tableInfo, group.get(0), updateFields) : null;
+                for (int from = 0; from < group.size(); from += chunkSize) {
+                    int to = Math.min(from + chunkSize, group.size());
+                    chunks.add(new Chunk<>(entry.getKey(), group.subList(from, to), updateColumns));
+                }
+            }
+        }
+        ReadWriteContext.markWrite();
+        try {
+            return writeChunks(tableInfo, chunks, properties, columns,
+                    tenantRouter == null ? null : tenantRouter.currentTenant());
+        } finally {
+            // After the rows are written, even partly, so no reader caches the old state again
+            if (queryCacheInterceptor != null) {
+                queryCacheInterceptor.invalidate(Collections.singletonList(tableInfo.getTableName()));
+            }
+        }
+    }
+
+    private <T> int writeChunks(TableInfo tableInfo, List<Chunk<T>> chunks, List<String> properties,
+                                List<String> columns, String tenant) {
+        MicroDatabaseProperties.Batch batch = databaseProperties.getBatch();
+        if (chunks.size() == 1 || batch.getParallelism() <= 1
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (Chunk<T> chunk : chunks) {
+                if (chunk.shard.getDatasource() != null) {
+                    shardRouter.checkTransaction(chunk.shard);
+                }
+            }
+            int affected = 0;
+            for (Chunk<T> chunk : chunks) {
+                affected += writeChunk(tableInfo, chunk, chunk.shard.getDatasource(), properties, columns, tenant);
+            }
+            return affected;
+        }
+
+        // Workers start with an empty datasource stack, no tenant and no last write, carry over the caller's
+        String callerDs = DynamicDataSourceContextHolder.peek();
+        Long lastWrite = ReadWriteContext.get();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(chunks.size());
+        for (Chunk<T> chunk : chunks) {
+            String ds = chunk.shard.getDatasource() != null ? chunk.shard.getDatasource() : callerDs;
+            futures.add(CompletableFuture.supplyAsync(() -> ReadWriteContext.call(lastWrite, () -> tenant == null
+                    ? writeChunk(tableInfo, chunk, ds, properties, columns, null)
+                    : TenantContext.call(tenant, () -> writeChunk(tableInfo, chunk, ds, properties, columns, tenant))),
+                    executor));
+        }
+        int affected = 0;
+        try {
+            for (CompletableFuture<Integer> future : futures) {
+                affected += future.join();
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return affected;
+    }
+
+    private <T> int writeChunk(TableInfo tableInfo, Chunk<T> chunk, String ds, List<String> properties,
+                               List<String> columns, String tenant) {
+        if (ds == null) {
+            return writeChunk(tableInfo, chunk, properties, columns, tenant);
+        }
+        DynamicDataSourceContextHolder.push(ds);
+        try {
+            return writeChunk(tableInfo, chunk, properties, columns, tenant);
+        } finally {
+            DynamicDataSourceContextHolder.poll();
+        }
+    }
+
+    private <T> int writeChunk(TableInfo tableInfo, Chunk<T> chunk, List<String> properties, List<String> columns,
+                               String tenant) {
+        List<T> rows = chunk.rows;
+        String table = tenantRouter == null
+                ? chunk.shard.getTable()
+                : tenantRouter.qualify(tenant, chunk.shard.getTable());
+        StringBuilder sql = new StringBuilder(64 + rows.size() * columns.size() * 3)
+                .append("INSERT INTO ").append(table)
+                .append(" (").append(String.join(", ", columns)).append(") VALUES ");
+        List<Object> args = new ArrayList<>(rows.size() * columns.size());
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "(" : ", (");
+            for (int j = 0; j < properties.size(); j++) {
+                Object value = tableInfo.getPropertyValue(rows.get(i), properties.get(j));
+                if (j > 0) {
+                    sql.append(", ");
+                }
+                if (value == null) {
+                    sql.append("DEFAULT");
+                } else {
+                    sql.append('?');
+                    args.add(value);
+                }
+            }
+            sql.append(')');
+        }
+        List<String> updateColumns = chunk.updateColumns;
+        if (updateColumns != null) {
+            sql.append(" ON DUPLICATE KEY UPDATE ");
+            if (updateColumns.isEmpty()) {
+                // Nothing to overwrite, keep the existing row
+                sql.append(columns.get(0)).append(" = ").append(columns.get(0));
+            }
+            for (int i = 0; i < updateColumns.size(); i++) {
+                String column = updateColumns.get(i);
+                sql.append(i == 0 ? "" : ", ").append(column).append(" = VALUES(").append(column).append(')');
+            }
+        }
+        return jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    /**
+     * Group rows by which update columns are null, so each statement only overwrites set columns
+     */
+    private static <T> Collection<List<T>> groupByUpdates(TableInfo tableInfo, List<T> rows,
+                                                          List<TableFieldInfo> updateFields) {
+        Map<BitSet, List<T>> groups = new LinkedHashMap<>();
+        for (T row : rows) {
+            BitSet set = new BitSet(updateFields.size());
+            for (int i = 0; i < updateFields.size(); i++) {
+                if (tableInfo.getPropertyValue(row, updateFields.get(i).getProperty()) != null) {
+                    set.set(i);
+                }
+            }
+            groups.computeIfAbsent(set, k -> new ArrayList<>()).add(row);
+        }
+        return groups.values();
+    }
+
+    private static List<String> updateColumns(TableInfo tableInfo, Object row, List<TableFieldInfo> updateFields) {
+        List<String> updateColumns = new ArrayList<>(updateFields.size());
+        for (TableFieldInfo field : updateFields) {
+            if (tableInfo.getPropertyValue(row, field.getProperty()) != null) {
+                updateColumns.add(field.getColumn());
+            }
+        }
+        return updateColumns;
+    }
+
+    /**
+     * Assign missing ids and run insert fill on every row
+     */
+    private <T> void fill(TableInfo tableInfo, List<T> rows) {
+        IdType idType = tableInfo.getIdType();
+        if (tableInfo.havePK() && (idType == IdType.ASSIGN_ID || idType == IdType.ASSIGN_UUID)) {
+            IdentifierGenerator generator = GlobalConfigUtils.getGlobalConfig(tableInfo.getConfiguration())
+                    .getIdentifierGenerator();
+            String keyProperty = tableInfo.getKeyProperty();
+            for (T entity : rows) {
+                if (tableInfo.getPropertyValue(entity, keyProperty) == null) {
+                    Object id = idType == IdType.ASSIGN_UUID ? generator.nextUUID(entity)
+                            : toKeyType(generator.nextId(entity), tableInfo.getKeyType());
+                    tableInfo.setPropertyValue(entity, keyProperty, id);
+                }
+            }
+        }
+
+        MetaObjectHandler handler = GlobalConfigUtils.getMetaObjectHandler(tableInfo.getConfiguration()).orElse(null);
+        if (handler == null || !tableInfo.isWithInsertFill()) {
+            return;
+        }
+        for (T entity : rows) {
+            handler.insertFill(tableInfo.getConfiguration().newMetaObject(entity));
+        }
+    }
+
+    /**
+     * Rows written by one statement, with the datasource and table they go to
+     */
+    private static final class Chunk<T> {
+        private final Shard shard;
+        private final List<T> rows;
+        /**
+         * Columns overwritten on duplicate key, null for a plain insert
+         */
+        private final List<String> updateColumns;
+
+        private Chunk(Shard shard, List<T> rows, List<String> updateColumns) {
+            this.shard = shard;
+            this.rows = rows;
+            this.updateColumns = updateColumns;
+        }
+    }
+
+    private static Object toKeyType(Number id, Class<?> keyType) {
+        if (keyType == Long.class || keyType == long.class) {
+            return id.longValue();
+        }
+        if (keyType == Integer.class || keyType == int.class) {
+            return id.intValue();
+        }
+        if (keyType == String.class) {
+            return id.toString();
+        }
+        return id;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.database.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Cache SELECT results of a mapper method, or of every SELECT of a mapper when put on the interface.
+ * Results are dropped when a write to any table the query reads commits.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface CachedQuery {
+
+    /**
+     * Time to live in seconds, 0 for micro.service.database.query-cache.ttl
+     */
+    long ttl() default 0;
+}
@@ -0,0 +1,76 @@
+package com.example.database.cache;
+
+import com.example.database.config.MicroDatabaseProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Results and table generations held in this process only, writes on other nodes are not seen
+ */
+public class LocalQueryCacheStore implements QueryCacheStore {
+
+    private final Cache<String, Entry> results;
+
+    protected final ConcurrentMap<String, Long> generations = new ConcurrentHashMap<>();
+
+    public LocalQueryCacheStore(MicroDatabaseProperties.QueryCache properties) {
+        this.results = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public Object get(String key, Duration ttl) {
+        Entry entry = results.getIfPresent(key);
+        return entry == null ? null : entry.value;
+    }
+
+    @Override
+    public void put(String key, Object value, Duration ttl) {
+        results.put(key, new Entry(value, ttl.toNanos()));
+    }
+
+    @Override
+    public long generation(String table) {
+        return generations.getOrDefault(table, 0L);
+    }
+
+    @Override
+    public void invalidate(Collection<String> tables) {
+        for (String table : tables) {
+            generations.merge(table, 1L, Long::sum);
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long ttlNanos;
+
+        private Entry(Object value, long ttlNanos) {
+            this.value = value;
+            this.ttlNanos = ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.database.cache;
+
+import com.baomidou.mybatisplus.core.toolkit.ParameterUtils;
+import com.example.database.shard.ShardingContext;
+import com.example.database.tenant.TenantRouter;
+import com.example.database.util.SqlKeyUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches results of SELECTs on {@link CachedQuery} mappers, keyed by statement, normalized SQL,
+ * parameters, shard routing, tenant scope and the generations of the tables the SQL reads.
+ * INSERT/UPDATE/DELETE through MyBatis bump the generations of the tables they write once the
+ * transaction commits, or right away outside transactions. Generations are read before the query
+ * runs, so a result computed while a write commits is stored under the old generation and never
+ * served.
+ * <p>
+ * Tenants with a datasource or schema of their own get their own keys and generations, so a
+ * tenant neither reads another's results nor evicts them.
+ * <p>
+ * Paged queries, queries with RowBounds or a ResultHandler, and queries inside read-write
+ * transactions are not cached. Cached entities are shared between callers, don't modify them.
+ * Writes outside MyBatis must call {@link #invalidate(Collection)} as the tenant that wrote.
+ */
+@Slf4j
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+public class QueryCacheInterceptor implements Interceptor {
+
+    /**
+     * Generation bumped by writes whose tables can't be determined, part of every key
+     */
+    private static final String ALL_TABLES = "*";
+
+    private final QueryCacheStore store;
+    private final Duration defaultTtl;
+    private final TenantRouter tenantRouter;
+
+    private final Cache<String, List<String>> tablesBySql = Caffeine.newBuilder().maximumSize(10000).build();
+    private final ConcurrentMap<String, Optional<Duration>> ttlByStatement = new ConcurrentHashMap<>();
+
+    public QueryCacheInterceptor(QueryCacheStore store, Duration defaultTtl, TenantRouter tenantRouter) {
+        this.store = store;
+        this.defaultTtl = defaultTtl;
+        this.tenantRouter = tenantRouter;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        SqlCommandType type = ms.getSqlCommandType();
+        if (type == SqlCommandType.SELECT) {
+            return query(invocation, ms);
+        }
+        Object result = invocation.proceed();
+        if (type == SqlCommandType.INSERT || type == SqlCommandType.UPDATE || type == SqlCommandType.DELETE) {
+            List<String> tables = tables(ms.getBoundSql(invocation.getArgs()[1]).getSql());
+            invalidate(tables.isEmpty() ? Collections.singletonList(ALL_TABLES) : tables);
+        }
+        return result;
+    }
+
+    /**
+     * Drop the current tenant's cached results over tables once the current transaction commits,
+     * or now without one
+     *
+     * @param tables table names
+     */
+    public void invalidate(Collection<String> tables) {
+        String scope = scope();
+        Set<String> names = new LinkedHashSet<>();
+        for (String table : tables) {
+            names.add(scoped(scope, table.toLowerCase(Locale.ROOT)));
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            store.invalidate(names);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> pending = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<String> written = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, written);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(QueryCacheInterceptor.this);
+                    if (status == STATUS_COMMITTED) {
+                        store.invalidate(written);
+                    }
+                }
+            });
+            pending = written;
+        }
+        pending.addAll(names);
+    }
+
+    private Object query(Invocation invocation, MappedStatement ms) throws Throwable {
+        Object[] args = invocation.getArgs();
+        Duration ttl = ttl(ms);
+        if (ttl == null
+                || args[2] != RowBounds.DEFAULT
+                || args[3] != Executor.NO_RESULT_HANDLER
+                || ParameterUtils.findPage(args[1]).isPresent()
+                || (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly())) {
+            return invocation.proceed();
+        }
+        BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : ms.getBoundSql(args[1]);
+        List<String> tables = tables(boundSql.getSql());
+        if (tables.isEmpty()) {
+            return invocation.proceed();
+        }
+
+        String scope = scope();
+        String routing = ShardingContext.routing();
+        if (scope != null) {
+            routing = (routing == null ? "" : routing + " ") + "tenant=" + scope;
+        }
+        StringBuilder key = new StringBuilder(SqlKeyUtil.sha256(SqlKeyUtil.key(ms, boundSql, routing)))
+                .append(':').append(store.generation(scoped(scope, ALL_TABLES)));
+        for (String table : tables) {
+            key.append(':').append(store.generation(scoped(scope, table)));
+        }
+        Object cached = store.get(key.toString(), ttl);
+        if (cached instanceof List) {
+            return new ArrayList<>((List<?>) cached);
+        }
+        Object result = invocation.proceed();
+        if (result instanceof List) {
+            store.put(key.toString(), new ArrayList<>((List<?>) result), ttl);
+        }
+        return result;
+    }
+
+    /**
+     * Datasource and schema of the current tenant, null when it shares the tenantless tables
+     */
+    private String scope() {
+        return tenantRouter == null ? null : tenantRouter.scope();
+    }
+
+    /**
+     * Generation name of a table within a tenant scope
+     */
+    private static String scoped(String scope, String table) {
+        return scope == null ? table : scope + ":" + table;
+    }
+
+    /**
+     * Tables referenced by sql, lower case without schema or quotes, empty if it can't be parsed
+     */
+    private List<String> tables(String sql) {
+        return tablesBySql.get(sql, k -> {
+            try {
+                Set<String> tables = new LinkedHashSet<>();
+                for (String name : new TablesNamesFinder().getTableList(CCJSqlParserUtil.parse(k))) {
+                    String table = name.substring(name.lastIndexOf('.') + 1).replace("`", "").replace("\"", "");
+                    tables.add(table.toLowerCase(Locale.ROOT));
+                }
+                List<String> sorted = new ArrayList<>(tables);
+                Collections.sort(sorted);
+                return sorted;
+            } catch (Exception e) {
+                log.debug("Query cache can't parse tables of: {}", k, e);
+                return Collections.emptyList();
+            }
+        });
+    }
+
+    /**
+     * TTL from @CachedQuery on the mapper method or interface, null when the statement isn't cached
+     */
+    private Duration ttl(MappedStatement ms) {
+        return ttlByStatement.computeIfAbsent(ms.getId(), id -> {
+            int dot = id.lastIndexOf('.');
+            if (dot < 0) {
+                return Optional.empty();
+            }
+            Class<?> mapperType;
+            try {
+                mapperType = ClassUtils.forName(id.substring(0, dot), ClassUtils.getDefaultClassLoader());
+            } catch (ClassNotFoundException | LinkageError e) {
+                return Optional.empty();
+            }
+            CachedQuery annotation = null;
+            String methodName = id.substring(dot + 1);
+            for (Method method : mapperType.getMethods()) {
+                if (method.getName().equals(methodName) && method.isAnnotationPresent(CachedQuery.class)) {
+                    annotation = method.getAnnotation(CachedQuery.class);
+                    break;
+                }
+            }
+            if (annotation == null) {
+                annotation = mapperType.getAnnotation(CachedQuery.class);
+            }
+            if (annotation == null) {
+                return Optional.empty();
+            }
+            return Optional.of(annotation.ttl() > 0 ? Duration.ofSeconds(annotation.ttl()) : defaultTtl);
+        }).orElse(null);
+    }
+}
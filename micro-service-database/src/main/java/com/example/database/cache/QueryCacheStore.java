@@ -0,0 +1,50 @@
+package com.example.database.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Storage of cached results and per-table generations. Result keys embed the generations of the
+ * tables they read, so bumping a generation makes every result over that table unreachable.
+ */
+public interface QueryCacheStore {
+
+    /**
+     * Cached result
+     *
+     * @param key result key
+     * @param ttl time to live of the result if it is copied into a nearer cache
+     * @return result, or null if absent
+     */
+    Object get(String key, Duration ttl);
+
+    /**
+     * Cache a result
+     *
+     * @param key   result key
+     * @param value result
+     * @param ttl   time to live
+     */
+    void put(String key, Object value, Duration ttl);
+
+    /**
+     * Current generation of a table
+     *
+     * @param table table name
+     * @return generation
+     */
+    long generation(String table);
+
+    /**
+     * Bump the generation of tables
+     *
+     * @param tables table names
+     */
+    void invalidate(Collection<String> tables);
+
+    default void start() {
+    }
+
+    default void shutdown() {
+    }
+}
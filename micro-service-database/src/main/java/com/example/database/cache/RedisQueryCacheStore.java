@@ -0,0 +1,135 @@
+package com.example.database.cache;
+
+import com.example.database.config.MicroDatabaseProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Local results in front of results shared through Redis. Table generations are Redis counters:
+ * a committed write increments them and broadcasts the new value, and every node raises its local
+ * copy, so results over that table stop matching everywhere. A lost broadcast leaves a node serving
+ * results for at most their TTL.
+ */
+@Slf4j
+public class RedisQueryCacheStore extends LocalQueryCacheStore implements MessageListener {
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final String resultPrefix;
+    private final String generationPrefix;
+    private final String channel;
+
+    private RedisMessageListenerContainer listenerContainer;
+
+    public RedisQueryCacheStore(RedisTemplate<String, Object> redisTemplate, MicroDatabaseProperties.QueryCache properties) {
+        super(properties);
+        this.redisTemplate = redisTemplate;
+        this.resultPrefix = properties.getKeyPrefix() + "result:";
+        this.generationPrefix = properties.getKeyPrefix() + "generation:";
+        this.channel = properties.getChannel();
+    }
+
+    @Override
+    public void start() {
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redisTemplate.getRequiredConnectionFactory());
+        listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @Override
+    public void shutdown() {
+        if (listenerContainer != null) {
+            try {
+                listenerContainer.destroy();
+            } catch (Exception e) {
+                log.warn("Failed to stop query cache listener", e);
+            }
+        }
+    }
+
+    @Override
+    public Object get(String key, Duration ttl) {
+        Object value = super.get(key, ttl);
+        if (value != null) {
+            return value;
+        }
+        try {
+            value = redisTemplate.opsForValue().get(resultPrefix + key);
+        } catch (Exception e) {
+            log.warn("Failed to read cached query result", e);
+            return null;
+        }
+        if (value != null) {
+            super.put(key, value, ttl);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(String key, Object value, Duration ttl) {
+        super.put(key, value, ttl);
+        try {
+            redisTemplate.opsForValue().set(resultPrefix + key, value, ttl);
+        } catch (Exception e) {
+            log.warn("Failed to share cached query result", e);
+        }
+    }
+
+    @Override
+    public long generation(String table) {
+        Long generation = generations.get(table);
+        if (generation != null) {
+            return generation;
+        }
+        long remote = 0;
+        try {
+            byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                    connection.stringCommands().get(bytes(generationPrefix + table)));
+            remote = value == null ? 0 : Long.parseLong(new String(value, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.warn("Failed to read query cache generation of table: {}", table, e);
+        }
+        return generations.merge(table, remote, Math::max);
+    }
+
+    @Override
+    public void invalidate(Collection<String> tables) {
+        for (String table : tables) {
+            try {
+                Long generation = redisTemplate.execute((RedisCallback<Long>) connection -> {
+                    Long next = connection.stringCommands().incr(bytes(generationPrefix + table));
+                    connection.publish(bytes(channel), bytes(table + ':' + next));
+                    return next;
+                });
+                generations.merge(table, generation != null ? generation : 1L, Math::max);
+            } catch (Exception e) {
+                // Still drop local results, other nodes catch up when their entries expire
+                log.warn("Failed to broadcast query cache invalidation of table: {}", table, e);
+                generations.merge(table, 1L, Long::sum);
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator > 0) {
+            generations.merge(body.substring(0, separator), Long.parseLong(body.substring(separator + 1)), Math::max);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -6,6 +6,9 @@ import com.baomidou.dynamic.datasource.provider.DynamicDataSourceProvider;
 import com.baomidou.dynamic.datasource.spring.boot.autoconfigure.DataSourceProperty;
 import com.baomidou.dynamic.datasource.spring.boot.autoconfigure.DynamicDataSourceAutoConfiguration;
 import com.baomidou.dynamic.datasource.spring.boot.autoconfigure.DynamicDataSourceProperties;
+import com.example.database.tenant.TenantRouter;
+import com.example.database.tenant.TenantRoutingDataSource;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -17,13 +20,18 @@ import java.util.Map;
 
 @Configuration
 @AutoConfigureBefore({DynamicDataSourceAutoConfiguration.class})
-@EnableConfigurationProperties(DynamicDataSourceProperties.class)
+@EnableConfigurationProperties({DynamicDataSourceProperties.class, MicroDatabaseProperties.class})
 public class DynamicDataSourceConfig {
 
     @Bean(name = "customDataSource")
     @Primary
-    public DataSource customDataSource(DynamicDataSourceProperties properties) {
-        DynamicRoutingDataSource dataSource = new DynamicRoutingDataSource();
+    public DataSource customDataSource(DynamicDataSourceProperties properties,
+                                       ObjectProvider<TenantRouter> tenantRouter) {
+        // Route and limit connections by tenant when micro.service.database.tenant is enabled
+        TenantRouter router = tenantRouter.getIfAvailable();
+        DynamicRoutingDataSource dataSource = router != null
+                ? new TenantRoutingDataSource(router)
+                : new DynamicRoutingDataSource();
         dataSource.setPrimary(properties.getPrimary());
         dataSource.setStrict(properties.getStrict());
         dataSource.setStrategy(properties.getStrategy());
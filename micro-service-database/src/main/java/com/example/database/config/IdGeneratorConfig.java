@@ -0,0 +1,39 @@
+package com.example.database.config;
+
+import com.baomidou.dynamic.datasource.DynamicRoutingDataSource;
+import com.example.database.id.JdbcSegmentAllocator;
+import com.example.database.id.SegmentAllocator;
+import com.example.database.id.SegmentIdGenerator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+@EnableConfigurationProperties(MicroDatabaseProperties.class)
+@ConditionalOnProperty(prefix = "micro.service.database", name = "id-generator.enabled", havingValue = "true")
+public class IdGeneratorConfig {
+
+    /**
+     * Reserve segments from the segment table, replace this bean to reserve them elsewhere (e.g. Redis INCRBY)
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public SegmentAllocator segmentAllocator(DataSource dataSource, MicroDatabaseProperties properties) {
+        MicroDatabaseProperties.IdGenerator idGenerator = properties.getIdGenerator();
+        // Bypass routing so reservations never follow a slave or tenant datasource pushed by the caller
+        DataSource target = dataSource instanceof DynamicRoutingDataSource
+                ? ((DynamicRoutingDataSource) dataSource).getDataSource(idGenerator.getDatasource())
+                : dataSource;
+        return new JdbcSegmentAllocator(target, idGenerator.getTable(), idGenerator.getStep());
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public SegmentIdGenerator segmentIdGenerator(SegmentAllocator segmentAllocator, MicroDatabaseProperties properties) {
+        MicroDatabaseProperties.IdGenerator idGenerator = properties.getIdGenerator();
+        return new SegmentIdGenerator(segmentAllocator, idGenerator.getTables(), idGenerator.getPrefetchAfter());
+    }
+}
@@ -0,0 +1,445 @@
+package com.example.database.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Data
+@ConfigurationProperties(prefix = "micro.service.database")
+public class MicroDatabaseProperties {
+
+    /**
+     * Segment-allocated ids for ASSIGN_ID entities
+     */
+    private IdGenerator idGenerator = new IdGenerator();
+
+    /**
+     * Automatic routing of reads to replicas
+     */
+    private ReadWrite readWrite = new ReadWrite();
+
+    /**
+     * Multi-row INSERT / upsert through BatchWriter
+     */
+    private Batch batch = new Batch();
+
+    /**
+     * Count handling of paginated queries
+     */
+    private Pagination pagination = new Pagination();
+
+    /**
+     * Server-side cursor queries through StreamQuery
+     */
+    private Stream stream = new Stream();
+
+    /**
+     * SELECT result cache with table-level invalidation
+     */
+    private QueryCache queryCache = new QueryCache();
+
+    /**
+     * Per-statement latency and row metrics, slow SQL capture
+     */
+    private Profiler profiler = new Profiler();
+
+    /**
+     * Key-based sharding of tables across datasources
+     */
+    private Sharding sharding = new Sharding();
+
+    /**
+     * Coalesced write-behind of hot row updates
+     */
+    private WriteBehind writeBehind = new WriteBehind();
+
+    /**
+     * Per-tenant datasource or schema routing and connection bulkheads
+     */
+    private Tenant tenant = new Tenant();
+
+    @Data
+    public static class IdGenerator {
+        /**
+         * Whether the segment id generator replaces the default snowflake generator
+         */
+        private boolean enabled = false;
+
+        /**
+         * Tables that get dense segment ids, other tables keep snowflake ids
+         */
+        private Set<String> tables = new LinkedHashSet<>();
+
+        /**
+         * Datasource holding the segment table, blank for the primary datasource
+         */
+        private String datasource;
+
+        /**
+         * Segment table name
+         */
+        private String table = "micro_id_segment";
+
+        /**
+         * Step of segment rows created on first use
+         */
+        private int step = 1000;
+
+        /**
+         * Fraction of the current segment consumed before the next one is fetched in the background
+         */
+        private double prefetchAfter = 0.1;
+    }
+
+    @Data
+    public static class ReadWrite {
+        /**
+         * Whether SELECTs outside transactions are routed to replicas
+         */
+        private boolean enabled = false;
+
+        /**
+         * Datasources whose name starts with this prefix are replicas
+         */
+        private String replicaPrefix = "slave";
+
+        /**
+         * Replicas lagging more than this are skipped
+         */
+        private Duration maxLag = Duration.ofSeconds(2);
+
+        /**
+         * Reads of a thread stay on the primary this long after it wrote
+         */
+        private Duration stickyWindow = Duration.ofSeconds(2);
+
+        /**
+         * How often replica lag is measured
+         */
+        private Duration lagCheckInterval = Duration.ofSeconds(1);
+
+        /**
+         * Replication status query, SHOW REPLICA STATUS on MySQL 8.0.22+
+         */
+        private String lagQuery = "SHOW SLAVE STATUS";
+    }
+
+    @Data
+    public static class Batch {
+        /**
+         * Rows per statement
+         */
+        private int batchSize = 1000;
+
+        /**
+         * Placeholders per statement, MySQL rejects more than 65535
+         */
+        private int maxParameters = 65535;
+
+        /**
+         * Statements written concurrently on separate connections outside transactions
+         */
+        private int parallelism = 4;
+    }
+
+    @Data
+    public static class Pagination {
+        /**
+         * Whether COUNT results of paginated queries are cached, keyed by statement, SQL and parameters
+         */
+        private boolean countCache = false;
+
+        /**
+         * How long a cached count is reused, page turns within it skip the COUNT query
+         */
+        private Duration countTtl = Duration.ofSeconds(30);
+
+        /**
+         * Cached counts kept
+         */
+        private long maximumCounts = 10000;
+    }
+
+    @Data
+    public static class Stream {
+        /**
+         * JDBC fetch size of streamed queries, Integer.MIN_VALUE streams row by row on MySQL,
+         * a positive size fetches in batches when the URL sets useCursorFetch=true
+         */
+        private int fetchSize = Integer.MIN_VALUE;
+
+        /**
+         * Rows written by export writers between flushes
+         */
+        private int flushRows = 500;
+    }
+
+    @Data
+    public static class QueryCache {
+        /**
+         * Whether results of @CachedQuery statements are cached
+         */
+        private boolean enabled = false;
+
+        /**
+         * Default time to live of a cached result
+         */
+        private Duration ttl = Duration.ofSeconds(60);
+
+        /**
+         * Results kept in the local cache
+         */
+        private long maximumSize = 10000;
+
+        /**
+         * Share results and table invalidations across nodes through Redis when a redisTemplate exists
+         */
+        private boolean redis = true;
+
+        /**
+         * Prefix of result and table generation keys in Redis
+         */
+        private String keyPrefix = "micro:query-cache:";
+
+        /**
+         * Channel on which table invalidations are broadcast
+         */
+        private String channel = "micro:query-cache:invalidate";
+    }
+
+    @Data
+    public static class Profiler {
+        /**
+         * Whether mapped statements are profiled
+         */
+        private boolean enabled = false;
+
+        /**
+         * Statements at least this slow are captured with their bound parameters
+         */
+        private Duration slowThreshold = Duration.ofMillis(500);
+
+        /**
+         * Fraction of other statements captured as samples, 0 to 1
+         */
+        private double sampleRate = 0;
+
+        /**
+         * Number of captured statements kept, oldest are overwritten
+         */
+        private int captureCapacity = 100;
+
+        /**
+         * Captured SQL is cut to this length
+         */
+        private int maxSqlLength = 4096;
+
+        /**
+         * Publish histogram buckets for server-side percentile aggregation
+         */
+        private boolean histogram = true;
+
+        /**
+         * Percentiles computed locally and shown by the actuator endpoint
+         */
+        private double[] percentiles = {0.5, 0.95, 0.99};
+
+        /**
+         * Upper bound of the histogram buckets
+         */
+        private Duration maximumExpectedValue = Duration.ofSeconds(10);
+
+        /**
+         * Whether slow SELECTs are explained in the background
+         */
+        private boolean explain = false;
+
+        /**
+         * A statement is explained again at most this often
+         */
+        private Duration explainInterval = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Sharding {
+        /**
+         * Whether statements on sharded tables are routed by sharding key
+         */
+        private boolean enabled = false;
+
+        /**
+         * Shard queries of a fan-out run concurrently
+         */
+        private int parallelism = 8;
+
+        /**
+         * Shard queries waiting for a thread before fan-outs are rejected
+         */
+        private int queueCapacity = 256;
+
+        /**
+         * Time a fan-out waits for all shards
+         */
+        private Duration timeout = Duration.ofSeconds(10);
+
+        /**
+         * Sharded tables by logical table name
+         */
+        private Map<String, Table> tables = new LinkedHashMap<>();
+
+        @Data
+        public static class Table {
+            /**
+             * Sharding key column, e.g. tenant_id or user_id
+             */
+            private String column;
+
+            /**
+             * Datasources holding the shards
+             */
+            private List<String> datasources = new ArrayList<>();
+
+            /**
+             * Tables per datasource, named table_0..table_n-1 when more than one
+             */
+            private int tablesPerDatasource = 1;
+        }
+    }
+
+    @Data
+    public static class WriteBehind {
+        /**
+         * Whether the write-behind buffer is available
+         */
+        private boolean enabled = false;
+
+        /**
+         * Interval between flushes
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        /**
+         * Pending rows that trigger an early flush
+         */
+        private int flushRows = 1000;
+
+        /**
+         * Pending rows above which writers flush synchronously
+         */
+        private int maxPendingRows = 100000;
+
+        /**
+         * Rows per JDBC batch and transaction
+         */
+        private int batchSize = 500;
+
+        /**
+         * Failed flushes of a row before its updates are logged and dropped
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * Datasource of unsharded tables, blank for the primary datasource
+         */
+        private String datasource;
+
+        /**
+         * What survives a crash: none, journal or flush-on-commit
+         */
+        private Durability durability = Durability.NONE;
+
+        /**
+         * Directory of the local journal
+         */
+        private String journalDirectory = "./data/write-behind";
+
+        /**
+         * Sync the journal to disk on every update instead of leaving it to the OS
+         */
+        private boolean journalFsync = false;
+
+        public enum Durability {
+            /**
+             * Updates buffered since the last flush are lost if the process dies
+             */
+            NONE,
+            /**
+             * Updates are journaled locally first and replayed on startup
+             */
+            JOURNAL,
+            /**
+             * Updates made in a transaction are written before it commits, others as with NONE
+             */
+            FLUSH_ON_COMMIT
+        }
+    }
+
+    @Data
+    public static class Tenant {
+        /**
+         * Whether statements are routed and limited by the current tenant
+         */
+        private boolean enabled = false;
+
+        /**
+         * Datasource of tenants without their own, blank to keep the current routing
+         */
+        private String datasource;
+
+        /**
+         * Schema of tenants without their own, {tenant} is replaced by the tenant id, blank for none
+         */
+        private String schemaPattern;
+
+        /**
+         * Tenant ids accepted from TenantContext and resolvers, others fail before any routing
+         * since ids end up in schema names and SQL
+         */
+        private String idPattern = "[A-Za-z0-9_]{1,64}";
+
+        /**
+         * Connections a tenant without its own limit may hold at once, 0 for no limit
+         */
+        private int maxConnections = 5;
+
+        /**
+         * Time a tenant at its limit waits for a connection before the call fails
+         */
+        private Duration acquireTimeout = Duration.ofSeconds(1);
+
+        /**
+         * Tenants whose bulkheads are kept, idle ones are dropped beyond this, never one with connections out
+         */
+        private long maximumTenants = 10000;
+
+        /**
+         * Routes by tenant id
+         */
+        private Map<String, Route> tenants = new LinkedHashMap<>();
+
+        @Data
+        public static class Route {
+            /**
+             * Datasource of the tenant, blank for the default
+             */
+            private String datasource;
+
+            /**
+             * Schema qualifying the tenant's tables, blank for the default
+             */
+            private String schema;
+
+            /**
+             * Connections the tenant may hold at once, 0 for the default
+             */
+            private int maxConnections = 0;
+        }
+    }
+}
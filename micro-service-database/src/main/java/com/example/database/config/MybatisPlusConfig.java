@@ -4,24 +4,45 @@ import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.BlockAttackInnerInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.OptimisticLockerInnerInterceptor;
-import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.example.common.audit.AuditFillInterceptor;
+import com.example.database.page.CachingPaginationInnerInterceptor;
+import com.example.database.stream.StreamingFetchSizeInterceptor;
+import com.example.database.tenant.TenantRouter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 @Configuration
 @EnableTransactionManagement
+@EnableConfigurationProperties(MicroDatabaseProperties.class)
 public class MybatisPlusConfig {
 
     @Bean
-    public MybatisPlusInterceptor mybatisPlusInterceptor() {
+    public MybatisPlusInterceptor mybatisPlusInterceptor(MicroDatabaseProperties properties,
+                                                         ObjectProvider<TenantRouter> tenantRouter) {
         MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
-        // Pagination
-        interceptor.addInnerInterceptor(new PaginationInnerInterceptor(DbType.MYSQL));
+        // Pagination, with optional count cache
+        interceptor.addInnerInterceptor(new CachingPaginationInnerInterceptor(DbType.MYSQL, properties.getPagination(),
+                tenantRouter.getIfAvailable()));
         // Optimistic lock
         interceptor.addInnerInterceptor(new OptimisticLockerInnerInterceptor());
         // Block attack
         interceptor.addInnerInterceptor(new BlockAttackInnerInterceptor());
         return interceptor;
     }
-} 
\ No newline at end of file
+
+    /**
+     * One audit timestamp and user per statement
+     */
+    @Bean
+    public AuditFillInterceptor auditFillInterceptor() {
+        return new AuditFillInterceptor();
+    }
+
+    @Bean
+    public StreamingFetchSizeInterceptor streamingFetchSizeInterceptor() {
+        return new StreamingFetchSizeInterceptor();
+    }
+}
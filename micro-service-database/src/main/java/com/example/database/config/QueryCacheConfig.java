@@ -0,0 +1,56 @@
+package com.example.database.config;
+
+import com.example.database.cache.LocalQueryCacheStore;
+import com.example.database.cache.QueryCacheInterceptor;
+import com.example.database.cache.QueryCacheStore;
+import com.example.database.cache.RedisQueryCacheStore;
+import com.example.database.tenant.TenantRouter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+
+@Configuration
+@EnableConfigurationProperties(MicroDatabaseProperties.class)
+@ConditionalOnProperty(prefix = "micro.service.database", name = "query-cache.enabled", havingValue = "true")
+public class QueryCacheConfig {
+
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.data.redis.core.RedisTemplate")
+    @ConditionalOnProperty(prefix = "micro.service.database", name = "query-cache.redis", havingValue = "true",
+            matchIfMissing = true)
+    static class RedisQueryCacheStoreConfig {
+
+        /**
+         * Shared through Redis when the application has a redisTemplate, local otherwise
+         */
+        @Bean(initMethod = "start", destroyMethod = "shutdown")
+        public QueryCacheStore queryCacheStore(ObjectProvider<RedisTemplate<String, Object>> redisTemplate,
+                                               MicroDatabaseProperties properties) {
+            RedisTemplate<String, Object> template = redisTemplate.getIfUnique();
+            return template != null
+                    ? new RedisQueryCacheStore(template, properties.getQueryCache())
+                    : new LocalQueryCacheStore(properties.getQueryCache());
+        }
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public QueryCacheStore queryCacheStore(MicroDatabaseProperties properties) {
+        return new LocalQueryCacheStore(properties.getQueryCache());
+    }
+
+    /**
+     * Picked up by MyBatis-Plus next to mybatisPlusInterceptor
+     */
+    @Bean
+    public QueryCacheInterceptor queryCacheInterceptor(QueryCacheStore queryCacheStore, MicroDatabaseProperties properties,
+                                                       ObjectProvider<TenantRouter> tenantRouter) {
+        return new QueryCacheInterceptor(queryCacheStore, properties.getQueryCache().getTtl(),
+                tenantRouter.getIfAvailable());
+    }
+}
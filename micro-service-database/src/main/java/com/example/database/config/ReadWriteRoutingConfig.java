@@ -0,0 +1,35 @@
+package com.example.database.config;
+
+import com.baomidou.dynamic.datasource.DynamicRoutingDataSource;
+import com.baomidou.dynamic.datasource.spring.boot.autoconfigure.DynamicDataSourceProperties;
+import com.example.database.routing.ReadWriteRoutingInterceptor;
+import com.example.database.routing.ReplicaLagMonitor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+@EnableConfigurationProperties({MicroDatabaseProperties.class, DynamicDataSourceProperties.class})
+@ConditionalOnProperty(prefix = "micro.service.database", name = "read-write.enabled", havingValue = "true")
+public class ReadWriteRoutingConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    public ReplicaLagMonitor replicaLagMonitor(DataSource dataSource, MicroDatabaseProperties properties,
+                                               DynamicDataSourceProperties dataSourceProperties) {
+        return new ReplicaLagMonitor((DynamicRoutingDataSource) dataSource, properties.getReadWrite(),
+                dataSourceProperties.getPrimary());
+    }
+
+    /**
+     * Picked up by MyBatis-Plus next to mybatisPlusInterceptor
+     */
+    @Bean
+    public ReadWriteRoutingInterceptor readWriteRoutingInterceptor(ReplicaLagMonitor replicaLagMonitor,
+                                                                   MicroDatabaseProperties properties) {
+        return new ReadWriteRoutingInterceptor(replicaLagMonitor,
+                properties.getReadWrite().getStickyWindow().toNanos());
+    }
+}
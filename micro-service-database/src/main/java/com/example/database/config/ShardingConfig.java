@@ -0,0 +1,63 @@
+package com.example.database.config;
+
+import com.baomidou.dynamic.datasource.DynamicRoutingDataSource;
+import com.baomidou.dynamic.datasource.spring.boot.autoconfigure.DynamicDataSourceProperties;
+import com.example.database.shard.ScatterGather;
+import com.example.database.shard.Shard;
+import com.example.database.shard.ShardRouter;
+import com.example.database.shard.ShardingInterceptor;
+import com.example.database.shard.ShardingRule;
+import com.example.database.tenant.TenantRouter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties({MicroDatabaseProperties.class, DynamicDataSourceProperties.class})
+@ConditionalOnProperty(prefix = "micro.service.database", name = "sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    public ShardRouter shardRouter(MicroDatabaseProperties properties, DataSource dataSource,
+                                   DynamicDataSourceProperties dataSourceProperties) {
+        Map<String, DataSource> dataSources = ((DynamicRoutingDataSource) dataSource).getDataSources();
+        List<ShardingRule> rules = new ArrayList<>();
+        for (Map.Entry<String, MicroDatabaseProperties.Sharding.Table> entry
+                : properties.getSharding().getTables().entrySet()) {
+            MicroDatabaseProperties.Sharding.Table table = entry.getValue();
+            ShardingRule rule = new ShardingRule(entry.getKey(), table.getColumn(), table.getDatasources(),
+                    table.getTablesPerDatasource());
+            for (Shard shard : rule.getShards()) {
+                if (!dataSources.containsKey(shard.getDatasource())) {
+                    throw new IllegalStateException("Unknown datasource " + shard.getDatasource()
+                            + " of sharded table " + entry.getKey());
+                }
+            }
+            rules.add(rule);
+        }
+        return new ShardRouter(rules, dataSourceProperties.getPrimary());
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ScatterGather scatterGather(ShardRouter shardRouter, MicroDatabaseProperties properties,
+                                       ObjectProvider<TenantRouter> tenantRouter) {
+        MicroDatabaseProperties.Sharding sharding = properties.getSharding();
+        return new ScatterGather(shardRouter, tenantRouter.getIfAvailable(), sharding.getParallelism(),
+                sharding.getQueueCapacity(), sharding.getTimeout());
+    }
+
+    /**
+     * Picked up by MyBatis-Plus next to mybatisPlusInterceptor
+     */
+    @Bean
+    public ShardingInterceptor shardingInterceptor(ShardRouter shardRouter, ScatterGather scatterGather) {
+        return new ShardingInterceptor(shardRouter, scatterGather);
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.database.config;
+
+import com.example.database.profiler.SqlProfiler;
+import com.example.database.profiler.SqlProfilerEndpoint;
+import com.example.database.profiler.SqlProfilerInterceptor;
+import com.example.database.tenant.TenantRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+@EnableConfigurationProperties(MicroDatabaseProperties.class)
+@ConditionalOnProperty(prefix = "micro.service.database", name = "profiler.enabled", havingValue = "true")
+public class SqlProfilerConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public SqlProfiler sqlProfiler(MeterRegistry meterRegistry, DataSource dataSource, MicroDatabaseProperties properties,
+                                   ObjectProvider<TenantRouter> tenantRouter) {
+        return new SqlProfiler(meterRegistry, dataSource, properties.getProfiler(), tenantRouter.getIfAvailable());
+    }
+
+    /**
+     * Picked up by MyBatis-Plus next to mybatisPlusInterceptor
+     */
+    @Bean
+    public SqlProfilerInterceptor sqlProfilerInterceptor(SqlProfiler sqlProfiler) {
+        return new SqlProfilerInterceptor(sqlProfiler);
+    }
+
+    @Bean
+    public SqlProfilerEndpoint sqlProfilerEndpoint(SqlProfiler sqlProfiler) {
+        return new SqlProfilerEndpoint(sqlProfiler);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.database.config;
+
+import com.example.database.tenant.TenantResolver;
+import com.example.database.tenant.TenantRouter;
+import com.example.database.tenant.TenantSchemaInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.stream.Collectors;
+
+@Configuration
+@EnableConfigurationProperties(MicroDatabaseProperties.class)
+@ConditionalOnProperty(prefix = "micro.service.database", name = "tenant.enabled", havingValue = "true")
+public class TenantRoutingConfig {
+
+    /**
+     * Used by customDataSource, tenant ids come from TenantContext and the TenantResolver beans
+     */
+    @Bean
+    public TenantRouter tenantRouter(MicroDatabaseProperties properties, ObjectProvider<TenantResolver> resolvers) {
+        return new TenantRouter(properties.getTenant(), resolvers.orderedStream().collect(Collectors.toList()));
+    }
+
+    /**
+     * Picked up by MyBatis-Plus next to mybatisPlusInterceptor
+     */
+    @Bean
+    public TenantSchemaInterceptor tenantSchemaInterceptor(TenantRouter tenantRouter) {
+        return new TenantSchemaInterceptor(tenantRouter);
+    }
+}
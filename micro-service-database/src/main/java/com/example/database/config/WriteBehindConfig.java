@@ -0,0 +1,28 @@
+package com.example.database.config;
+
+import com.example.database.cache.QueryCacheInterceptor;
+import com.example.database.shard.ShardRouter;
+import com.example.database.tenant.TenantRouter;
+import com.example.database.writebehind.WriteBehindBuffer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+@EnableConfigurationProperties(MicroDatabaseProperties.class)
+@ConditionalOnProperty(prefix = "micro.service.database", name = "write-behind.enabled", havingValue = "true")
+public class WriteBehindConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    public WriteBehindBuffer writeBehindBuffer(DataSource dataSource, MicroDatabaseProperties properties,
+                                               ObjectProvider<ShardRouter> shardRouter,
+                                               ObjectProvider<QueryCacheInterceptor> queryCacheInterceptor,
+                                               ObjectProvider<TenantRouter> tenantRouter) {
+        return new WriteBehindBuffer(dataSource, properties.getWriteBehind(), shardRouter.getIfAvailable(),
+                queryCacheInterceptor.getIfAvailable(), tenantRouter.getIfAvailable());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.database.id;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Reserves segments by bumping max_id of the tag's row, one row per tag:
+ * <pre>
+ * CREATE TABLE micro_id_segment (
+ *     biz_tag     VARCHAR(128) NOT NULL PRIMARY KEY,
+ *     max_id      BIGINT       NOT NULL,
+ *     step        INT          NOT NULL,
+ *     update_time DATETIME     NOT NULL
+ * );
+ * </pre>
+ * The row lock of the update serializes nodes, so every node gets a disjoint (max_id - step, max_id].
+ * Missing rows are created with the default step, the step of a row can be changed at any time.
+ * <p>
+ * Tenants share one id space: give it a datasource that isn't routed, and the table is never
+ * qualified with a tenant's schema, so ids stay unique across tenant tables.
+ */
+public class JdbcSegmentAllocator implements SegmentAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int defaultStep;
+
+    private final String updateSql;
+    private final String selectSql;
+    private final String insertSql;
+
+    public JdbcSegmentAllocator(DataSource dataSource, String table, int defaultStep) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.defaultStep = defaultStep;
+        this.updateSql = "UPDATE " + table + " SET max_id = max_id + step, update_time = NOW() WHERE biz_tag = ?";
+        this.selectSql = "SELECT max_id, step FROM " + table + " WHERE biz_tag = ?";
+        this.insertSql = "INSERT INTO " + table + " (biz_tag, max_id, step, update_time) VALUES (?, 0, ?, NOW())";
+    }
+
+    @Override
+    public Segment allocate(String tag) {
+        Segment segment = transactionTemplate.execute(status -> reserve(tag));
+        if (segment != null) {
+            return segment;
+        }
+        try {
+            jdbcTemplate.update(insertSql, tag, defaultStep);
+        } catch (DuplicateKeyException e) {
+            // Another node created the row first
+        }
+        segment = transactionTemplate.execute(status -> reserve(tag));
+        if (segment == null) {
+            throw new IllegalStateException("Id segment row of " + tag + " could not be created");
+        }
+        return segment;
+    }
+
+    private Segment reserve(String tag) {
+        if (jdbcTemplate.update(updateSql, tag) == 0) {
+            return null;
+        }
+        List<Segment> segments = jdbcTemplate.query(selectSql, (rs, rowNum) -> {
+            long maxId = rs.getLong("max_id");
+            return new Segment(maxId - rs.getInt("step") + 1, maxId + 1);
+        }, tag);
+        return segments.isEmpty() ? null : segments.get(0);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.database.id;
+
+import lombok.Getter;
+
+/**
+ * Range of ids reserved for one tag, start inclusive and end exclusive
+ */
+@Getter
+public class Segment {
+
+    private final long start;
+
+    private final long end;
+
+    public Segment(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long size() {
+        return end - start;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.database.id;
+
+/**
+ * Reserves id segments from shared storage. Implementations must never hand out overlapping
+ * segments for the same tag, across all nodes.
+ */
+public interface SegmentAllocator {
+
+    /**
+     * Reserve the next segment of tag
+     *
+     * @param tag business tag, usually the table name
+     * @return reserved segment
+     */
+    Segment allocate(String tag);
+}
@@ -0,0 +1,145 @@
+package com.example.database.id;
+
+import com.baomidou.mybatisplus.core.incrementer.DefaultIdentifierGenerator;
+import com.baomidou.mybatisplus.core.incrementer.IdentifierGenerator;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Hands out dense, increasing ids from segments reserved through a {@link SegmentAllocator}.
+ * <p>
+ * Each tag keeps two buffers: ids come from the current segment with a lock-free increment, and
+ * once prefetch-after of it is consumed the next segment is reserved in the background. Switching
+ * segments is the only locked path, and it only waits when the next segment is not there yet.
+ * Ids are increasing per node, not globally, and a restart skips the rest of the held segments.
+ * <p>
+ * Entities whose table is not configured keep the snowflake ids of the default generator.
+ */
+@Slf4j
+public class SegmentIdGenerator implements IdentifierGenerator {
+
+    private final SegmentAllocator allocator;
+    private final Set<String> tables;
+    private final double prefetchAfter;
+    private final IdentifierGenerator fallback;
+
+    private final ConcurrentMap<String, Buffer> buffers = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public SegmentIdGenerator(SegmentAllocator allocator, Collection<String> tables, double prefetchAfter) {
+        this.allocator = allocator;
+        this.tables = tables.stream().map(table -> table.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+        this.prefetchAfter = Math.min(1, Math.max(0, prefetchAfter));
+        this.fallback = DefaultIdentifierGenerator.getInstance();
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("db-id-segment-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    @Override
+    public Number nextId(Object entity) {
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(entity.getClass());
+        if (tableInfo != null) {
+            String table = tableInfo.getTableName().toLowerCase(Locale.ROOT);
+            if (tables.contains(table)) {
+                return nextId(table);
+            }
+        }
+        return fallback.nextId(entity);
+    }
+
+    @Override
+    public String nextUUID(Object entity) {
+        return fallback.nextUUID(entity);
+    }
+
+    /**
+     * Next id of tag
+     *
+     * @param tag business tag
+     * @return id
+     */
+    public long nextId(String tag) {
+        Buffer buffer = buffers.computeIfAbsent(tag, k -> new Buffer());
+        for (;;) {
+            Cursor cursor = buffer.current;
+            long id = cursor.value.getAndIncrement();
+            if (id < cursor.end) {
+                // Exactly one caller sees the mark, so the next segment is requested once
+                if (id == cursor.prefetchAt) {
+                    prefetch(tag, buffer);
+                }
+                return id;
+            }
+            next(tag, buffer, cursor);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void prefetch(String tag, Buffer buffer) {
+        synchronized (buffer) {
+            if (buffer.next == null) {
+                buffer.next = CompletableFuture.supplyAsync(() -> allocator.allocate(tag), executor);
+            }
+        }
+    }
+
+    private void next(String tag, Buffer buffer, Cursor exhausted) {
+        synchronized (buffer) {
+            if (buffer.current != exhausted) {
+                return;
+            }
+            CompletableFuture<Segment> future = buffer.next;
+            buffer.next = null;
+            Segment segment = null;
+            if (future != null) {
+                try {
+                    segment = future.join();
+                } catch (CompletionException e) {
+                    log.warn("Prefetching id segment of {} failed, reserving again", tag, e.getCause());
+                }
+            }
+            if (segment == null) {
+                segment = allocator.allocate(tag);
+            }
+            buffer.current = new Cursor(segment, prefetchAfter);
+        }
+    }
+
+    private static final class Buffer {
+        private volatile Cursor current = Cursor.EMPTY;
+        private CompletableFuture<Segment> next;
+    }
+
+    private static final class Cursor {
+        private static final Cursor EMPTY = new Cursor(new Segment(0, 0), 0);
+
+        private final AtomicLong value;
+        private final long end;
+        private final long prefetchAt;
+
+        private Cursor(Segment segment, double prefetchAfter) {
+            this.value = new AtomicLong(segment.getStart());
+            this.end = segment.getEnd();
+            this.prefetchAt = segment.getStart() + (long) (segment.size() * prefetchAfter);
+        }
+    }
+}
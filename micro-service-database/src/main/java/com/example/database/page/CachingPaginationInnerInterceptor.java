@@ -0,0 +1,77 @@
+package com.example.database.page;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.toolkit.ParameterUtils;
+import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.example.database.config.MicroDatabaseProperties;
+import com.example.database.shard.ShardingContext;
+import com.example.database.tenant.TenantRouter;
+import com.example.database.util.SqlKeyUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.SQLException;
+
+/**
+ * PaginationInnerInterceptor that can reuse COUNT results across page turns.
+ * <p>
+ * With count-cache enabled, the total of a query is kept for count-ttl under its statement, SQL,
+ * parameter values (LIMIT excluded), shard routing and tenant scope, so turning pages of the same
+ * list doesn't rerun a full COUNT. Totals may be stale by up to count-ttl. Pages with searchCount
+ * off never count at all.
+ */
+public class CachingPaginationInnerInterceptor extends PaginationInnerInterceptor {
+
+    private final Cache<String, Long> counts;
+    private final TenantRouter tenantRouter;
+
+    public CachingPaginationInnerInterceptor(DbType dbType, MicroDatabaseProperties.Pagination properties,
+                                             TenantRouter tenantRouter) {
+        super(dbType);
+        this.tenantRouter = tenantRouter;
+        this.counts = properties.isCountCache()
+                ? Caffeine.newBuilder()
+                        .maximumSize(properties.getMaximumCounts())
+                        .expireAfterWrite(properties.getCountTtl())
+                        .build()
+                : null;
+    }
+
+    @Override
+    public boolean willDoQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                               ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
+        IPage<?> page = ParameterUtils.findPage(parameter).orElse(null);
+        if (counts == null || page == null || page.getSize() < 0 || !page.searchCount()) {
+            return super.willDoQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql);
+        }
+        String routing = ShardingContext.routing();
+        String scope = tenantRouter == null ? null : tenantRouter.scope();
+        if (scope != null) {
+            routing = (routing == null ? "" : routing + " ") + "tenant=" + scope;
+        }
+        String key = SqlKeyUtil.key(ms, boundSql, routing);
+        Long total = counts.getIfPresent(key);
+        if (total == null) {
+            boolean proceed = super.willDoQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql);
+            counts.put(key, page.getTotal());
+            return proceed;
+        }
+        page.setTotal(total);
+        return continuePage(page);
+    }
+
+    /**
+     * Drop all cached counts, e.g. after a bulk import
+     */
+    public void invalidateCounts() {
+        if (counts != null) {
+            counts.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.database.page;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset page: continues after the last seen key instead of skipping OFFSET rows, so every page
+ * costs the same as the first one. The key column must be unique and indexed, e.g. the id.
+ * <pre>
+ * SeekPage&lt;User&gt; page = SeekPage.of("id", User::getId, lastId, 20);
+ * userMapper.selectPage(page, page.seek(new QueryWrapper&lt;User&gt;().eq("status", 1)));
+ * Object nextKey = page.getNextKey();
+ * </pre>
+ * It doesn't count. searchCount would only count the rows after the key, and a new key per page
+ * means the count cache never hits; run a separate selectCount without {@link #seek} for a total.
+ *
+ * @param <T> entity type
+ */
+public class SeekPage<T> extends Page<T> {
+    private static final long serialVersionUID = 1L;
+
+    private final String column;
+
+    private final transient Function<T, ?> keyOf;
+
+    private final Object after;
+
+    private final boolean asc;
+
+    public SeekPage(String column, Function<T, ?> keyOf, Object after, long size, boolean asc) {
+        super(1, size, false);
+        this.column = column;
+        this.keyOf = keyOf;
+        this.after = after;
+        this.asc = asc;
+    }
+
+    /**
+     * Ascending page after a key
+     *
+     * @param column key column
+     * @param keyOf  reads the key of a record
+     * @param after  last key of the previous page, null for the first page
+     * @param size   page size
+     * @param <T>    entity type
+     * @return page
+     */
+    public static <T> SeekPage<T> of(String column, Function<T, ?> keyOf, Object after, long size) {
+        return new SeekPage<>(column, keyOf, after, size, true);
+    }
+
+    /**
+     * Add the key condition and key ordering to wrapper
+     *
+     * @param wrapper query conditions, must not order by anything else
+     * @return wrapper
+     */
+    public QueryWrapper<T> seek(QueryWrapper<T> wrapper) {
+        if (after != null) {
+            if (asc) {
+                wrapper.gt(column, after);
+            } else {
+                wrapper.lt(column, after);
+            }
+        }
+        return wrapper.orderBy(true, asc, column);
+    }
+
+    /**
+     * Always start at the key, never skip rows
+     */
+    @Override
+    public long offset() {
+        return 0;
+    }
+
+    /**
+     * Key to pass as after for the next page
+     *
+     * @return last key of this page, null when it is empty
+     */
+    public Object getNextKey() {
+        List<T> records = getRecords();
+        return records.isEmpty() ? null : keyOf.apply(records.get(records.size() - 1));
+    }
+
+    /**
+     * Whether another page may follow, without needing a total
+     *
+     * @return true when this page is full
+     */
+    @Override
+    public boolean hasNext() {
+        return getRecords().size() >= getSize();
+    }
+
+    public Object getAfter() {
+        return after;
+    }
+}
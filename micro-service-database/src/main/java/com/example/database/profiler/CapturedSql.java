@@ -0,0 +1,42 @@
+package com.example.database.profiler;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+public class CapturedSql implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Mapped statement id
+     */
+    private String statement;
+
+    /**
+     * SQL with bound parameters inlined, possibly cut
+     */
+    private String sql;
+
+    /**
+     * Execution time in milliseconds
+     */
+    private double durationMillis;
+
+    /**
+     * Rows returned or affected, -1 when unknown
+     */
+    private long rows;
+
+    /**
+     * True when captured for being slow, false when sampled
+     */
+    private boolean slow;
+
+    /**
+     * Epoch millis when the statement finished
+     */
+    private long timestamp;
+}
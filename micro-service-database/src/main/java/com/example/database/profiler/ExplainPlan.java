@@ -0,0 +1,29 @@
+package com.example.database.profiler;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class ExplainPlan implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * SQL that was explained, parameters inlined
+     */
+    private String sql;
+
+    /**
+     * EXPLAIN output rows
+     */
+    private List<Map<String, Object>> plan;
+
+    /**
+     * Epoch millis when the plan was taken
+     */
+    private long timestamp;
+}
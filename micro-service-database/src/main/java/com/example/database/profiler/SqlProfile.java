@@ -0,0 +1,52 @@
+package com.example.database.profiler;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class SqlProfile implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Latency and rows per mapped statement, most total time first
+     */
+    private Map<String, StatementStats> statements;
+
+    /**
+     * Recent slow and sampled executions, slowest first
+     */
+    private List<CapturedSql> captured;
+
+    /**
+     * Latest plan of slow SELECTs
+     */
+    private Map<String, ExplainPlan> plans;
+
+    @Data
+    @AllArgsConstructor
+    public static class StatementStats implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private long count;
+
+        private double totalMillis;
+
+        private double meanMillis;
+
+        private double maxMillis;
+
+        /**
+         * Percentile to latency in milliseconds
+         */
+        private Map<Double, Double> percentileMillis;
+
+        private double meanRows;
+
+        private double maxRows;
+    }
+}
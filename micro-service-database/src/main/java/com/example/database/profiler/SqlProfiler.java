@@ -0,0 +1,232 @@
+package com.example.database.profiler;
+
+import com.baomidou.dynamic.datasource.toolkit.DynamicDataSourceContextHolder;
+import com.example.database.config.MicroDatabaseProperties;
+import com.example.database.tenant.TenantContext;
+import com.example.database.tenant.TenantRouter;
+import com.example.database.util.SqlKeyUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records latency and row counts of every mapped statement into Micrometer, keeps slow and sampled
+ * executions with their bound parameters in a ring buffer, and explains slow SELECTs in the
+ * background, each statement at most once per explain-interval.
+ * <p>
+ * SQL text is only rendered for captured executions, so unsampled fast statements cost two
+ * meter updates. Plans are taken for the SQL as prepared, on the datasource and tenant it ran on;
+ * statements that were not prepared on the calling thread, e.g. fanned out to shards, are not
+ * explained.
+ */
+@Slf4j
+public class SqlProfiler {
+
+    public static final String STATEMENT_TIMER = "db.statement";
+
+    public static final String ROWS_SUMMARY = "db.statement.rows";
+
+    private final MeterRegistry registry;
+    private final MicroDatabaseProperties.Profiler properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TenantRouter tenantRouter;
+    private final long slowThresholdNanos;
+
+    private final ConcurrentMap<String, Meters> meters = new ConcurrentHashMap<>();
+
+    private final AtomicReferenceArray<CapturedSql> captured;
+    private final AtomicLong capturedIndex = new AtomicLong();
+
+    private final ConcurrentMap<String, ExplainPlan> plans = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> explainedAt = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor explainExecutor;
+
+    public SqlProfiler(MeterRegistry registry, DataSource dataSource, MicroDatabaseProperties.Profiler properties,
+                       TenantRouter tenantRouter) {
+        this.registry = registry;
+        this.properties = properties;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.tenantRouter = tenantRouter;
+        this.slowThresholdNanos = properties.getSlowThreshold().toNanos();
+        this.captured = new AtomicReferenceArray<>(Math.max(1, properties.getCaptureCapacity()));
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("db-sql-explain-");
+        threadFactory.setDaemon(true);
+        // A few pending plans at most, the rest are dropped rather than adding load to a slow database
+        this.explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(16), threadFactory, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Record one statement execution
+     *
+     * @param ms        mapped statement
+     * @param parameter statement parameter
+     * @param boundSql  bound SQL, null to derive it from the parameter when needed
+     * @param prepared  SQL as prepared on this thread, null when the statement was not prepared here
+     * @param nanos     duration in nanoseconds
+     * @param rows      rows returned or affected, -1 when unknown
+     */
+    public void record(MappedStatement ms, Object parameter, BoundSql boundSql, Prepared prepared,
+                       long nanos, long rows) {
+        Meters statementMeters = meters.computeIfAbsent(ms.getId(), id -> new Meters(ms));
+        statementMeters.timer.record(nanos, TimeUnit.NANOSECONDS);
+        if (rows >= 0) {
+            statementMeters.rows.record(rows);
+        }
+
+        boolean slow = nanos >= slowThresholdNanos;
+        if (!slow && (properties.getSampleRate() <= 0
+                || ThreadLocalRandom.current().nextDouble() >= properties.getSampleRate())) {
+            return;
+        }
+        try {
+            BoundSql sql = prepared != null ? prepared.boundSql
+                    : boundSql != null ? boundSql : ms.getBoundSql(parameter);
+            String inlined = SqlKeyUtil.inline(ms, sql);
+            if (inlined.length() > properties.getMaxSqlLength()) {
+                inlined = inlined.substring(0, properties.getMaxSqlLength()) + "...";
+            }
+            captured.set((int) (capturedIndex.getAndIncrement() % captured.length()), new CapturedSql(ms.getId(),
+                    inlined, nanos / 1_000_000.0, rows, slow, System.currentTimeMillis()));
+            if (slow && prepared != null && properties.isExplain() && ms.getSqlCommandType() == SqlCommandType.SELECT) {
+                explain(ms, prepared, inlined);
+            }
+        } catch (RuntimeException e) {
+            log.debug("Failed to capture SQL of {}", ms.getId(), e);
+        }
+    }
+
+    /**
+     * Get per-statement stats, captured executions and plans
+     *
+     * @return profile snapshot
+     */
+    public SqlProfile getProfile() {
+        List<Map.Entry<String, SqlProfile.StatementStats>> entries = new ArrayList<>();
+        for (Map.Entry<String, Meters> entry : meters.entrySet()) {
+            HistogramSnapshot latency = entry.getValue().timer.takeSnapshot();
+            HistogramSnapshot rows = entry.getValue().rows.takeSnapshot();
+            Map<Double, Double> percentiles = new LinkedHashMap<>();
+            for (ValueAtPercentile value : latency.percentileValues()) {
+                percentiles.put(value.percentile(), value.value(TimeUnit.MILLISECONDS));
+            }
+            entries.add(new LinkedHashMap.SimpleEntry<>(entry.getKey(), new SqlProfile.StatementStats(
+                    latency.count(), latency.total(TimeUnit.MILLISECONDS), latency.mean(TimeUnit.MILLISECONDS),
+                    latency.max(TimeUnit.MILLISECONDS), percentiles, rows.mean(), rows.max())));
+        }
+        entries.sort(Comparator.comparingDouble(
+                (Map.Entry<String, SqlProfile.StatementStats> entry) -> entry.getValue().getTotalMillis()).reversed());
+        Map<String, SqlProfile.StatementStats> statements = new LinkedHashMap<>();
+        for (Map.Entry<String, SqlProfile.StatementStats> entry : entries) {
+            statements.put(entry.getKey(), entry.getValue());
+        }
+
+        List<CapturedSql> executions = new ArrayList<>();
+        for (int i = 0; i < captured.length(); i++) {
+            CapturedSql execution = captured.get(i);
+            if (execution != null) {
+                executions.add(execution);
+            }
+        }
+        executions.sort(Comparator.comparingDouble(CapturedSql::getDurationMillis).reversed());
+        return new SqlProfile(statements, executions, new LinkedHashMap<>(plans));
+    }
+
+    public void shutdown() {
+        explainExecutor.shutdownNow();
+    }
+
+    private void explain(MappedStatement ms, Prepared prepared, String inlined) {
+        long now = System.currentTimeMillis();
+        long interval = properties.getExplainInterval().toMillis();
+        Long last = explainedAt.get(ms.getId());
+        if (last != null && now - last < interval) {
+            return;
+        }
+        if (last == null ? explainedAt.putIfAbsent(ms.getId(), now) != null
+                : !explainedAt.replace(ms.getId(), last, now)) {
+            return;
+        }
+        String sql = "EXPLAIN " + prepared.boundSql.getSql();
+        Object[] args = SqlKeyUtil.parameterValues(ms, prepared.boundSql).toArray();
+        // Explain on the datasource and as the tenant the statement ran on
+        String ds = prepared.datasource;
+        String tenant = tenantRouter != null ? tenantRouter.currentTenant() : null;
+        explainExecutor.execute(() -> {
+            if (ds != null) {
+                DynamicDataSourceContextHolder.push(ds);
+            }
+            try {
+                List<Map<String, Object>> plan = tenant != null
+                        ? TenantContext.call(tenant, () -> jdbcTemplate.queryForList(sql, args))
+                        : jdbcTemplate.queryForList(sql, args);
+                plans.put(ms.getId(), new ExplainPlan(inlined, plan, System.currentTimeMillis()));
+            } catch (RuntimeException e) {
+                log.debug("Failed to explain {}", ms.getId(), e);
+            } finally {
+                if (ds != null) {
+                    DynamicDataSourceContextHolder.poll();
+                }
+            }
+        });
+    }
+
+    /**
+     * SQL of a statement as prepared, and the datasource chosen at that point
+     */
+    public static final class Prepared {
+        private final BoundSql boundSql;
+        private final String datasource;
+
+        Prepared(BoundSql boundSql, String datasource) {
+            this.boundSql = boundSql;
+            this.datasource = datasource;
+        }
+    }
+
+    private final class Meters {
+        private final Timer timer;
+        private final DistributionSummary rows;
+
+        private Meters(MappedStatement ms) {
+            String type = ms.getSqlCommandType().name().toLowerCase();
+            this.timer = Timer.builder(STATEMENT_TIMER)
+                    .description("Mapped statement latency")
+                    .tag("statement", ms.getId())
+                    .tag("type", type)
+                    .publishPercentileHistogram(properties.isHistogram())
+                    .publishPercentiles(properties.getPercentiles())
+                    .maximumExpectedValue(properties.getMaximumExpectedValue())
+                    .register(registry);
+            this.rows = DistributionSummary.builder(ROWS_SUMMARY)
+                    .description("Rows returned or affected by a mapped statement")
+                    .tag("statement", ms.getId())
+                    .tag("type", type)
+                    .register(registry);
+        }
+    }
+}
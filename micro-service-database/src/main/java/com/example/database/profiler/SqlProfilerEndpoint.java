@@ -0,0 +1,22 @@
+package com.example.database.profiler;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Exposes statement latency, captured SQL and plans at /actuator/sqlprofile
+ */
+@Endpoint(id = "sqlprofile")
+public class SqlProfilerEndpoint {
+
+    private final SqlProfiler sqlProfiler;
+
+    public SqlProfilerEndpoint(SqlProfiler sqlProfiler) {
+        this.sqlProfiler = sqlProfiler;
+    }
+
+    @ReadOperation
+    public SqlProfile profile() {
+        return sqlProfiler.getProfile();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.database.profiler;
+
+import com.baomidou.dynamic.datasource.toolkit.DynamicDataSourceContextHolder;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * Times every executor call and hands it to {@link SqlProfiler}. Cursor queries are timed until
+ * the cursor is open, their rows are unknown.
+ * <p>
+ * The SQL prepared for the call is kept as well, after shard and tenant rewrites, so captures and
+ * plans show what actually ran and where.
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor",
+                args = {MappedStatement.class, Object.class, RowBounds.class}),
+        @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})
+})
+public class SqlProfilerInterceptor implements Interceptor {
+
+    private final SqlProfiler sqlProfiler;
+
+    public SqlProfilerInterceptor(SqlProfiler sqlProfiler) {
+        this.sqlProfiler = sqlProfiler;
+    }
+
+    private static final ThreadLocal<SqlProfiler.Prepared> PREPARED = new ThreadLocal<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (invocation.getTarget() instanceof StatementHandler) {
+            Object statement = invocation.proceed();
+            // Read after proceed, every rewriting interceptor has run by now
+            PREPARED.set(new SqlProfiler.Prepared(((StatementHandler) invocation.getTarget()).getBoundSql(),
+                    DynamicDataSourceContextHolder.peek()));
+            return statement;
+        }
+        Object[] args = invocation.getArgs();
+        SqlProfiler.Prepared outer = PREPARED.get();
+        PREPARED.remove();
+        long start = System.nanoTime();
+        Object result = null;
+        try {
+            result = invocation.proceed();
+            return result;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : null;
+            SqlProfiler.Prepared prepared = PREPARED.get();
+            if (outer != null) {
+                PREPARED.set(outer);
+            } else {
+                PREPARED.remove();
+            }
+            sqlProfiler.record((MappedStatement) args[0], args[1], boundSql, prepared, nanos, rows(result));
+        }
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof List) {
+            return ((List<?>) result).size();
+        }
+        if (result instanceof Number) {
+            return ((Number) result).longValue();
+        }
+        return -1;
+    }
+}
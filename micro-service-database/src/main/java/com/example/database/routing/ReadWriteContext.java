@@ -0,0 +1,95 @@
+package com.example.database.routing;
+
+import java.util.function.Supplier;
+
+/**
+ * Remembers when the current thread last wrote, so its following reads stay on the primary
+ * until replicas have caught up.
+ * <p>
+ * The mark lives for one request: the starter clears it around servlet requests and carries it
+ * over Dubbo calls, and the framework's own pools run tasks with the submitting thread's mark.
+ */
+public final class ReadWriteContext {
+
+    private static final ThreadLocal<Long> LAST_WRITE = new ThreadLocal<>();
+
+    private ReadWriteContext() {
+    }
+
+    /**
+     * Record a write on the current thread
+     */
+    public static void markWrite() {
+        LAST_WRITE.set(System.nanoTime());
+    }
+
+    /**
+     * Time since the current thread last wrote
+     *
+     * @return nanoseconds, -1 when it has not written
+     */
+    public static long sinceLastWrite() {
+        Long lastWrite = LAST_WRITE.get();
+        return lastWrite == null ? -1 : System.nanoTime() - lastWrite;
+    }
+
+    /**
+     * Last write of the current thread, to hand to {@link #call(Long, Supplier)} on another thread
+     *
+     * @return System.nanoTime() of the write, null when it has not written
+     */
+    public static Long get() {
+        return LAST_WRITE.get();
+    }
+
+    /**
+     * Run action with the given last write, restoring the thread's own mark afterwards
+     *
+     * @param lastWrite mark from {@link #get()}, may be null
+     * @param action    action issuing statements
+     * @param <T>       result type
+     * @return action result
+     */
+    public static <T> T call(Long lastWrite, Supplier<T> action) {
+        Long previous = LAST_WRITE.get();
+        set(lastWrite);
+        try {
+            return action.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    private static void set(Long lastWrite) {
+        if (lastWrite != null) {
+            LAST_WRITE.set(lastWrite);
+        } else {
+            LAST_WRITE.remove();
+        }
+    }
+
+    /**
+     * Check whether the current thread wrote within the window
+     *
+     * @param windowNanos sticky window in nanoseconds
+     * @return true if reads should stay on the primary
+     */
+    public static boolean isSticky(long windowNanos) {
+        Long lastWrite = LAST_WRITE.get();
+        if (lastWrite == null) {
+            return false;
+        }
+        if (System.nanoTime() - lastWrite < windowNanos) {
+            return true;
+        }
+        LAST_WRITE.remove();
+        return false;
+    }
+
+    /**
+     * Forget the last write, call at the end of a request on pooled threads
+     */
+    public static void clear() {
+        LAST_WRITE.remove();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.database.routing;
+
+import com.baomidou.dynamic.datasource.toolkit.DynamicDataSourceContextHolder;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes SELECTs to a replica within max lag and leaves everything else on the primary.
+ * <p>
+ * Reads stay on the primary when a datasource was chosen explicitly (e.g. with @DS), inside a
+ * transaction, whose connection is already bound to the primary, and for sticky-window after the
+ * same thread wrote. Only writes issued through MyBatis count as writes.
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor",
+                args = {MappedStatement.class, Object.class, RowBounds.class})
+})
+public class ReadWriteRoutingInterceptor implements Interceptor {
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final long stickyWindowNanos;
+
+    public ReadWriteRoutingInterceptor(ReplicaLagMonitor lagMonitor, long stickyWindowNanos) {
+        this.lagMonitor = lagMonitor;
+        this.stickyWindowNanos = stickyWindowNanos;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        if (ms.getSqlCommandType() != SqlCommandType.SELECT) {
+            ReadWriteContext.markWrite();
+            return invocation.proceed();
+        }
+        if (DynamicDataSourceContextHolder.peek() != null
+                || TransactionSynchronizationManager.isActualTransactionActive()
+                || ReadWriteContext.isSticky(stickyWindowNanos)) {
+            return invocation.proceed();
+        }
+        String replica = lagMonitor.select();
+        if (replica == null) {
+            return invocation.proceed();
+        }
+        DynamicDataSourceContextHolder.push(replica);
+        try {
+            return invocation.proceed();
+        } finally {
+            DynamicDataSourceContextHolder.poll();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.database.routing;
+
+import com.baomidou.dynamic.datasource.DynamicRoutingDataSource;
+import com.example.database.config.MicroDatabaseProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures replication lag of every replica datasource on a fixed delay and keeps the list of
+ * replicas that are within max-lag. A replica whose status can't be read, or that reports no
+ * running replication, counts as lagging.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String[] LAG_COLUMNS = {"Seconds_Behind_Master", "Seconds_Behind_Source"};
+
+    private static final long UNKNOWN = -1;
+
+    private final DynamicRoutingDataSource routingDataSource;
+    private final MicroDatabaseProperties.ReadWrite properties;
+    private final String primary;
+
+    private final Map<String, Long> lags = new ConcurrentHashMap<>();
+    private volatile List<String> healthy = Collections.emptyList();
+    private final AtomicInteger next = new AtomicInteger();
+
+    private ScheduledExecutorService scheduler;
+
+    public ReplicaLagMonitor(DynamicRoutingDataSource routingDataSource, MicroDatabaseProperties.ReadWrite properties,
+                             String primary) {
+        this.routingDataSource = routingDataSource;
+        this.properties = properties;
+        this.primary = primary;
+    }
+
+    public void start() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("db-replica-lag-");
+        threadFactory.setDaemon(true);
+        scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        scheduler.scheduleWithFixedDelay(this::check, 0, properties.getLagCheckInterval().toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Pick a replica within max-lag, round robin
+     *
+     * @return datasource name, or null when no replica can serve reads
+     */
+    public String select() {
+        List<String> replicas = healthy;
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        return replicas.get((next.getAndIncrement() & Integer.MAX_VALUE) % replicas.size());
+    }
+
+    /**
+     * Last measured lag per replica
+     *
+     * @return lag in milliseconds, -1 when unknown
+     */
+    public Map<String, Long> getLags() {
+        return new LinkedHashMap<>(lags);
+    }
+
+    void check() {
+        long maxLag = properties.getMaxLag().toMillis();
+        List<String> replicas = new ArrayList<>();
+        for (Map.Entry<String, DataSource> entry : routingDataSource.getDataSources().entrySet()) {
+            String name = entry.getKey();
+            if (name.equals(primary) || !name.startsWith(properties.getReplicaPrefix())) {
+                continue;
+            }
+            long lag = measure(name, entry.getValue());
+            boolean usable = lag != UNKNOWN && lag <= maxLag;
+            Long previous = lags.put(name, lag);
+            boolean wasUsable = previous != null && previous != UNKNOWN && previous <= maxLag;
+            if (usable) {
+                replicas.add(name);
+                if (previous != null && !wasUsable) {
+                    log.info("Replica {} is back within max lag, lag {}ms", name, lag);
+                }
+            } else if (previous == null || wasUsable) {
+                log.warn("Replica {} skipped for reads, lag {}", name, lag == UNKNOWN ? "unknown" : lag + "ms");
+            }
+        }
+        lags.keySet().retainAll(routingDataSource.getDataSources().keySet());
+        healthy = Collections.unmodifiableList(replicas);
+    }
+
+    private long measure(String name, DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(properties.getLagQuery())) {
+            if (!rs.next()) {
+                return UNKNOWN;
+            }
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                String column = metaData.getColumnLabel(i);
+                for (String lagColumn : LAG_COLUMNS) {
+                    if (lagColumn.equalsIgnoreCase(column)) {
+                        long seconds = rs.getLong(i);
+                        // NULL means the replication threads are not running
+                        return rs.wasNull() ? UNKNOWN : TimeUnit.SECONDS.toMillis(seconds);
+                    }
+                }
+            }
+            return UNKNOWN;
+        } catch (SQLException e) {
+            log.debug("Measuring lag of replica {} failed", name, e);
+            return UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.database.shard;
+
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * How the per-shard results of a SELECT without sharding key are merged, read from its SQL.
+ * <p>
+ * A single COUNT projection is summed. Other SELECTs are merged in ORDER BY order when they have
+ * one and cut at their LIMIT. Statements whose shard results can't be merged correctly, e.g.
+ * other aggregates, GROUP BY, DISTINCT, UNION, an OFFSET or a bound LIMIT, are rejected.
+ */
+final class FanOut {
+
+    private static final Set<String> AGGREGATES = new HashSet<>(Arrays.asList(
+            "COUNT", "SUM", "MIN", "MAX", "AVG", "GROUP_CONCAT", "BIT_AND", "BIT_OR", "BIT_XOR", "STD", "STDDEV",
+            "STDDEV_POP", "STDDEV_SAMP", "VARIANCE", "VAR_POP", "VAR_SAMP", "JSON_ARRAYAGG", "JSON_OBJECTAGG"));
+
+    private final boolean count;
+    private final List<SortKey> order;
+    private final long limit;
+
+    private FanOut(boolean count, List<SortKey> order, long limit) {
+        this.count = count;
+        this.order = order;
+        this.limit = limit;
+    }
+
+    /**
+     * Merge plan of a SELECT
+     *
+     * @param sql SQL of the statement
+     * @return plan
+     * @throws IllegalStateException when the statement's shard results can't be merged
+     */
+    static FanOut of(String sql) {
+        Statement statement;
+        try {
+            statement = CCJSqlParserUtil.parse(sql);
+        } catch (JSQLParserException e) {
+            throw new IllegalStateException("Can't parse SQL to merge shard results", e);
+        }
+        if (!(statement instanceof Select) || !(((Select) statement).getSelectBody() instanceof PlainSelect)) {
+            throw new IllegalStateException("Only plain SELECTs can fan out to every shard");
+        }
+        PlainSelect select = (PlainSelect) ((Select) statement).getSelectBody();
+        if (select.getDistinct() != null || select.getGroupBy() != null || select.getHaving() != null) {
+            throw new IllegalStateException("DISTINCT and GROUP BY can't be merged across shards");
+        }
+
+        List<SelectItem> items = select.getSelectItems();
+        boolean aggregate = false;
+        for (SelectItem item : items) {
+            aggregate |= item instanceof SelectExpressionItem && isAggregate(((SelectExpressionItem) item).getExpression());
+        }
+        if (aggregate) {
+            Expression expression = items.size() == 1 ? ((SelectExpressionItem) items.get(0)).getExpression() : null;
+            if (isCount(expression) && select.getLimit() == null) {
+                return new FanOut(true, Collections.emptyList(), -1);
+            }
+            throw new IllegalStateException("Only a single COUNT can be summed across shards");
+        }
+
+        List<SortKey> order = new ArrayList<>();
+        if (select.getOrderByElements() != null) {
+            for (OrderByElement element : select.getOrderByElements()) {
+                if (!(element.getExpression() instanceof Column)) {
+                    throw new IllegalStateException("Only ORDER BY columns can be merged across shards: " + element);
+                }
+                String column = ((Column) element.getExpression()).getColumnName().replace("`", "");
+                order.add(new SortKey(column, element.isAsc()));
+            }
+        }
+        long limit = -1;
+        Limit sqlLimit = select.getLimit();
+        if (sqlLimit != null) {
+            Expression offset = sqlLimit.getOffset();
+            if ((offset != null && !isZero(offset)) || (select.getOffset() != null
+                    && !isZero(select.getOffset().getOffset()))) {
+                throw new IllegalStateException("OFFSET can't be merged across shards");
+            }
+            if (!(sqlLimit.getRowCount() instanceof LongValue)) {
+                throw new IllegalStateException("Only a literal LIMIT can be merged across shards");
+            }
+            limit = ((LongValue) sqlLimit.getRowCount()).getValue();
+        }
+        return new FanOut(false, order, limit);
+    }
+
+    boolean isCount() {
+        return count;
+    }
+
+    /**
+     * Merge shard rows in order and cut them at the limit
+     *
+     * @param results       rows of every shard, each sorted by the statement's order
+     * @param configuration MyBatis configuration, reads sort values of result objects
+     * @return merged rows
+     */
+    List<Object> merge(List<List<Object>> results, Configuration configuration) {
+        int limit = this.limit < 0 || this.limit > Integer.MAX_VALUE ? -1 : (int) this.limit;
+        if (order.isEmpty()) {
+            List<Object> rows = new ArrayList<>();
+            for (List<Object> shardRows : results) {
+                for (Object row : shardRows) {
+                    if (limit >= 0 && rows.size() >= limit) {
+                        return rows;
+                    }
+                    rows.add(row);
+                }
+            }
+            return rows;
+        }
+        Comparator<Object> comparator = null;
+        for (SortKey key : order) {
+            Comparator<Object> byKey = (a, b) -> compare(value(a, key.column, configuration),
+                    value(b, key.column, configuration));
+            byKey = key.asc ? byKey : byKey.reversed();
+            comparator = comparator == null ? byKey : comparator.thenComparing(byKey);
+        }
+        return ScatterGather.merge(results, comparator, limit);
+    }
+
+    private static boolean isAggregate(Expression expression) {
+        return expression instanceof Function
+                && AGGREGATES.contains(((Function) expression).getName().toUpperCase(Locale.ROOT));
+    }
+
+    private static boolean isCount(Expression expression) {
+        return expression instanceof Function && "COUNT".equalsIgnoreCase(((Function) expression).getName())
+                && !((Function) expression).isDistinct();
+    }
+
+    private static boolean isZero(Expression expression) {
+        return expression instanceof LongValue && ((LongValue) expression).getValue() == 0;
+    }
+
+    /**
+     * MySQL order: NULL before any value ascending
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    private static Object value(Object row, String column, Configuration configuration) {
+        if (row instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) row;
+            if (map.containsKey(column)) {
+                return map.get(column);
+            }
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (column.equalsIgnoreCase(String.valueOf(entry.getKey()))) {
+                    return entry.getValue();
+                }
+            }
+            throw new IllegalStateException("Shard rows have no ORDER BY column " + column);
+        }
+        MetaObject metaObject = configuration.newMetaObject(row);
+        String property = property(row.getClass(), column);
+        if (property == null) {
+            property = metaObject.findProperty(column, configuration.isMapUnderscoreToCamelCase());
+        }
+        if (property == null) {
+            throw new IllegalStateException("Can't sort " + row.getClass().getName() + " by column " + column);
+        }
+        return metaObject.getValue(property);
+    }
+
+    private static String property(Class<?> type, String column) {
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(type);
+        if (tableInfo == null) {
+            return null;
+        }
+        if (tableInfo.havePK() && column.equalsIgnoreCase(tableInfo.getKeyColumn())) {
+            return tableInfo.getKeyProperty();
+        }
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            if (column.equalsIgnoreCase(field.getColumn().replace("`", ""))) {
+                return field.getProperty();
+            }
+        }
+        return null;
+    }
+
+    private static final class SortKey {
+        private final String column;
+        private final boolean asc;
+
+        private SortKey(String column, boolean asc) {
+            this.column = column;
+            this.asc = asc;
+        }
+    }
+}
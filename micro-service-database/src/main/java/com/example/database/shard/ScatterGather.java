@@ -0,0 +1,186 @@
+package com.example.database.shard;
+
+import com.example.database.routing.ReadWriteContext;
+import com.example.database.tenant.TenantContext;
+import com.example.database.tenant.TenantRouter;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a query on every shard of a table in parallel and merges the results.
+ * <p>
+ * Shard queries run on a bounded pool, each on its shard's datasource with the logical table
+ * renamed, so mapper calls inside the supplier are written against the logical table. They run
+ * outside the caller's transaction, as the caller's tenant and with its last write, so reads after
+ * a recent write stay on the primary. When the pool and its queue are full
+ * the call is rejected instead of queueing without bound.
+ */
+public class ScatterGather {
+
+    private final ShardRouter router;
+    private final TenantRouter tenantRouter;
+    private final long timeoutNanos;
+    private final ThreadPoolExecutor executor;
+
+    public ScatterGather(ShardRouter router, TenantRouter tenantRouter, int parallelism, int queueCapacity,
+                         Duration timeout) {
+        this.router = router;
+        this.tenantRouter = tenantRouter;
+        this.timeoutNanos = timeout.toNanos();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("db-shard-");
+        threadFactory.setDaemon(true);
+        int threads = Math.max(1, parallelism);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run query on every shard and concatenate the rows
+     *
+     * @param table logical table
+     * @param query query against the logical table
+     * @param <T>   row type
+     * @return rows of all shards
+     */
+    public <T> List<T> queryAll(String table, Supplier<List<T>> query) {
+        List<T> rows = new ArrayList<>();
+        for (List<T> shardRows : scatter(table, query)) {
+            rows.addAll(shardRows);
+        }
+        return rows;
+    }
+
+    /**
+     * Run a sorted, limited query on every shard and merge the first rows across shards.
+     * The query must sort by the same order and fetch at least offset + limit rows per shard.
+     *
+     * @param table logical table
+     * @param query query against the logical table, sorted by order
+     * @param order order of the query
+     * @param limit rows returned, negative for all
+     * @param <T>   row type
+     * @return first rows of all shards in order
+     */
+    public <T> List<T> queryAll(String table, Supplier<List<T>> query, Comparator<? super T> order, int limit) {
+        return merge(scatter(table, query), order, limit);
+    }
+
+    /**
+     * K-way merge of sorted shard results
+     */
+    static <T> List<T> merge(List<List<T>> results, Comparator<? super T> order, int limit) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, results.size()),
+                (a, b) -> order.compare(a.row, b.row));
+        for (List<T> shardRows : results) {
+            Iterator<T> iterator = shardRows.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(iterator.next(), iterator));
+            }
+        }
+        List<T> rows = new ArrayList<>(limit < 0 ? 16 : limit);
+        while (!heads.isEmpty() && (limit < 0 || rows.size() < limit)) {
+            Head<T> head = heads.poll();
+            rows.add(head.row);
+            if (head.rest.hasNext()) {
+                heads.add(new Head<>(head.rest.next(), head.rest));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Run a count on every shard and sum it
+     *
+     * @param table logical table
+     * @param count count against the logical table
+     * @return total count
+     */
+    public long count(String table, Supplier<? extends Number> count) {
+        long total = 0;
+        for (Number shardCount : scatter(table, count)) {
+            total += shardCount == null ? 0 : shardCount.longValue();
+        }
+        return total;
+    }
+
+    /**
+     * Run query on every shard of table
+     *
+     * @param table logical table
+     * @param query query against the logical table
+     * @param <R>   result type
+     * @return results in shard order
+     */
+    public <R> List<R> scatter(String table, Supplier<R> query) {
+        ShardingRule rule = router.rule(table);
+        if (rule == null) {
+            throw new IllegalArgumentException("Table is not sharded: " + table);
+        }
+        return scatter(rule, query);
+    }
+
+    <R> List<R> scatter(ShardingRule rule, Supplier<R> query) {
+        List<Shard> shards = rule.getShards();
+        List<Future<R>> futures = new ArrayList<>(shards.size());
+        // Pool threads have no tenant, run them as the caller's for its schema and bulkhead
+        String tenant = tenantRouter == null ? null : tenantRouter.currentTenant();
+        Long lastWrite = ReadWriteContext.get();
+        try {
+            for (Shard shard : shards) {
+                futures.add(executor.submit(() -> ReadWriteContext.call(lastWrite, () -> tenant == null
+                        ? ShardingContext.onShard(shard, query)
+                        : TenantContext.call(tenant, () -> ShardingContext.onShard(shard, query)))));
+            }
+            long deadline = System.nanoTime() + timeoutNanos;
+            List<R> results = new ArrayList<>(shards.size());
+            for (Future<R> future : futures) {
+                results.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Shard query failed on " + rule.getTable(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Shard query timed out on " + rule.getTable(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for shards of " + rule.getTable(), e);
+        } finally {
+            // No-op for completed shards, frees the pool from the rest after a failure
+            for (Future<R> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class Head<T> {
+        private final T row;
+        private final Iterator<T> rest;
+
+        private Head(T row, Iterator<T> rest) {
+            this.row = row;
+            this.rest = rest;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.database.shard;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Physical location of one shard of a logical table
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+public class Shard {
+
+    /**
+     * Logical table name, lower case
+     */
+    private final String logicalTable;
+
+    /**
+     * Dynamic datasource holding the shard
+     */
+    private final String datasource;
+
+    /**
+     * Physical table name on the datasource
+     */
+    private final String table;
+
+    public Shard(String logicalTable, String datasource, String table) {
+        this.logicalTable = logicalTable;
+        this.datasource = datasource;
+        this.table = table;
+    }
+}
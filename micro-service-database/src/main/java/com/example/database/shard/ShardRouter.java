@@ -0,0 +1,106 @@
+package com.example.database.shard;
+
+import com.baomidou.dynamic.datasource.toolkit.DynamicDataSourceContextHolder;
+import com.baomidou.dynamic.datasource.tx.TransactionContext;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Sharding rules by logical table, and by mapper for mapped statements
+ */
+public class ShardRouter {
+
+    private final Map<String, ShardingRule> rules;
+    private final String primary;
+
+    private final ConcurrentMap<String, Optional<ShardingRule>> rulesByNamespace = new ConcurrentHashMap<>();
+
+    public ShardRouter(Collection<ShardingRule> rules, String primary) {
+        this.primary = primary;
+        Map<String, ShardingRule> byTable = new LinkedHashMap<>();
+        for (ShardingRule rule : rules) {
+            byTable.put(rule.getTable(), rule);
+        }
+        this.rules = Collections.unmodifiableMap(byTable);
+    }
+
+    /**
+     * Rule of a logical table
+     *
+     * @param table table name
+     * @return rule, null when the table isn't sharded
+     */
+    public ShardingRule rule(String table) {
+        return rules.get(table.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Rule of the entity table of the statement's mapper
+     *
+     * @param ms mapped statement
+     * @return rule, null when the mapper has no sharded entity
+     */
+    public ShardingRule rule(MappedStatement ms) {
+        String id = ms.getId();
+        int dot = id.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        return rulesByNamespace.computeIfAbsent(id.substring(0, dot), namespace -> {
+            TableInfo tableInfo = tableInfo(namespace);
+            return Optional.ofNullable(tableInfo == null ? null : rule(tableInfo.getTableName()));
+        }).orElse(null);
+    }
+
+    /**
+     * Fail unless the current Spring transaction can reach a shard. Its connection is the one of
+     * the datasource selected when it began, a statement pushed to another datasource would
+     * silently run there; @DSTransactional holds a connection per datasource instead.
+     *
+     * @param shard shard about to be written or read
+     * @throws IllegalStateException when the shard is on another datasource than the transaction
+     */
+    public void checkTransaction(Shard shard) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || StringUtils.hasText(TransactionContext.getXID())) {
+            return;
+        }
+        String current = DynamicDataSourceContextHolder.peek();
+        String bound = current != null ? current : primary;
+        if (!shard.getDatasource().equals(bound)) {
+            throw new IllegalStateException("Shard " + shard.getTable() + " is on datasource " + shard.getDatasource()
+                    + ", the transaction is bound to " + bound + "; use @DSTransactional to span shards");
+        }
+    }
+
+    /**
+     * Entity table info of a mapper
+     *
+     * @param namespace mapper interface name
+     * @return table info, null for mappers without entity
+     */
+    public TableInfo tableInfo(String namespace) {
+        for (TableInfo tableInfo : TableInfoHelper.getTableInfos()) {
+            if (namespace.equals(tableInfo.getCurrentNamespace())) {
+                return tableInfo;
+            }
+        }
+        return null;
+    }
+
+    public Collection<ShardingRule> getRules() {
+        return rules.values();
+    }
+}
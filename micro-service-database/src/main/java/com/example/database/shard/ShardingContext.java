@@ -0,0 +1,110 @@
+package com.example.database.shard;
+
+import com.baomidou.dynamic.datasource.toolkit.DynamicDataSourceContextHolder;
+
+import java.util.function.Supplier;
+
+/**
+ * Sharding key hint and bound shard of the current thread.
+ * <p>
+ * A hint routes statements whose sharding key can't be read from their parameters, e.g. custom
+ * XML statements. Statements run while a shard is bound go to that shard as is.
+ */
+public final class ShardingContext {
+
+    private static final ThreadLocal<Object> KEY = new ThreadLocal<>();
+
+    private static final ThreadLocal<Shard> SHARD = new ThreadLocal<>();
+
+    private ShardingContext() {
+    }
+
+    /**
+     * Run action with statements on sharded tables routed by key
+     *
+     * @param key    sharding key value
+     * @param action action issuing the statements
+     * @param <T>    result type
+     * @return action result
+     */
+    public static <T> T withKey(Object key, Supplier<T> action) {
+        Object previous = KEY.get();
+        KEY.set(key);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                KEY.set(previous);
+            } else {
+                KEY.remove();
+            }
+        }
+    }
+
+    /**
+     * Run action with statements on sharded tables routed by key
+     *
+     * @param key    sharding key value
+     * @param action action issuing the statements
+     */
+    public static void runWithKey(Object key, Runnable action) {
+        withKey(key, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run action on a shard's datasource with its logical table renamed to the physical one
+     */
+    static <T> T onShard(Shard shard, Supplier<T> action) {
+        Shard previous = bind(shard);
+        try {
+            return action.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Bind shard and push its datasource, returning the shard bound before
+     */
+    static Shard bind(Shard shard) {
+        Shard previous = SHARD.get();
+        SHARD.set(shard);
+        DynamicDataSourceContextHolder.push(shard.getDatasource());
+        return previous;
+    }
+
+    static void restore(Shard previous) {
+        DynamicDataSourceContextHolder.poll();
+        if (previous != null) {
+            SHARD.set(previous);
+        } else {
+            SHARD.remove();
+        }
+    }
+
+    /**
+     * Routing of the current thread that statement parameters don't show, so results cached per
+     * statement and parameters don't cross shards
+     *
+     * @return bound shard, else the key hint, null when neither is set
+     */
+    public static String routing() {
+        Shard shard = SHARD.get();
+        if (shard != null) {
+            return shard.getDatasource() + "/" + shard.getTable();
+        }
+        Object key = KEY.get();
+        return key != null ? "key=" + key : null;
+    }
+
+    static Object key() {
+        return KEY.get();
+    }
+
+    static Shard current() {
+        return SHARD.get();
+    }
+}
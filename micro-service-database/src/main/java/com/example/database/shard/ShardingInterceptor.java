@@ -0,0 +1,252 @@
+package com.example.database.shard;
+
+import com.baomidou.mybatisplus.core.MybatisParameterHandler;
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import com.baomidou.mybatisplus.core.toolkit.ParameterUtils;
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import com.baomidou.mybatisplus.core.toolkit.TableNameParser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
+import org.springframework.beans.BeanUtils;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Routes statements on sharded tables to the shard of their sharding key, and fans out SELECTs
+ * without a key to every shard.
+ * <p>
+ * The key is taken from the {@link ShardingContext} hint, else from the entity of insert and
+ * update statements, an AND-only equality on the sharding column in the wrapper, the column map,
+ * or the id of selectById/deleteById when the sharding column is the primary key. The datasource
+ * is chosen per statement. A Spring transaction keeps the connection it began with, so a
+ * statement whose shard is on another datasource fails instead of running there; use
+ * @DSTransactional to span shards.
+ * <p>
+ * Ids and insert fill values are set before an INSERT is routed, so the key may be generated.
+ * <p>
+ * Fanned-out results are merged as {@link FanOut} reads from the SQL: a single COUNT is summed,
+ * rows are merged in ORDER BY order and cut at a literal LIMIT. Paged queries, cursors and SELECTs
+ * whose results can't be merged need {@link ScatterGather}; statements without a key that can't
+ * fan out are rejected.
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor",
+                args = {MappedStatement.class, Object.class, RowBounds.class}),
+        @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})
+})
+public class ShardingInterceptor implements Interceptor {
+
+    private static final Pattern OR = Pattern.compile("\\bOR\\b", Pattern.CASE_INSENSITIVE);
+
+    private final ShardRouter router;
+    private final ScatterGather scatterGather;
+
+    private final ConcurrentMap<String, Pattern> equalityByColumn = new ConcurrentHashMap<>();
+
+    private final Cache<String, FanOut> fanOutBySql = Caffeine.newBuilder().maximumSize(10000).build();
+
+    private volatile SqlSessionFactory sqlSessionFactory;
+
+    public ShardingInterceptor(ShardRouter router, ScatterGather scatterGather) {
+        this.router = router;
+        this.scatterGather = scatterGather;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (invocation.getTarget() instanceof StatementHandler) {
+            rename((StatementHandler) invocation.getTarget());
+            return invocation.proceed();
+        }
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        if (ShardingContext.current() != null) {
+            return invocation.proceed();
+        }
+        ShardingRule rule = router.rule(ms);
+        if (rule == null) {
+            return invocation.proceed();
+        }
+
+        Object key = ShardingContext.key();
+        if (key == null) {
+            key = key(rule, ms, args[1]);
+        }
+        if (key == null && ms.getSqlCommandType() == SqlCommandType.INSERT) {
+            // MybatisParameterHandler assigns ids and runs insert fill only once the statement is
+            // prepared, on its shard; do it now, it leaves the values set here in place later
+            new MybatisParameterHandler(ms, args[1], ms.getBoundSql(args[1]));
+            key = key(rule, ms, args[1]);
+        }
+        if (key != null) {
+            Shard shard = rule.route(key);
+            router.checkTransaction(shard);
+            Shard previous = ShardingContext.bind(shard);
+            try {
+                return invocation.proceed();
+            } finally {
+                ShardingContext.restore(previous);
+            }
+        }
+
+        if (ms.getSqlCommandType() == SqlCommandType.SELECT
+                && "query".equals(invocation.getMethod().getName())
+                && args[2] == RowBounds.DEFAULT
+                && args[3] == Executor.NO_RESULT_HANDLER
+                && !ParameterUtils.findPage(args[1]).isPresent()) {
+            BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : ms.getBoundSql(args[1]);
+            return scatter(rule, ms, args[1], boundSql);
+        }
+        throw new IllegalStateException("No sharding key " + rule.getColumn() + " for " + ms.getId()
+                + ", set one with ShardingContext or query all shards with ScatterGather");
+    }
+
+    private Object scatter(ShardingRule rule, MappedStatement ms, Object parameter, BoundSql boundSql) {
+        FanOut fanOut;
+        try {
+            fanOut = fanOutBySql.get(boundSql.getSql(), FanOut::of);
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException("Can't fan out " + ms.getId() + " without sharding key "
+                    + rule.getColumn() + ", set one with ShardingContext or query all shards with ScatterGather", e);
+        }
+        Class<?> type = ms.getResultMaps().isEmpty() ? null : ms.getResultMaps().get(0).getType();
+        boolean number = type != null && (Number.class.isAssignableFrom(type) || type == long.class || type == int.class);
+        if (fanOut.isCount() && !number) {
+            throw new IllegalStateException("Can't sum counts of " + ms.getId() + " into " + type
+                    + ", query all shards with ScatterGather");
+        }
+        SqlSessionFactory factory = sqlSessionFactory;
+        if (factory == null) {
+            factory = new DefaultSqlSessionFactory(ms.getConfiguration());
+            sqlSessionFactory = factory;
+        }
+        SqlSessionFactory sessions = factory;
+        List<List<Object>> results = scatterGather.scatter(rule, () -> {
+            try (SqlSession session = sessions.openSession()) {
+                return session.selectList(ms.getId(), parameter);
+            }
+        });
+
+        if (!fanOut.isCount()) {
+            return fanOut.merge(results, ms.getConfiguration());
+        }
+        long total = 0;
+        for (List<Object> rows : results) {
+            for (Object row : rows) {
+                total += row == null ? 0 : ((Number) row).longValue();
+            }
+        }
+        Object sum = type == Integer.class || type == int.class ? (Object) (int) total : (Object) total;
+        return new ArrayList<>(Collections.singletonList(sum));
+    }
+
+    private Object key(ShardingRule rule, MappedStatement ms, Object parameter) {
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(rule.getTable());
+        if (parameter == null || tableInfo == null) {
+            return null;
+        }
+        if (tableInfo.getEntityType().isInstance(parameter)) {
+            return rule.keyOf(tableInfo, parameter);
+        }
+        if (parameter instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) parameter;
+            Object entity = map.containsKey(Constants.ENTITY) ? map.get(Constants.ENTITY) : null;
+            if (tableInfo.getEntityType().isInstance(entity)) {
+                Object key = rule.keyOf(tableInfo, entity);
+                if (key != null) {
+                    return key;
+                }
+            }
+            Object wrapper = map.containsKey(Constants.WRAPPER) ? map.get(Constants.WRAPPER) : null;
+            if (wrapper instanceof AbstractWrapper) {
+                Object key = key(rule, (AbstractWrapper<?, ?, ?>) wrapper);
+                if (key != null) {
+                    return key;
+                }
+            }
+            Object columnMap = map.containsKey(Constants.COLUMN_MAP) ? map.get(Constants.COLUMN_MAP) : null;
+            return columnMap instanceof Map ? ((Map<?, ?>) columnMap).get(rule.getColumn()) : null;
+        }
+        String id = ms.getId();
+        if (BeanUtils.isSimpleValueType(parameter.getClass())
+                && rule.getColumn().equalsIgnoreCase(tableInfo.getKeyColumn())
+                && (id.endsWith(".selectById") || id.endsWith(".deleteById"))) {
+            return parameter;
+        }
+        return null;
+    }
+
+    /**
+     * Value of "column = ?" in a wrapper without OR, which would let rows of other shards match
+     */
+    private Object key(ShardingRule rule, AbstractWrapper<?, ?, ?> wrapper) {
+        String segment = wrapper.getSqlSegment();
+        if (segment == null || OR.matcher(segment).find()) {
+            return null;
+        }
+        Pattern equality = equalityByColumn.computeIfAbsent(rule.getColumn(), column -> Pattern.compile(
+                "(?:^|[\\s(.`])" + Pattern.quote(column) + "`?\\s*=\\s*#\\{" + Constants.WRAPPER
+                        + "\\.paramNameValuePairs\\.(\\w+)}", Pattern.CASE_INSENSITIVE));
+        Matcher matcher = equality.matcher(segment);
+        return matcher.find() ? wrapper.getParamNameValuePairs().get(matcher.group(1)) : null;
+    }
+
+    /**
+     * Rename the logical table of the bound shard to its physical table
+     */
+    private static void rename(StatementHandler handler) {
+        Shard shard = ShardingContext.current();
+        if (shard == null || shard.getTable().equals(shard.getLogicalTable())) {
+            return;
+        }
+        PluginUtils.MPBoundSql boundSql = PluginUtils.mpBoundSql(handler.getBoundSql());
+        String sql = boundSql.sql();
+        List<TableNameParser.SqlToken> names = new ArrayList<>();
+        new TableNameParser(sql).accept(names::add);
+        StringBuilder builder = new StringBuilder(sql.length() + 8);
+        int last = 0;
+        for (TableNameParser.SqlToken name : names) {
+            String table = name.getValue().replace("`", "");
+            if (!shard.getLogicalTable().equals(table.toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            builder.append(sql, last, name.getStart()).append(shard.getTable());
+            last = name.getEnd();
+        }
+        if (last > 0) {
+            boundSql.sql(builder.append(sql, last, sql.length()).toString());
+        }
+    }
+}
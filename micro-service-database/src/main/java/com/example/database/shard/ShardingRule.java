@@ -0,0 +1,132 @@
+package com.example.database.shard;
+
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Maps sharding key values of one logical table to shards.
+ * <p>
+ * Shards are numbered across datasources first, so consecutive keys land on different
+ * datasources: shard i is on datasources[i % datasources] in table logical_(i / datasources),
+ * or in the logical table itself with one table per datasource. Numeric keys, and strings holding
+ * a plain long such as "123" from a wrapper or RPC parameter, are taken modulo the shard count, so
+ * both forms of a key reach the same shard. Other keys go by the hash code of their string form.
+ * Changing the layout moves rows.
+ */
+public class ShardingRule {
+
+    private final String table;
+    private final String column;
+    private final List<Shard> shards;
+    private final int datasourceCount;
+
+    public ShardingRule(String table, String column, List<String> datasources, int tablesPerDatasource) {
+        if (datasources == null || datasources.isEmpty()) {
+            throw new IllegalArgumentException("Sharded table " + table + " has no datasources");
+        }
+        this.table = table.toLowerCase(Locale.ROOT);
+        this.column = column;
+        this.datasourceCount = datasources.size();
+        int tables = Math.max(1, tablesPerDatasource);
+        List<Shard> all = new ArrayList<>(datasourceCount * tables);
+        for (int i = 0; i < datasourceCount * tables; i++) {
+            String physical = tables == 1 ? this.table : this.table + "_" + (i / datasourceCount);
+            all.add(new Shard(this.table, datasources.get(i % datasourceCount), physical));
+        }
+        this.shards = Collections.unmodifiableList(all);
+    }
+
+    /**
+     * Shard of a sharding key value
+     *
+     * @param key sharding key value, not null
+     * @return shard
+     */
+    public Shard route(Object key) {
+        return shards.get((int) Math.floorMod(hash(key), (long) shards.size()));
+    }
+
+    private static long hash(Object key) {
+        if (key instanceof Number) {
+            return ((Number) key).longValue();
+        }
+        String text = key.toString();
+        if (isLong(text)) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                // Out of long range
+            }
+        }
+        return text.hashCode();
+    }
+
+    /**
+     * Digits with an optional minus and no leading zero, exactly what Long.toString produces
+     */
+    private static boolean isLong(String text) {
+        int start = text.startsWith("-") ? 1 : 0;
+        if (text.length() == start || text.length() > start + 19
+                || (text.charAt(start) == '0' && text.length() > start + 1)) {
+            return false;
+        }
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return !"-0".equals(text);
+    }
+
+    /**
+     * Sharding key value of an entity of this table
+     *
+     * @param tableInfo entity table info
+     * @param entity    entity
+     * @return key value, null when unset
+     */
+    public Object keyOf(TableInfo tableInfo, Object entity) {
+        String property = property(tableInfo);
+        return property == null ? null : tableInfo.getPropertyValue(entity, property);
+    }
+
+    /**
+     * Entity property mapped to the sharding column
+     *
+     * @param tableInfo entity table info
+     * @return property name, null when the entity doesn't map the column
+     */
+    public String property(TableInfo tableInfo) {
+        if (tableInfo.havePK() && column.equalsIgnoreCase(tableInfo.getKeyColumn())) {
+            return tableInfo.getKeyProperty();
+        }
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            if (column.equalsIgnoreCase(field.getColumn())) {
+                return field.getProperty();
+            }
+        }
+        return null;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public int getDatasourceCount() {
+        return datasourceCount;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.database.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * RFC 4180 CSV with a header row, columns declared up front:
+ * <pre>
+ * new CsvExportWriter&lt;User&gt;(out, 500).column("id", User::getId).column("name", User::getName)
+ * </pre>
+ * CSV has no room for a trailer, a failed export is just cut short.
+ *
+ * @param <T> row type
+ */
+public class CsvExportWriter<T> extends ExportWriter<T> {
+
+    private final List<String> headers = new ArrayList<>();
+
+    private final List<Function<? super T, ?>> extractors = new ArrayList<>();
+
+    public CsvExportWriter(OutputStream out, int flushRows) {
+        super(out, flushRows);
+    }
+
+    /**
+     * Add a column
+     *
+     * @param header    header text
+     * @param extractor reads the column value of a row
+     * @return this writer
+     */
+    public CsvExportWriter<T> column(String header, Function<? super T, ?> extractor) {
+        headers.add(header);
+        extractors.add(extractor);
+        return this;
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        for (int i = 0; i < headers.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeField(headers.get(i));
+        }
+        writer.write("\r\n");
+    }
+
+    @Override
+    protected void writeRow(T row) throws IOException {
+        for (int i = 0; i < extractors.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = extractors.get(i).apply(row);
+            if (value != null) {
+                writeField(value.toString());
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeField(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.database.stream;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Writes rows to an output stream as they arrive, flushing every flushRows rows so an HTTP
+ * response goes out in chunks and the buffer never holds more than one chunk.
+ * <p>
+ * Use it as the consumer of {@link StreamQuery#forEach}, e.g. inside a StreamingResponseBody.
+ *
+ * @param <T> row type
+ */
+public abstract class ExportWriter<T> implements Consumer<T>, Closeable {
+
+    protected final Writer writer;
+
+    private final int flushRows;
+
+    private long count;
+
+    protected ExportWriter(OutputStream out, int flushRows) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.flushRows = Math.max(1, flushRows);
+    }
+
+    @Override
+    public void accept(T row) {
+        try {
+            if (count == 0) {
+                writeHeader();
+            }
+            writeRow(row);
+            if (++count % flushRows == 0) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Finish a complete export
+     */
+    @Override
+    public void close() throws IOException {
+        if (count == 0) {
+            writeHeader();
+        }
+        writeTrailer(null);
+        writer.flush();
+    }
+
+    /**
+     * Finish an export that broke off, telling the client it is incomplete where the format allows
+     *
+     * @param cause failure
+     */
+    public void fail(Throwable cause) throws IOException {
+        writeTrailer(cause);
+        writer.flush();
+    }
+
+    /**
+     * Number of rows written
+     *
+     * @return row count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    protected void writeHeader() throws IOException {
+    }
+
+    protected abstract void writeRow(T row) throws IOException;
+
+    protected void writeTrailer(Throwable cause) throws IOException {
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.database.stream;
+
+import com.example.common.response.Result;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * One JSON object per line. The last line is a Result: success with the row count as data, or the
+ * error, so clients can tell a complete export from one that broke off.
+ *
+ * @param <T> row type
+ */
+public class NdjsonExportWriter<T> extends ExportWriter<T> {
+
+    private final ObjectWriter objectWriter;
+
+    public NdjsonExportWriter(OutputStream out, ObjectMapper objectMapper, int flushRows) {
+        super(out, flushRows);
+        this.objectWriter = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(SerializationFeature.INDENT_OUTPUT)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    @Override
+    protected void writeRow(T row) throws IOException {
+        objectWriter.writeValue(writer, row);
+        writer.write('\n');
+    }
+
+    @Override
+    protected void writeTrailer(Throwable cause) throws IOException {
+        Result<Long> result = cause == null
+                ? Result.success(getCount())
+                : Result.error(cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+        objectWriter.writeValue(writer, result);
+        writer.write('\n');
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.database.stream;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import com.example.database.config.MicroDatabaseProperties;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs a mapper's selectList over a server-side cursor, so rows are read as they are consumed and
+ * memory stays constant however many rows match.
+ * <p>
+ * The statement holds its connection until the stream is closed, and on MySQL that connection
+ * can't run anything else meanwhile. Inside a transaction the transaction's connection is used.
+ */
+@Component
+public class StreamQuery {
+
+    private static final String SELECT_LIST = ".selectList";
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private MicroDatabaseProperties databaseProperties;
+
+    /**
+     * Hand every matching row to consumer on this thread, reading the next row only after it returns
+     *
+     * @param mapperType mapper of the entity
+     * @param wrapper    query conditions, null for all rows
+     * @param consumer   row consumer
+     * @param <T>        entity type
+     * @return number of rows
+     */
+    public <T> long forEach(Class<? extends BaseMapper<T>> mapperType, Wrapper<T> wrapper, Consumer<? super T> consumer) {
+        long count = 0;
+        try (Stream<T> rows = stream(mapperType, wrapper)) {
+            for (T row : (Iterable<T>) rows::iterator) {
+                consumer.accept(row);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Open a lazy stream of matching rows, it must be closed to release the connection
+     *
+     * @param mapperType mapper of the entity
+     * @param wrapper    query conditions, null for all rows
+     * @param <T>        entity type
+     * @return rows, read from the server as the stream is consumed
+     */
+    public <T> Stream<T> stream(Class<? extends BaseMapper<T>> mapperType, Wrapper<T> wrapper) {
+        MapperMethod.ParamMap<Object> parameter = new MapperMethod.ParamMap<>();
+        parameter.put(Constants.WRAPPER, wrapper);
+        parameter.put("param1", wrapper);
+
+        SqlSession session = sqlSessionFactory.openSession();
+        Cursor<T> cursor;
+        StreamingFetchSizeInterceptor.begin(databaseProperties.getStream().getFetchSize());
+        try {
+            cursor = session.selectCursor(mapperType.getName() + SELECT_LIST, parameter);
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        } finally {
+            StreamingFetchSizeInterceptor.end();
+        }
+        return StreamSupport.stream(cursor.spliterator(), false).onClose(() -> {
+            try {
+                cursor.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                session.close();
+            }
+        });
+    }
+}
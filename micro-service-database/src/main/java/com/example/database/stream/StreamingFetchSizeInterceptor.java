@@ -0,0 +1,45 @@
+package com.example.database.stream;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Sets the streaming fetch size on statements prepared while a StreamQuery opens its cursor,
+ * other statements keep their mapped fetch size.
+ */
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})
+})
+public class StreamingFetchSizeInterceptor implements Interceptor {
+
+    private static final ThreadLocal<Integer> FETCH_SIZE = new ThreadLocal<>();
+
+    /**
+     * Apply fetchSize to statements prepared on this thread until {@link #end()}
+     *
+     * @param fetchSize JDBC fetch size
+     */
+    static void begin(int fetchSize) {
+        FETCH_SIZE.set(fetchSize);
+    }
+
+    static void end() {
+        FETCH_SIZE.remove();
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object statement = invocation.proceed();
+        Integer fetchSize = FETCH_SIZE.get();
+        if (fetchSize != null) {
+            ((Statement) statement).setFetchSize(fetchSize);
+        }
+        return statement;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.database.tenant;
+
+import java.util.function.Supplier;
+
+/**
+ * Tenant of the current thread set explicitly, takes precedence over {@link TenantResolver}s.
+ * Set it in request filters or message listeners, and clear it at the end on pooled threads.
+ */
+public final class TenantContext {
+
+    private static final ThreadLocal<String> TENANT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    /**
+     * Run action as tenant
+     *
+     * @param tenantId tenant id
+     * @param action   action issuing statements
+     * @param <T>      result type
+     * @return action result
+     */
+    public static <T> T call(String tenantId, Supplier<T> action) {
+        String previous = TENANT.get();
+        TENANT.set(tenantId);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                TENANT.set(previous);
+            } else {
+                TENANT.remove();
+            }
+        }
+    }
+
+    public static void set(String tenantId) {
+        TENANT.set(tenantId);
+    }
+
+    public static String get() {
+        return TENANT.get();
+    }
+
+    public static void clear() {
+        TENANT.remove();
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.database.tenant;
+
+/**
+ * Source of the current tenant id, e.g. the RPC context or the current request
+ */
+@FunctionalInterface
+public interface TenantResolver {
+
+    /**
+     * Tenant of the current thread
+     *
+     * @return tenant id, null or blank when unknown
+     */
+    String resolve();
+}
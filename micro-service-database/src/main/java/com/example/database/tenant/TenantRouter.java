@@ -0,0 +1,191 @@
+package com.example.database.tenant;
+
+import com.baomidou.dynamic.datasource.toolkit.DynamicDataSourceContextHolder;
+import com.example.database.config.MicroDatabaseProperties;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the current tenant and its datasource, schema and connection bulkhead.
+ * Tenants without their own entry share the defaults, each with a bulkhead of its own.
+ * Tenant ids must match id-pattern, they come from callers and end up in SQL.
+ */
+public class TenantRouter {
+
+    private final MicroDatabaseProperties.Tenant properties;
+    private final List<TenantResolver> resolvers;
+    private final Pattern idPattern;
+
+    private final ConcurrentMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public TenantRouter(MicroDatabaseProperties.Tenant properties, List<TenantResolver> resolvers) {
+        this.properties = properties;
+        this.resolvers = resolvers;
+        this.idPattern = Pattern.compile(properties.getIdPattern());
+    }
+
+    /**
+     * Tenant of the current thread, from {@link TenantContext} first, then the resolvers in order
+     *
+     * @return tenant id, null when unknown
+     * @throws IllegalArgumentException when the id doesn't match id-pattern
+     */
+    public String currentTenant() {
+        String tenant = TenantContext.get();
+        if (StringUtils.hasText(tenant)) {
+            return check(tenant);
+        }
+        for (TenantResolver resolver : resolvers) {
+            tenant = resolver.resolve();
+            if (StringUtils.hasText(tenant)) {
+                return check(tenant);
+            }
+        }
+        return null;
+    }
+
+    private String check(String tenant) {
+        if (!idPattern.matcher(tenant).matches()) {
+            throw new IllegalArgumentException("Invalid tenant id, expected " + idPattern.pattern());
+        }
+        return tenant;
+    }
+
+    /**
+     * Datasource of a tenant
+     *
+     * @param tenant tenant id
+     * @return datasource name, null to keep the current routing
+     */
+    public String datasource(String tenant) {
+        MicroDatabaseProperties.Tenant.Route route = properties.getTenants().get(tenant);
+        String datasource = route != null && StringUtils.hasText(route.getDatasource())
+                ? route.getDatasource()
+                : properties.getDatasource();
+        return StringUtils.hasText(datasource) ? datasource : null;
+    }
+
+    /**
+     * Schema holding a tenant's tables
+     *
+     * @param tenant tenant id
+     * @return schema, null when tables are not qualified
+     */
+    public String schema(String tenant) {
+        check(tenant);
+        MicroDatabaseProperties.Tenant.Route route = properties.getTenants().get(tenant);
+        if (route != null && StringUtils.hasText(route.getSchema())) {
+            return route.getSchema();
+        }
+        return StringUtils.hasText(properties.getSchemaPattern())
+                ? properties.getSchemaPattern().replace("{tenant}", tenant)
+                : null;
+    }
+
+    /**
+     * Table name qualified with a tenant's schema, for SQL that bypasses {@link TenantSchemaInterceptor}
+     *
+     * @param tenant tenant id, may be null
+     * @param table  unqualified table name
+     * @return schema.table, or table when the tenant has no schema
+     */
+    public String qualify(String tenant, String table) {
+        String schema = tenant == null ? null : schema(tenant);
+        return schema == null ? table : schema + "." + table;
+    }
+
+    /**
+     * Where the current tenant's tables live, to keep data cached per table apart between tenants
+     *
+     * @return datasource/schema, null without a tenant or when its statements run like a tenantless thread's
+     */
+    public String scope() {
+        String tenant = currentTenant();
+        if (tenant == null) {
+            return null;
+        }
+        // Same precedence as TenantRoutingDataSource, a datasource chosen explicitly wins
+        String datasource = DynamicDataSourceContextHolder.peek() == null ? datasource(tenant) : null;
+        String schema = schema(tenant);
+        if (datasource == null && schema == null) {
+            return null;
+        }
+        return (datasource == null ? "" : datasource) + "/" + (schema == null ? "" : schema);
+    }
+
+    /**
+     * Connection permits of a tenant. Beyond maximum-tenants idle bulkheads are dropped, one with
+     * permits out never is, so a permit taken must be confirmed with {@link #holds(String, Semaphore)}.
+     *
+     * @param tenant tenant id
+     * @return bulkhead, null when the tenant is not limited
+     */
+    public Semaphore bulkhead(String tenant) {
+        MicroDatabaseProperties.Tenant.Route route = properties.getTenants().get(tenant);
+        int maxConnections = route != null && route.getMaxConnections() > 0
+                ? route.getMaxConnections()
+                : properties.getMaxConnections();
+        if (maxConnections <= 0) {
+            return null;
+        }
+        Bulkhead bulkhead = bulkheads.get(tenant);
+        if (bulkhead == null) {
+            bulkhead = bulkheads.computeIfAbsent(tenant, k -> new Bulkhead(maxConnections));
+            if (bulkheads.size() > properties.getMaximumTenants()) {
+                dropIdle(tenant);
+            }
+        }
+        return bulkhead;
+    }
+
+    /**
+     * Whether a permit just taken from bulkhead counts against the tenant. False when the bulkhead
+     * was dropped as idle in between, the permit must then be released and taken again.
+     *
+     * @param tenant   tenant id
+     * @param bulkhead bulkhead the permit was taken from
+     * @return true if bulkhead is still the tenant's
+     */
+    public boolean holds(String tenant, Semaphore bulkhead) {
+        // Locks the entry like dropIdle, so a bulkhead confirmed here is no longer idle to it
+        return bulkheads.computeIfPresent(tenant, (k, current) -> current) == bulkhead;
+    }
+
+    /**
+     * Drop idle bulkheads of other tenants, the one just added is about to be used
+     */
+    private void dropIdle(String keep) {
+        for (String tenant : bulkheads.keySet()) {
+            if (!tenant.equals(keep)) {
+                bulkheads.computeIfPresent(tenant, (k, bulkhead) -> bulkhead.isIdle() ? null : bulkhead);
+            }
+        }
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return properties.getAcquireTimeout().toMillis();
+    }
+
+    /**
+     * Semaphore knowing its size, so it is only dropped with every permit back
+     */
+    private static final class Bulkhead extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        private final int permits;
+
+        private Bulkhead(int permits) {
+            super(permits, true);
+            this.permits = permits;
+        }
+
+        private boolean isIdle() {
+            return availablePermits() >= permits;
+        }
+    }
+}
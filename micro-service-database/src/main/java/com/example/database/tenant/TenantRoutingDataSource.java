@@ -0,0 +1,112 @@
+package com.example.database.tenant;
+
+import com.baomidou.dynamic.datasource.DynamicRoutingDataSource;
+import com.baomidou.dynamic.datasource.toolkit.DynamicDataSourceContextHolder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Routing datasource that sends the current tenant to its datasource and caps the connections a
+ * tenant holds at once, so one tenant's heavy queries can't drain a pool shared with others.
+ * <p>
+ * A datasource chosen explicitly (@DS, shard, replica) wins over the tenant's. The permit is held
+ * from getConnection until the connection is closed, for a transaction that is its whole length.
+ * Threads without a tenant are neither routed nor limited.
+ */
+public class TenantRoutingDataSource extends DynamicRoutingDataSource {
+
+    private final TenantRouter tenantRouter;
+
+    public TenantRoutingDataSource(TenantRouter tenantRouter) {
+        this.tenantRouter = tenantRouter;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        String tenant = tenantRouter.currentTenant();
+        if (tenant == null) {
+            return super.getConnection();
+        }
+        Semaphore bulkhead = acquire(tenant);
+        try {
+            String datasource = DynamicDataSourceContextHolder.peek() == null ? tenantRouter.datasource(tenant) : null;
+            Connection connection;
+            if (datasource == null) {
+                connection = super.getConnection();
+            } else {
+                DynamicDataSourceContextHolder.push(datasource);
+                try {
+                    connection = super.getConnection();
+                } finally {
+                    DynamicDataSourceContextHolder.poll();
+                }
+            }
+            return bulkhead == null ? connection : releasing(connection, bulkhead);
+        } catch (SQLException | RuntimeException e) {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Take a connection permit of tenant
+     *
+     * @return bulkhead holding the permit, null when the tenant is not limited
+     */
+    private Semaphore acquire(String tenant) throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tenantRouter.getAcquireTimeoutMillis());
+        try {
+            for (;;) {
+                Semaphore bulkhead = tenantRouter.bulkhead(tenant);
+                if (bulkhead == null) {
+                    return null;
+                }
+                if (!bulkhead.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw new SQLTransientConnectionException("Tenant " + tenant + " holds its maximum connections");
+                }
+                if (tenantRouter.holds(tenant, bulkhead)) {
+                    return bulkhead;
+                }
+                // Dropped as idle while we waited, take the permit from the tenant's current bulkhead
+                bulkhead.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted waiting for a connection of tenant " + tenant, e);
+        }
+    }
+
+    /**
+     * Connection giving the permit back on its first close
+     */
+    private static Connection releasing(Connection connection, Semaphore bulkhead) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(TenantRoutingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if ("close".equals(method.getName()) && method.getParameterCount() == 0) {
+                        try {
+                            connection.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                bulkhead.release();
+                            }
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+}
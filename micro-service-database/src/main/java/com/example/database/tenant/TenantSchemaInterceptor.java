@@ -0,0 +1,56 @@
+package com.example.database.tenant;
+
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import com.baomidou.mybatisplus.core.toolkit.TableNameParser;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Qualifies unqualified table names with the current tenant's schema, for tenants sharing a
+ * datasource with a schema each. Statements of threads without a tenant or schema are unchanged.
+ */
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})
+})
+public class TenantSchemaInterceptor implements Interceptor {
+
+    private final TenantRouter tenantRouter;
+
+    public TenantSchemaInterceptor(TenantRouter tenantRouter) {
+        this.tenantRouter = tenantRouter;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        String tenant = tenantRouter.currentTenant();
+        String schema = tenant == null ? null : tenantRouter.schema(tenant);
+        if (schema != null) {
+            PluginUtils.MPBoundSql boundSql = PluginUtils.mpBoundSql(
+                    ((StatementHandler) invocation.getTarget()).getBoundSql());
+            boundSql.sql(qualify(boundSql.sql(), schema));
+        }
+        return invocation.proceed();
+    }
+
+    private static String qualify(String sql, String schema) {
+        List<TableNameParser.SqlToken> names = new ArrayList<>();
+        new TableNameParser(sql).accept(names::add);
+        StringBuilder builder = new StringBuilder(sql.length() + names.size() * (schema.length() + 1));
+        int last = 0;
+        for (TableNameParser.SqlToken name : names) {
+            if (name.getValue().indexOf('.') >= 0) {
+                continue;
+            }
+            builder.append(sql, last, name.getStart()).append(schema).append('.');
+            last = name.getStart();
+        }
+        return builder.append(sql, last, sql.length()).toString();
+    }
+}
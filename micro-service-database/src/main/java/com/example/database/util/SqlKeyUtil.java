@@ -0,0 +1,167 @@
+package com.example.database.util;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keys and readable forms of statement executions: statement, whitespace-normalized SQL and bound
+ * parameter values
+ */
+public final class SqlKeyUtil {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private SqlKeyUtil() {
+    }
+
+    /**
+     * Build the key of a statement execution
+     *
+     * @param ms       mapped statement
+     * @param boundSql bound SQL
+     * @return key text
+     */
+    public static String key(MappedStatement ms, BoundSql boundSql) {
+        return key(ms, boundSql, null);
+    }
+
+    /**
+     * Build the key of a statement execution that also depends on routing
+     *
+     * @param ms       mapped statement
+     * @param boundSql bound SQL
+     * @param routing  where the statement runs when the SQL doesn't tell, e.g. its shard, may be null
+     * @return key text
+     */
+    public static String key(MappedStatement ms, BoundSql boundSql, String routing) {
+        StringBuilder key = new StringBuilder(ms.getId()).append('\n').append(normalize(boundSql.getSql()));
+        for (Object value : parameterValues(ms, boundSql)) {
+            key.append('\n').append(value);
+        }
+        if (routing != null) {
+            key.append("\n@").append(routing);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Values bound to the placeholders of boundSql, in order
+     *
+     * @param ms       mapped statement
+     * @param boundSql bound SQL
+     * @return parameter values
+     */
+    public static List<Object> parameterValues(MappedStatement ms, BoundSql boundSql) {
+        List<ParameterMapping> mappings = boundSql.getParameterMappings();
+        List<Object> values = new ArrayList<>(mappings.size());
+        Object parameterObject = boundSql.getParameterObject();
+        Configuration configuration = ms.getConfiguration();
+        MetaObject metaObject = null;
+        // Same value resolution as DefaultParameterHandler
+        for (ParameterMapping mapping : mappings) {
+            if (mapping.getMode() == ParameterMode.OUT) {
+                continue;
+            }
+            String property = mapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameterObject == null) {
+                value = null;
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+                value = parameterObject;
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(parameterObject);
+                }
+                value = metaObject.getValue(property);
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * Normalized SQL with parameter values inlined, for logs and diagnostics only
+     *
+     * @param ms       mapped statement
+     * @param boundSql bound SQL
+     * @return readable SQL
+     */
+    public static String inline(MappedStatement ms, BoundSql boundSql) {
+        String sql = normalize(boundSql.getSql());
+        List<Object> values = parameterValues(ms, boundSql);
+        StringBuilder inlined = new StringBuilder(sql.length() + values.size() * 8);
+        int next = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '?' && next < values.size()) {
+                Object value = values.get(next++);
+                if (value == null) {
+                    inlined.append("NULL");
+                } else if (value instanceof Number || value instanceof Boolean) {
+                    inlined.append(value);
+                } else {
+                    inlined.append('\'').append(value.toString().replace("'", "''")).append('\'');
+                }
+            } else {
+                inlined.append(c);
+            }
+        }
+        return inlined.toString();
+    }
+
+    /**
+     * Collapse whitespace runs so formatting differences don't split keys
+     *
+     * @param sql SQL
+     * @return normalized SQL
+     */
+    public static String normalize(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        boolean space = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * SHA-256 of text as hex, for keys stored outside the process
+     *
+     * @param text text
+     * @return hex digest
+     */
+    public static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.database.writebehind;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * One buffered column update as written to the write-behind journal
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JournalEntry implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Logical table name
+     */
+    private String table;
+
+    /**
+     * Primary key column
+     */
+    private String keyColumn;
+
+    /**
+     * Primary key value
+     */
+    private Object id;
+
+    /**
+     * Updated column
+     */
+    private String column;
+
+    /**
+     * True to assign value, false to add delta
+     */
+    private boolean set;
+
+    /**
+     * Assigned value
+     */
+    private Object value;
+
+    /**
+     * Added delta
+     */
+    private long delta;
+
+    /**
+     * Tenant that made the update, null without one
+     */
+    private String tenant;
+}
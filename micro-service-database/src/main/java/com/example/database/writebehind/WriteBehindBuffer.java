@@ -0,0 +1,574 @@
+package com.example.database.writebehind;
+
+import com.baomidou.dynamic.datasource.DynamicRoutingDataSource;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.example.database.cache.QueryCacheInterceptor;
+import com.example.database.config.MicroDatabaseProperties;
+import com.example.database.shard.Shard;
+import com.example.database.shard.ShardRouter;
+import com.example.database.shard.ShardingRule;
+import com.example.database.tenant.TenantContext;
+import com.example.database.tenant.TenantRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigInteger;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Buffers column increments and assignments of hot rows and writes them behind, so thousands of
+ * "SET count = count + 1" per second on one row become one UPDATE per flush.
+ * <p>
+ * Updates are merged per primary key: increments add up, an assignment replaces what came before.
+ * Rows are flushed every flush-interval, early once flush-rows rows are pending, and on shutdown,
+ * as JDBC-batched UPDATEs in short transactions. A failed batch is merged back and retried on the
+ * next flush; after max-attempts failures its rows are logged and dropped. Reads see flushed state
+ * only, the query cache of written tables is invalidated after each flush.
+ * <p>
+ * Durability:
+ * <ul>
+ * <li>NONE: updates buffered since the last flush are lost if the process dies.</li>
+ * <li>JOURNAL: updates are appended to a local journal first and replayed on startup. Updates
+ * of a flush that failed part way may be applied twice after a crash, and assigned values come
+ * back as their JSON types.</li>
+ * <li>FLUSH_ON_COMMIT: updates made in a transaction are merged within it and written right
+ * before it commits, on its connection; updates outside transactions are buffered as with NONE.
+ * Rows of sharded tables are written to their shard in a transaction of its own, so they commit
+ * just before the surrounding transaction and don't roll back with it.</li>
+ * </ul>
+ * Sharded tables must be sharded by primary key, their rows are written to the shard of the key.
+ * Rows are written to the datasource and schema of the tenant that updated them, unless a
+ * datasource is configured or the row's shard names one.
+ */
+@Slf4j
+public class WriteBehindBuffer {
+
+    private final DataSource dataSource;
+    private final MicroDatabaseProperties.WriteBehind properties;
+    private final ShardRouter shardRouter;
+    private final QueryCacheInterceptor queryCacheInterceptor;
+    private final TenantRouter tenantRouter;
+    private final WriteBehindJournal journal;
+
+    private final ConcurrentMap<RowKey, PendingRow> pending = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Target> targets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Writer> writers = new ConcurrentHashMap<>();
+
+    /**
+     * Held shared by writers to the buffer and exclusively while it is drained with the journal rotated
+     */
+    private final ReentrantReadWriteLock drainLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean earlyFlushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+
+    public WriteBehindBuffer(DataSource dataSource, MicroDatabaseProperties.WriteBehind properties,
+                             ShardRouter shardRouter, QueryCacheInterceptor queryCacheInterceptor,
+                             TenantRouter tenantRouter) {
+        this.dataSource = dataSource;
+        this.properties = properties;
+        this.shardRouter = shardRouter;
+        this.queryCacheInterceptor = queryCacheInterceptor;
+        this.tenantRouter = tenantRouter;
+        this.journal = properties.getDurability() == MicroDatabaseProperties.WriteBehind.Durability.JOURNAL
+                ? new WriteBehindJournal(Paths.get(properties.getJournalDirectory()),
+                properties.isJournalFsync())
+                : null;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("db-write-behind-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    public void start() {
+        if (journal != null) {
+            List<JournalEntry> entries = journal.open();
+            for (JournalEntry entry : entries) {
+                merge(new RowKey(entry.getTable(), entry.getKeyColumn(), entry.getId(), entry.getTenant()),
+                        entry.getColumn(),
+                        new ColumnUpdate(entry.isSet(), entry.getValue(), entry.getDelta()));
+            }
+            if (!entries.isEmpty()) {
+                log.info("Replayed {} write-behind journal entries into {} rows", entries.size(), pending.size());
+                flush();
+            }
+        }
+        long interval = properties.getFlushInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(properties.getFlushInterval().toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Add delta to a numeric column of a row
+     *
+     * @param entityType MyBatis-Plus entity of the table
+     * @param id         primary key value
+     * @param property   entity property of the column
+     * @param delta      added value, may be negative
+     */
+    public void increment(Class<?> entityType, Object id, String property, long delta) {
+        record(entityType, id, property, new ColumnUpdate(false, null, delta));
+    }
+
+    /**
+     * Assign a column of a row, the last assignment before a flush wins
+     *
+     * @param entityType MyBatis-Plus entity of the table
+     * @param id         primary key value
+     * @param property   entity property of the column
+     * @param value      assigned value
+     */
+    public void set(Class<?> entityType, Object id, String property, Object value) {
+        record(entityType, id, property, new ColumnUpdate(true, value, 0));
+    }
+
+    /**
+     * Write all buffered rows now
+     *
+     * @return rows written
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            Map<RowKey, PendingRow> rows;
+            int segments = 0;
+            drainLock.writeLock().lock();
+            try {
+                rows = new HashMap<>(pending);
+                pending.clear();
+                if (journal != null) {
+                    segments = journal.rotate();
+                }
+            } finally {
+                drainLock.writeLock().unlock();
+            }
+            Map<RowKey, PendingRow> failed = new HashMap<>();
+            Map<String, Set<String>> tables = new LinkedHashMap<>();
+            int written = write(rows, failed, tables);
+            if (queryCacheInterceptor != null) {
+                // Cache scopes follow the tenant of the invalidating thread
+                tables.forEach((tenant, names) -> {
+                    if (tenant == null) {
+                        queryCacheInterceptor.invalidate(names);
+                    } else {
+                        TenantContext.call(tenant, () -> {
+                            queryCacheInterceptor.invalidate(names);
+                            return null;
+                        });
+                    }
+                });
+            }
+            if (journal != null) {
+                if (failed.isEmpty()) {
+                    journal.release(segments);
+                } else {
+                    // Rotated segments shrink to the failed rows instead of piling up until they succeed
+                    journal.compact(segments, entries(failed));
+                }
+            }
+            if (!failed.isEmpty()) {
+                // Older than anything buffered meanwhile, keep it underneath
+                drainLock.readLock().lock();
+                try {
+                    for (Map.Entry<RowKey, PendingRow> entry : failed.entrySet()) {
+                        pending.merge(entry.getKey(), entry.getValue(), (newer, older) -> older.then(newer));
+                    }
+                } finally {
+                    drainLock.readLock().unlock();
+                }
+            }
+            return written;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        earlyFlushRequested.set(false);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Write-behind flush failed", e);
+        }
+    }
+
+    private void record(Class<?> entityType, Object id, String property, ColumnUpdate update) {
+        Target target = target(entityType, property);
+        RowKey key = new RowKey(target.table, target.keyColumn, id,
+                tenantRouter == null ? null : tenantRouter.currentTenant());
+        if (properties.getDurability() == MicroDatabaseProperties.WriteBehind.Durability.FLUSH_ON_COMMIT
+                && TransactionSynchronizationManager.isActualTransactionActive()) {
+            transactionRows().merge(key, new PendingRow(target.column, update), PendingRow::then);
+            return;
+        }
+        drainLock.readLock().lock();
+        try {
+            if (journal != null) {
+                journal.append(new JournalEntry(key.table, key.keyColumn, key.id, target.column, update.set,
+                        update.value, update.delta, key.tenant));
+            }
+            merge(key, target.column, update);
+        } finally {
+            drainLock.readLock().unlock();
+        }
+        int size = pending.size();
+        if (size >= properties.getMaxPendingRows()) {
+            // Writers outpace flushing, make them pay for it instead of growing without bound
+            flush();
+        } else if (size >= properties.getFlushRows() && earlyFlushRequested.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    private void merge(RowKey key, String column, ColumnUpdate update) {
+        pending.compute(key, (k, row) -> {
+            if (row == null) {
+                return new PendingRow(column, update);
+            }
+            row.merge(column, update);
+            return row;
+        });
+    }
+
+    /**
+     * Rows updated by the current transaction, written before it commits
+     */
+    private Map<RowKey, PendingRow> transactionRows() {
+        @SuppressWarnings("unchecked")
+        Map<RowKey, PendingRow> rows = (Map<RowKey, PendingRow>) TransactionSynchronizationManager.getResource(this);
+        if (rows != null) {
+            return rows;
+        }
+        Map<RowKey, PendingRow> created = new LinkedHashMap<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                Map<String, Map<String, List<Object[]>>> byDatasource = new LinkedHashMap<>();
+                Set<String> tables = new LinkedHashSet<>();
+                for (Map.Entry<RowKey, PendingRow> entry : created.entrySet()) {
+                    RowKey key = entry.getKey();
+                    Shard shard = shard(key);
+                    // Unsharded rows go on the transaction's connection, keyed null
+                    String ds = shard == null ? null : shard.getDatasource() == null ? "" : shard.getDatasource();
+                    String table = qualify(key, shard == null ? key.table : shard.getTable());
+                    byDatasource.computeIfAbsent(ds, k -> new LinkedHashMap<>())
+                            .computeIfAbsent(entry.getValue().sql(table, key.keyColumn), k -> new ArrayList<>())
+                            .add(entry.getValue().args(key.id));
+                    tables.add(key.table);
+                }
+                for (Map.Entry<String, Map<String, List<Object[]>>> ds : byDatasource.entrySet()) {
+                    if (ds.getKey() == null) {
+                        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+                        ds.getValue().forEach(jdbcTemplate::batchUpdate);
+                        continue;
+                    }
+                    Writer writer = writers.computeIfAbsent(ds.getKey(), WriteBehindBuffer.this::writer);
+                    writer.transactionTemplate.executeWithoutResult(
+                            status -> ds.getValue().forEach(writer.jdbcTemplate::batchUpdate));
+                }
+                if (queryCacheInterceptor != null) {
+                    // Still inside the transaction, evicted once it commits
+                    queryCacheInterceptor.invalidate(tables);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WriteBehindBuffer.this);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Shard of a row, null for unsharded tables
+     */
+    private Shard shard(RowKey key) {
+        ShardingRule rule = shardRouter != null ? shardRouter.rule(key.table) : null;
+        return rule != null ? rule.route(key.id) : null;
+    }
+
+    /**
+     * Physical table name qualified with the schema of the row's tenant
+     */
+    private String qualify(RowKey key, String table) {
+        return tenantRouter == null ? table : tenantRouter.qualify(key.tenant, table);
+    }
+
+    /**
+     * Write rows in batched transactions per datasource, collecting rows of failed batches to retry
+     * and the logical tables written to by tenant
+     */
+    private int write(Map<RowKey, PendingRow> rows, Map<RowKey, PendingRow> failed, Map<String, Set<String>> tables) {
+        Map<String, Map<String, List<Map.Entry<RowKey, Object[]>>>> byDatasource = new LinkedHashMap<>();
+        for (Map.Entry<RowKey, PendingRow> entry : rows.entrySet()) {
+            RowKey key = entry.getKey();
+            Shard shard = shard(key);
+            String ds = shard == null ? properties.getDatasource() : shard.getDatasource();
+            if (ds == null && key.tenant != null && tenantRouter != null) {
+                ds = tenantRouter.datasource(key.tenant);
+            }
+            String table = qualify(key, shard == null ? key.table : shard.getTable());
+            byDatasource.computeIfAbsent(ds == null ? "" : ds, k -> new LinkedHashMap<>())
+                    .computeIfAbsent(entry.getValue().sql(table, key.keyColumn), k -> new ArrayList<>())
+                    .add(new LinkedHashMap.SimpleEntry<>(key, entry.getValue().args(key.id)));
+        }
+
+        int written = 0;
+        int batchSize = Math.max(1, properties.getBatchSize());
+        for (Map.Entry<String, Map<String, List<Map.Entry<RowKey, Object[]>>>> ds : byDatasource.entrySet()) {
+            Writer writer = writers.computeIfAbsent(ds.getKey(), this::writer);
+            for (Map.Entry<String, List<Map.Entry<RowKey, Object[]>>> statement : ds.getValue().entrySet()) {
+                List<Map.Entry<RowKey, Object[]>> all = statement.getValue();
+                for (int from = 0; from < all.size(); from += batchSize) {
+                    List<Map.Entry<RowKey, Object[]>> batch = all.subList(from, Math.min(from + batchSize, all.size()));
+                    List<Object[]> args = new ArrayList<>(batch.size());
+                    for (Map.Entry<RowKey, Object[]> row : batch) {
+                        args.add(row.getValue());
+                    }
+                    try {
+                        writer.transactionTemplate.executeWithoutResult(
+                                status -> writer.jdbcTemplate.batchUpdate(statement.getKey(), args));
+                        written += batch.size();
+                        for (Map.Entry<RowKey, Object[]> row : batch) {
+                            tables.computeIfAbsent(row.getKey().tenant, k -> new LinkedHashSet<>())
+                                    .add(row.getKey().table);
+                        }
+                    } catch (RuntimeException e) {
+                        log.warn("Write-behind batch of {} rows failed, retrying on next flush: {}",
+                                batch.size(), statement.getKey(), e);
+                        for (Map.Entry<RowKey, Object[]> row : batch) {
+                            PendingRow pendingRow = rows.get(row.getKey());
+                            if (++pendingRow.attempts < properties.getMaxAttempts()) {
+                                failed.put(row.getKey(), pendingRow);
+                            } else {
+                                log.error("Dropping write-behind update after {} failed flushes: {} {}",
+                                        pendingRow.attempts, statement.getKey(), Arrays.toString(row.getValue()));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return written;
+    }
+
+    private static List<JournalEntry> entries(Map<RowKey, PendingRow> rows) {
+        List<JournalEntry> entries = new ArrayList<>();
+        for (Map.Entry<RowKey, PendingRow> entry : rows.entrySet()) {
+            RowKey key = entry.getKey();
+            for (Map.Entry<String, ColumnUpdate> column : entry.getValue().columns.entrySet()) {
+                ColumnUpdate update = column.getValue();
+                entries.add(new JournalEntry(key.table, key.keyColumn, key.id, column.getKey(), update.set,
+                        update.value, update.delta, key.tenant));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * JDBC access bypassing routing, so flushes never follow a datasource pushed on the flushing thread
+     */
+    private Writer writer(String ds) {
+        DataSource target = dataSource instanceof DynamicRoutingDataSource
+                ? ((DynamicRoutingDataSource) dataSource).getDataSource(ds.isEmpty() ? null : ds)
+                : dataSource;
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(target));
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return new Writer(new JdbcTemplate(target), transactionTemplate);
+    }
+
+    private Target target(Class<?> entityType, String property) {
+        return targets.computeIfAbsent(entityType.getName() + "#" + property, k -> {
+            TableInfo tableInfo = TableInfoHelper.getTableInfo(entityType);
+            if (tableInfo == null || !tableInfo.havePK()) {
+                throw new IllegalArgumentException("Not a MyBatis-Plus entity with primary key: " + entityType.getName());
+            }
+            ShardingRule rule = shardRouter != null ? shardRouter.rule(tableInfo.getTableName()) : null;
+            if (rule != null && !rule.getColumn().equalsIgnoreCase(tableInfo.getKeyColumn())) {
+                throw new IllegalArgumentException("Write-behind needs " + tableInfo.getTableName()
+                        + " sharded by its primary key, not " + rule.getColumn());
+            }
+            for (TableFieldInfo field : tableInfo.getFieldList()) {
+                if (field.getProperty().equals(property)) {
+                    return new Target(tableInfo.getTableName(), tableInfo.getKeyColumn(), field.getColumn());
+                }
+            }
+            throw new IllegalArgumentException("No column for " + entityType.getName() + "." + property);
+        });
+    }
+
+    private static final class Target {
+        private final String table;
+        private final String keyColumn;
+        private final String column;
+
+        private Target(String table, String keyColumn, String column) {
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.column = column;
+        }
+    }
+
+    private static final class Writer {
+        private final JdbcTemplate jdbcTemplate;
+        private final TransactionTemplate transactionTemplate;
+
+        private Writer(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.transactionTemplate = transactionTemplate;
+        }
+    }
+
+    private static final class RowKey {
+        private final String table;
+        private final String keyColumn;
+        private final Object id;
+        private final String tenant;
+
+        private RowKey(String table, String keyColumn, Object id, String tenant) {
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.tenant = tenant;
+            // Journal replay reads small longs back as integers
+            this.id = id instanceof Integer || id instanceof Short || id instanceof Byte || id instanceof BigInteger
+                    ? (Object) ((Number) id).longValue()
+                    : id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RowKey)) {
+                return false;
+            }
+            RowKey other = (RowKey) o;
+            return table.equals(other.table) && keyColumn.equals(other.keyColumn) && id.equals(other.id)
+                    && Objects.equals(tenant, other.tenant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(table, keyColumn, id, tenant);
+        }
+    }
+
+    /**
+     * Merged updates of one row by column, mutated under the buffer's map entry lock only
+     */
+    private static final class PendingRow {
+        private final Map<String, ColumnUpdate> columns = new TreeMap<>();
+        /**
+         * Failed flushes, carried over when newer updates are merged on top
+         */
+        private int attempts;
+
+        private PendingRow(String column, ColumnUpdate update) {
+            columns.put(column, update);
+        }
+
+        private void merge(String column, ColumnUpdate update) {
+            columns.merge(column, update, ColumnUpdate::then);
+        }
+
+        /**
+         * This row followed by a newer one
+         */
+        private PendingRow then(PendingRow newer) {
+            for (Map.Entry<String, ColumnUpdate> column : newer.columns.entrySet()) {
+                merge(column.getKey(), column.getValue());
+            }
+            return this;
+        }
+
+        private String sql(String table, String keyColumn) {
+            StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+            boolean first = true;
+            for (Map.Entry<String, ColumnUpdate> column : columns.entrySet()) {
+                sql.append(first ? "" : ", ").append(column.getKey()).append(" = ");
+                if (!column.getValue().set) {
+                    sql.append(column.getKey()).append(" + ");
+                }
+                sql.append('?');
+                first = false;
+            }
+            return sql.append(" WHERE ").append(keyColumn).append(" = ?").toString();
+        }
+
+        private Object[] args(Object id) {
+            Object[] args = new Object[columns.size() + 1];
+            int i = 0;
+            for (ColumnUpdate update : columns.values()) {
+                args[i++] = update.set ? update.value : (Object) update.delta;
+            }
+            args[i] = id;
+            return args;
+        }
+    }
+
+    private static final class ColumnUpdate {
+        private final boolean set;
+        private final Object value;
+        private final long delta;
+
+        private ColumnUpdate(boolean set, Object value, long delta) {
+            this.set = set;
+            this.value = value;
+            this.delta = delta;
+        }
+
+        /**
+         * This update followed by a newer one
+         */
+        private ColumnUpdate then(ColumnUpdate newer) {
+            if (newer.set) {
+                return newer;
+            }
+            if (!set) {
+                return new ColumnUpdate(false, null, delta + newer.delta);
+            }
+            if (!(value instanceof Number)) {
+                throw new IllegalStateException("Can't increment a column assigned a non-numeric value: " + value);
+            }
+            return new ColumnUpdate(true, ((Number) value).longValue() + newer.delta, 0);
+        }
+    }
+}
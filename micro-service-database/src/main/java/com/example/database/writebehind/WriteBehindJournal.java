@@ -0,0 +1,181 @@
+package com.example.database.writebehind;
+
+import com.example.common.util.JsonUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only local log of buffered updates, one JSON line per update in numbered segment files.
+ * <p>
+ * Each flush rotates to a new segment. Segments are deleted once a flush that started after them
+ * succeeded, compacted to the updates still pending when it failed, and replayed on startup. Lines
+ * reach the OS on every append; with fsync they reach the disk too, at the cost of one sync per update.
+ */
+@Slf4j
+public class WriteBehindJournal {
+
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final boolean fsync;
+
+    private final List<Path> closed = new ArrayList<>();
+    private long sequence;
+    private Path current;
+    private FileChannel channel;
+
+    public WriteBehindJournal(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+    /**
+     * Open a new segment and read the entries of segments left by a previous run
+     *
+     * @return entries in write order
+     */
+    public synchronized List<JournalEntry> open() {
+        List<JournalEntry> entries = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+                for (Path segment : stream) {
+                    segments.add(segment);
+                }
+            }
+            Collections.sort(segments);
+            for (Path segment : segments) {
+                for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        entries.add(JsonUtil.fromJson(line, JournalEntry.class));
+                    } catch (RuntimeException e) {
+                        // Torn last line of a crashed write
+                        log.warn("Skipping unreadable write-behind journal line in {}", segment);
+                    }
+                }
+                String name = segment.getFileName().toString();
+                sequence = Math.max(sequence, Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                closed.add(segment);
+            }
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open write-behind journal " + directory, e);
+        }
+        return entries;
+    }
+
+    /**
+     * Append an entry to the current segment
+     *
+     * @param entry buffered update
+     */
+    public synchronized void append(JournalEntry entry) {
+        byte[] line = (JsonUtil.toJson(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to write-behind journal " + current, e);
+        }
+    }
+
+    /**
+     * Close the current segment and start a new one, call when the buffer is drained
+     *
+     * @return number of closed segments a successful flush may release
+     */
+    public synchronized int rotate() {
+        try {
+            channel.close();
+            closed.add(current);
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rotate write-behind journal " + current, e);
+        }
+        return closed.size();
+    }
+
+    /**
+     * Delete the first closed segments, their updates are in the database
+     *
+     * @param count value returned by {@link #rotate()} before the flush
+     */
+    public synchronized void release(int count) {
+        int released = Math.min(count, closed.size());
+        for (int i = 0; i < released; i++) {
+            try {
+                Files.deleteIfExists(closed.get(i));
+            } catch (IOException e) {
+                log.warn("Failed to delete write-behind journal segment {}", closed.get(i), e);
+            }
+        }
+        closed.subList(0, released).clear();
+    }
+
+    /**
+     * Replace the first closed segments with one holding entries still buffered after a failed flush
+     *
+     * @param count   value returned by {@link #rotate()} before the flush
+     * @param entries updates not yet in the database, merged per row and column
+     */
+    public synchronized void compact(int count, List<JournalEntry> entries) {
+        int compacted = Math.min(count, closed.size());
+        if (compacted == 0) {
+            return;
+        }
+        // Keep the newest name, so the compacted segment still sorts before the current one
+        Path target = closed.get(compacted - 1);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (JournalEntry entry : entries) {
+                lines.append(JsonUtil.toJson(entry)).append('\n');
+            }
+            Files.write(temp, lines.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The original segments stay, they still hold every update
+            log.warn("Failed to compact write-behind journal into {}", target, e);
+            return;
+        }
+        release(compacted - 1);
+    }
+
+    public synchronized void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to close write-behind journal {}", current, e);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        current = directory.resolve(String.format("%020d%s", ++sequence, SUFFIX));
+        channel = FileChannel.open(current, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+}
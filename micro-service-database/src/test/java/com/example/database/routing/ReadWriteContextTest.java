@@ -0,0 +1,54 @@
+package com.example.database.routing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadWriteContextTest {
+
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(10);
+
+    @AfterEach
+    void tearDown() {
+        ReadWriteContext.clear();
+    }
+
+    @Test
+    void markCarriedToAnotherThreadKeepsReadsSticky() {
+        ReadWriteContext.markWrite();
+        Long lastWrite = ReadWriteContext.get();
+
+        boolean sticky = CompletableFuture.supplyAsync(() ->
+                ReadWriteContext.call(lastWrite, () -> ReadWriteContext.isSticky(WINDOW))).join();
+
+        assertThat(sticky).isTrue();
+    }
+
+    @Test
+    void callRestoresTheThreadsOwnMark() {
+        ReadWriteContext.call(null, () -> {
+            ReadWriteContext.markWrite();
+            return null;
+        });
+        assertThat(ReadWriteContext.get()).isNull();
+
+        ReadWriteContext.markWrite();
+        Long own = ReadWriteContext.get();
+        ReadWriteContext.call(null, () -> {
+            assertThat(ReadWriteContext.isSticky(WINDOW)).isFalse();
+            return null;
+        });
+        assertThat(ReadWriteContext.get()).isEqualTo(own);
+    }
+
+    @Test
+    void sinceLastWriteIsNegativeWithoutWrite() {
+        assertThat(ReadWriteContext.sinceLastWrite()).isEqualTo(-1);
+        ReadWriteContext.markWrite();
+        assertThat(ReadWriteContext.sinceLastWrite()).isBetween(0L, WINDOW);
+    }
+}
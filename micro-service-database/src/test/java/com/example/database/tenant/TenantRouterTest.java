@@ -0,0 +1,107 @@
+package com.example.database.tenant;
+
+import com.example.database.config.MicroDatabaseProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TenantRouterTest {
+
+    @Test
+    void bulkheadWithPermitsOutIsNeverDropped() {
+        TenantRouter router = router(1, 2);
+        Semaphore a = router.bulkhead("a");
+        assertThat(a.tryAcquire()).isTrue();
+
+        router.bulkhead("b");
+        router.bulkhead("c");
+
+        assertThat(router.holds("a", a)).isTrue();
+        assertThat(router.bulkhead("a")).isSameAs(a);
+    }
+
+    @Test
+    void idleBulkheadsAreDroppedBeyondMaximumTenants() {
+        TenantRouter router = router(1, 2);
+        Semaphore a = router.bulkhead("a");
+
+        Semaphore b = router.bulkhead("b");
+
+        assertThat(router.holds("a", a)).isFalse();
+        assertThat(router.holds("b", b)).isTrue();
+        assertThat(router.bulkhead("a")).isNotSameAs(a);
+    }
+
+    @Test
+    void tenantNeverHoldsMoreThanItsPermitsWhileBulkheadsAreDropped() throws Exception {
+        int permits = 2;
+        TenantRouter router = router(1, permits);
+        AtomicInteger inUse = new AtomicInteger();
+        AtomicInteger maxInUse = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            pool.execute(() -> {
+                try {
+                    int i = 0;
+                    while (running.get()) {
+                        if (thread % 2 == 0) {
+                            // Other tenants coming and going, each pushes the map past maximum-tenants
+                            router.bulkhead("other" + thread + "_" + i++ % 100);
+                            continue;
+                        }
+                        Semaphore bulkhead = router.bulkhead("t");
+                        if (!bulkhead.tryAcquire()) {
+                            continue;
+                        }
+                        if (!router.holds("t", bulkhead)) {
+                            bulkhead.release();
+                            continue;
+                        }
+                        int now = inUse.incrementAndGet();
+                        maxInUse.accumulateAndGet(now, Math::max);
+                        inUse.decrementAndGet();
+                        bulkhead.release();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        Thread.sleep(500);
+        running.set(false);
+        pool.shutdown();
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(maxInUse.get()).isBetween(1, permits);
+    }
+
+    @Test
+    void tenantIdsOutsideIdPatternAreRejected() {
+        TenantRouter router = router(10, 2);
+
+        assertThatThrownBy(() -> router.schema("t1; DROP TABLE user")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TenantContext.call("t1`x", router::currentTenant))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static TenantRouter router(long maximumTenants, int maxConnections) {
+        MicroDatabaseProperties.Tenant properties = new MicroDatabaseProperties.Tenant();
+        properties.setMaximumTenants(maximumTenants);
+        properties.setMaxConnections(maxConnections);
+        properties.setSchemaPattern("tenant_{tenant}");
+        return new TenantRouter(properties, Collections.emptyList());
+    }
+}
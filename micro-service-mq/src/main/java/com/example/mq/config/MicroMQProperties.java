@@ -0,0 +1,59 @@
+package com.example.mq.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "micro.service.mq")
+public class MicroMQProperties {
+
+    /**
+     * Transactional outbox relayed to RocketMQ
+     */
+    private Outbox outbox = new Outbox();
+
+    @Data
+    public static class Outbox {
+        /**
+         * Whether OutboxPublisher and the relay are available
+         */
+        private boolean enabled = false;
+
+        /**
+         * Outbox table, on the primary datasource
+         */
+        private String table = "micro_outbox";
+
+        /**
+         * Rows read and published per relay round
+         */
+        private int batchSize = 500;
+
+        /**
+         * Maximum body bytes per RocketMQ batch, at most the broker's max message size
+         */
+        private int maxBatchBytes = 1024 * 1024;
+
+        /**
+         * Idle poll interval, commits that wrote events wake the relay earlier
+         */
+        private Duration pollInterval = Duration.ofMillis(500);
+
+        /**
+         * Pause after a failed round before retrying
+         */
+        private Duration retryInterval = Duration.ofSeconds(5);
+
+        /**
+         * Failed rounds the oldest unsent row may cause before it is parked and skipped
+         */
+        private int maxAttempts = 50;
+
+        /**
+         * MySQL named lock electing the one node that relays, keeps aggregate order across nodes
+         */
+        private String lockName = "micro_outbox_relay";
+    }
+}
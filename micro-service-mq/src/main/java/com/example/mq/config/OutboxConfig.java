@@ -0,0 +1,43 @@
+package com.example.mq.config;
+
+import com.example.mq.outbox.OutboxPublisher;
+import com.example.mq.outbox.OutboxRelay;
+import com.example.mq.util.MQProducer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+@Configuration
+@EnableConfigurationProperties(MicroMQProperties.class)
+@ConditionalOnClass(name = "org.springframework.jdbc.core.JdbcTemplate")
+@ConditionalOnProperty(prefix = "micro.service.mq", name = "outbox.enabled", havingValue = "true")
+public class OutboxConfig {
+
+    /**
+     * Relay publishes through MQProducer, registered here unless the application scans it
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public MQProducer mqProducer() {
+        return new MQProducer();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    public OutboxRelay outboxRelay(DataSource dataSource, MQProducer mqProducer, MicroMQProperties properties) {
+        return new OutboxRelay(dataSource, mqProducer, properties.getOutbox());
+    }
+
+    /**
+     * Writes through the application's DataSource, so inserts join the MyBatis transaction's connection
+     */
+    @Bean
+    public OutboxPublisher outboxPublisher(DataSource dataSource, OutboxRelay outboxRelay, MicroMQProperties properties) {
+        return new OutboxPublisher(new JdbcTemplate(dataSource), properties.getOutbox().getTable(), outboxRelay);
+    }
+}
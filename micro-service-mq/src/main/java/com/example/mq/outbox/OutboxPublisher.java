@@ -0,0 +1,105 @@
+package com.example.mq.outbox;
+
+import com.example.common.util.JsonUtil;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records events in the outbox table as part of the caller's transaction, replacing RocketMQ
+ * half-messages. Events of a transaction are written with one multi-row INSERT right before it
+ * commits, and the relay is woken once it has. Outside a transaction events are written at once.
+ * <pre>
+ * CREATE TABLE micro_outbox (
+ *     id            BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+ *     destination   VARCHAR(255) NOT NULL,
+ *     aggregate_key VARCHAR(128) NOT NULL,
+ *     payload       MEDIUMTEXT   NOT NULL,
+ *     attempts      INT          NOT NULL DEFAULT 0,
+ *     create_time   DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP
+ * );
+ * </pre>
+ * Delivery is at least once, consumers deduplicate by message key, which is the outbox id.
+ * <p>
+ * Rows go to the transaction's connection with an unqualified table name, so tenants with a schema
+ * of their own still share the outbox of the default schema. Tenants with a datasource of their
+ * own write to the outbox in that database, which the relay of the primary datasource never
+ * reads: run an {@link OutboxRelay} on each such datasource, with its own lock-name when they
+ * share a MySQL server.
+ */
+public class OutboxPublisher {
+
+    private static final int INSERT_ROWS = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String table;
+    private final OutboxRelay relay;
+
+    public OutboxPublisher(JdbcTemplate jdbcTemplate, String table, OutboxRelay relay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.table = table;
+        this.relay = relay;
+    }
+
+    /**
+     * Record an event to be sent once the current transaction commits
+     *
+     * @param destination  topic, or topic:tag
+     * @param aggregateKey key whose events are delivered in order, e.g. an order id
+     * @param event        event, sent as is when a String, as JSON otherwise
+     * @param <T>          event type
+     */
+    public <T> void publish(String destination, String aggregateKey, T event) {
+        Object[] row = {destination, aggregateKey, event instanceof String ? event : JsonUtil.toJson(event)};
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            insert(Collections.singletonList(row));
+            relay.wakeUp();
+            return;
+        }
+        pendingRows().add(row);
+    }
+
+    private List<Object[]> pendingRows() {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = (List<Object[]>) TransactionSynchronizationManager.getResource(this);
+        if (rows != null) {
+            return rows;
+        }
+        List<Object[]> created = new ArrayList<>();
+        TransactionSynchronizationManager.bindResource(this, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                insert(created);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(OutboxPublisher.this);
+                if (status == STATUS_COMMITTED) {
+                    relay.wakeUp();
+                }
+            }
+        });
+        return created;
+    }
+
+    private void insert(List<Object[]> rows) {
+        // Chunked to stay well under MySQL's 65535 placeholders per statement
+        for (int from = 0; from < rows.size(); from += INSERT_ROWS) {
+            List<Object[]> chunk = rows.subList(from, Math.min(from + INSERT_ROWS, rows.size()));
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+                    .append(" (destination, aggregate_key, payload) VALUES ");
+            List<Object> args = new ArrayList<>(chunk.size() * 3);
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+                Collections.addAll(args, chunk.get(i));
+            }
+            jdbcTemplate.update(sql.toString(), args.toArray());
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.mq.outbox;
+
+import com.example.mq.config.MicroMQProperties;
+import com.example.mq.util.MQProducer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.common.message.Message;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Publishes outbox rows in id order through {@link MQProducer} and deletes them once sent.
+ * <p>
+ * One node relays at a time, elected by a MySQL named lock held on a dedicated connection, so
+ * events of an aggregate are sent in the order they were committed. Events are written just
+ * before commit while the aggregate's row lock is held, so their ids follow commit order. Rows
+ * of an aggregate go to one queue; when a batch fails, the rest of its queue is retried in order
+ * on the next round. A crash between sending and deleting resends rows.
+ * <p>
+ * A round that sent some rows but not others counts an attempt against the oldest unsent row; a
+ * round that sent nothing, e.g. while the broker is down, only backs off. A row at max-attempts is
+ * parked: logged, left in the table and skipped, so one message that can never be sent doesn't
+ * stall the outbox. Later events of its aggregate are sent without it; reset its attempts to 0 to
+ * send it again.
+ */
+@Slf4j
+public class OutboxRelay {
+
+    private static final String SELECT =
+            "SELECT id, destination, aggregate_key, payload, attempts FROM %s WHERE attempts < ? ORDER BY id LIMIT ?";
+    private static final String ATTEMPT = "UPDATE %s SET attempts = attempts + 1 WHERE id = ?";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final MQProducer mqProducer;
+    private final MicroMQProperties.Outbox properties;
+    private final String selectSql;
+    private final String attemptSql;
+
+    private final Object signal = new Object();
+    private boolean woken;
+    private volatile boolean running;
+    private Thread thread;
+    private Connection lockConnection;
+
+    public OutboxRelay(DataSource dataSource, MQProducer mqProducer, MicroMQProperties.Outbox properties) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.mqProducer = mqProducer;
+        this.properties = properties;
+        this.selectSql = String.format(SELECT, properties.getTable());
+        this.attemptSql = String.format(ATTEMPT, properties.getTable());
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "mq-outbox-relay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void shutdown() {
+        running = false;
+        wakeUp();
+        try {
+            thread.join(properties.getRetryInterval().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Start the next round now instead of after the poll interval
+     */
+    public void wakeUp() {
+        synchronized (signal) {
+            woken = true;
+            signal.notifyAll();
+        }
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                long pause;
+                boolean wakeable = true;
+                try {
+                    if (!leader()) {
+                        pause = properties.getRetryInterval().toMillis();
+                        wakeable = false;
+                    } else {
+                        int relayed = relay();
+                        pause = relayed < 0 ? properties.getRetryInterval().toMillis()
+                                : relayed >= properties.getBatchSize() ? 0 : properties.getPollInterval().toMillis();
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Outbox relay round failed", e);
+                    releaseLock();
+                    pause = properties.getRetryInterval().toMillis();
+                }
+                await(pause, wakeable);
+            }
+        } finally {
+            releaseLock();
+        }
+    }
+
+    /**
+     * Publish one batch of rows
+     *
+     * @return rows published, -1 when some could not be sent
+     */
+    private int relay() {
+        List<Long> ids = new ArrayList<>();
+        List<Integer> attempts = new ArrayList<>();
+        List<Message> messages = new ArrayList<>();
+        List<String> hashKeys = new ArrayList<>();
+        jdbcTemplate.query(selectSql, rs -> {
+            long id = rs.getLong("id");
+            String destination = rs.getString("destination");
+            int colon = destination.indexOf(':');
+            Message message = colon < 0
+                    ? new Message(destination, rs.getString("payload").getBytes(StandardCharsets.UTF_8))
+                    : new Message(destination.substring(0, colon), destination.substring(colon + 1),
+                    rs.getString("payload").getBytes(StandardCharsets.UTF_8));
+            message.setKeys(String.valueOf(id));
+            ids.add(id);
+            attempts.add(rs.getInt("attempts"));
+            messages.add(message);
+            hashKeys.add(rs.getString("aggregate_key"));
+        }, properties.getMaxAttempts(), properties.getBatchSize());
+        if (messages.isEmpty()) {
+            return 0;
+        }
+
+        List<Message> unsent = mqProducer.syncSendOrderlyBatch(messages, hashKeys, properties.getMaxBatchBytes());
+        Set<Message> failed = Collections.newSetFromMap(new IdentityHashMap<>());
+        failed.addAll(unsent);
+        List<Long> sent = new ArrayList<>(ids.size());
+        int oldestUnsent = -1;
+        for (int i = 0; i < messages.size(); i++) {
+            if (!failed.contains(messages.get(i))) {
+                sent.add(ids.get(i));
+            } else if (oldestUnsent < 0) {
+                oldestUnsent = i;
+            }
+        }
+        delete(sent);
+        if (oldestUnsent >= 0 && !sent.isEmpty()) {
+            // The broker took other rows, so this one fails on its own; rows queued behind it failed because of it
+            jdbcTemplate.update(attemptSql, ids.get(oldestUnsent));
+            if (attempts.get(oldestUnsent) + 1 >= properties.getMaxAttempts()) {
+                log.error("Parking outbox row {} for {}, aggregate {}, after {} failed rounds",
+                        ids.get(oldestUnsent), messages.get(oldestUnsent).getTopic(), hashKeys.get(oldestUnsent),
+                        attempts.get(oldestUnsent) + 1);
+            }
+        }
+        if (!unsent.isEmpty()) {
+            log.warn("{} of {} outbox messages not sent, retrying", unsent.size(), messages.size());
+            return -1;
+        }
+        return sent.size();
+    }
+
+    private void delete(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("DELETE FROM ").append(properties.getTable()).append(" WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        jdbcTemplate.update(sql.append(')').toString(), ids.toArray());
+    }
+
+    /**
+     * Hold or try to take the relay lock
+     */
+    private boolean leader() {
+        try {
+            if (lockConnection != null) {
+                if (lockConnection.isValid(1)) {
+                    return true;
+                }
+                releaseLock();
+            }
+            Connection connection = dataSource.getConnection();
+            try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+                statement.setString(1, properties.getLockName());
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (rs.next() && rs.getInt(1) == 1) {
+                        lockConnection = connection;
+                        log.info("Outbox relay lock {} acquired", properties.getLockName());
+                        return true;
+                    }
+                }
+            } finally {
+                if (lockConnection != connection) {
+                    connection.close();
+                }
+            }
+            return false;
+        } catch (SQLException e) {
+            log.warn("Failed to take outbox relay lock {}", properties.getLockName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Release the named lock explicitly, closing a pooled connection keeps the session and its lock
+     */
+    private void releaseLock() {
+        if (lockConnection == null) {
+            return;
+        }
+        try (PreparedStatement statement = lockConnection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, properties.getLockName());
+            statement.executeQuery().close();
+        } catch (SQLException e) {
+            log.debug("Failed to release outbox relay lock, a broken session has released it", e);
+        }
+        try {
+            lockConnection.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close outbox relay lock connection", e);
+        }
+        lockConnection = null;
+    }
+
+    private void await(long millis, boolean wakeable) {
+        synchronized (signal) {
+            try {
+                long deadline = System.currentTimeMillis() + millis;
+                long remaining = millis;
+                while (running && remaining > 0 && !(wakeable && woken)) {
+                    signal.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            woken = false;
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package com.example.mq.util;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.SendResult;
+import org.apache.rocketmq.client.producer.SendStatus;
+import org.apache.rocketmq.common.message.MessageQueue;
 import org.apache.rocketmq.spring.core.RocketMQTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Slf4j
 @Component
 public class MQProducer {
@@ -64,4 +75,70 @@ public class MQProducer {
         Message<T> msg = MessageBuilder.withPayload(message).build();
         rocketMQTemplate.sendMessageInTransaction(topic, msg, null);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Send messages in batches, messages with the same hash key go to the same queue in list order.
+     * Once a batch fails, the rest of its queue is not sent so those messages keep their order; once
+     * the queues of a topic can't be fetched, none of its messages are sent.
+     *
+     * @param messages     messages in send order
+     * @param hashKeys     hash key of each message, e.g. its aggregate id
+     * @param maxBatchSize maximum body bytes per batch, at most the broker's message size limit
+     * @return messages not sent, empty when all were sent
+     */
+    public List<org.apache.rocketmq.common.message.Message> syncSendOrderlyBatch(
+            List<org.apache.rocketmq.common.message.Message> messages, List<String> hashKeys, int maxBatchSize) {
+        DefaultMQProducer producer = rocketMQTemplate.getProducer();
+        Map<MessageQueue, List<org.apache.rocketmq.common.message.Message>> byQueue = new LinkedHashMap<>();
+        Map<String, List<MessageQueue>> queuesByTopic = new LinkedHashMap<>();
+        Set<String> failedTopics = new HashSet<>();
+        List<org.apache.rocketmq.common.message.Message> unsent = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            org.apache.rocketmq.common.message.Message message = messages.get(i);
+            if (failedTopics.contains(message.getTopic())) {
+                // A later fetch may succeed and send newer messages ahead of this one's aggregate
+                unsent.add(message);
+                continue;
+            }
+            List<MessageQueue> queues;
+            try {
+                queues = queuesByTopic.get(message.getTopic());
+                if (queues == null) {
+                    queues = producer.fetchPublishMessageQueues(message.getTopic());
+                    queuesByTopic.put(message.getTopic(), queues);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to fetch queues of topic: {}", message.getTopic(), e);
+                failedTopics.add(message.getTopic());
+                unsent.add(message);
+                continue;
+            }
+            MessageQueue queue = queues.get(Math.floorMod(hashKeys.get(i).hashCode(), queues.size()));
+            byQueue.computeIfAbsent(queue, k -> new ArrayList<>()).add(message);
+        }
+
+        for (Map.Entry<MessageQueue, List<org.apache.rocketmq.common.message.Message>> entry : byQueue.entrySet()) {
+            List<org.apache.rocketmq.common.message.Message> queued = entry.getValue();
+            int from = 0;
+            while (from < queued.size()) {
+                int to = from;
+                int size = 0;
+                while (to < queued.size() && (to == from || size + queued.get(to).getBody().length <= maxBatchSize)) {
+                    size += queued.get(to++).getBody().length;
+                }
+                try {
+                    SendResult result = producer.send(new ArrayList<>(queued.subList(from, to)), entry.getKey());
+                    if (result.getSendStatus() != SendStatus.SEND_OK) {
+                        throw new IllegalStateException("Send status " + result.getSendStatus());
+                    }
+                } catch (Exception e) {
+                    log.warn("Failed to send batch of {} messages to queue: {}", to - from, entry.getKey(), e);
+                    unsent.addAll(queued.subList(from, queued.size()));
+                    break;
+                }
+                from = to;
+            }
+        }
+        return unsent;
+    }
+}
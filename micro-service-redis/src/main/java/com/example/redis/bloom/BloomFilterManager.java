@@ -0,0 +1,330 @@
+package com.example.redis.bloom;
+
+import com.example.redis.config.MicroRedisProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the configured {@link RedisBloomFilter}s: loads their local mirrors, reloads them every
+ * sync-interval, and relays added bits and switched bitmaps between nodes over pub/sub.
+ * <p>
+ * Messages are {@code node|A|filter|bitmapKey|offsets} and {@code node|S|filter}; a node ignores its
+ * own messages. They only speed up mirrors, writes read the live layout and rebuild target from redis.
+ */
+@Slf4j
+public class BloomFilterManager implements MessageListener {
+
+    private static final byte[] FIELD_BITS = bytes("bits");
+    private static final byte[] FIELD_HASHES = bytes("hashes");
+    private static final byte[] FIELD_KEY = bytes("key");
+
+    private static final String ADDED = "A";
+    private static final String SWITCHED = "S";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MicroRedisProperties.BloomFilter properties;
+    private final int batchSize;
+    private final byte[] channel;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<String, RedisBloomFilter> filters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public BloomFilterManager(RedisTemplate<String, Object> redisTemplate, MicroRedisProperties redisProperties) {
+        this.redisTemplate = redisTemplate;
+        this.properties = redisProperties.getBloomFilter();
+        this.batchSize = Math.max(1, redisProperties.getPipeline().getBatchSize());
+        this.channel = bytes(properties.getChannel());
+        for (Map.Entry<String, MicroRedisProperties.BloomFilter.Filter> entry : properties.getFilters().entrySet()) {
+            String name = entry.getKey();
+            filters.put(name, new RedisBloomFilter(name, properties.getKeyPrefix() + name, entry.getValue(), this));
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-bloom-sync-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    public void start() {
+        syncAll();
+        long interval = properties.getSyncInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::syncAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Get filter by name
+     *
+     * @param name filter name under micro.service.redis.bloom-filter.filters
+     * @return filter
+     */
+    public RedisBloomFilter getFilter(String name) {
+        RedisBloomFilter filter = filters.get(name);
+        if (filter == null) {
+            throw new IllegalArgumentException("Unknown bloom filter: " + name);
+        }
+        return filter;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|");
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        RedisBloomFilter filter = filters.get(parts[2]);
+        if (filter == null) {
+            return;
+        }
+        try {
+            if (ADDED.equals(parts[1]) && parts.length == 5) {
+                String[] values = parts[4].split(",");
+                long[] offsets = new long[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    offsets[i] = Long.parseLong(values[i]);
+                }
+                filter.onAdded(parts[3], offsets);
+            } else if (SWITCHED.equals(parts[1])) {
+                filter.onSwitched();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to apply bloom filter message for filter: {}", parts[2], e);
+        }
+    }
+
+    boolean isVerifyLocalNegatives() {
+        return properties.isVerifyLocalNegatives();
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    Duration getSyncInterval() {
+        return properties.getSyncInterval();
+    }
+
+    /**
+     * Reload a filter's mirror on the sync thread
+     */
+    void requestSync(RedisBloomFilter filter) {
+        scheduler.execute(() -> {
+            try {
+                filter.sync();
+            } catch (Exception e) {
+                log.warn("Failed to sync bloom filter: {}", filter.getName(), e);
+            }
+        });
+    }
+
+    /**
+     * Read filter metadata, creating it from the initial layout if missing
+     */
+    RedisBloomFilter.Layout loadLayout(String metaKey, RedisBloomFilter.Layout initial) {
+        byte[] rawKey = bytes(metaKey);
+        Map<byte[], byte[]> meta = redisTemplate.execute((RedisCallback<Map<byte[], byte[]>>) connection -> {
+            // First node to start wins; every node shares the same configuration
+            connection.hashCommands().hSetNX(rawKey, FIELD_BITS, bytes(String.valueOf(initial.numBits)));
+            connection.hashCommands().hSetNX(rawKey, FIELD_HASHES, bytes(String.valueOf(initial.numHashes)));
+            connection.hashCommands().hSetNX(rawKey, FIELD_KEY, bytes(initial.bitmapKey));
+            return connection.hashCommands().hGetAll(rawKey);
+        });
+        Map<String, String> fields = new HashMap<>();
+        if (meta != null) {
+            for (Map.Entry<byte[], byte[]> entry : meta.entrySet()) {
+                fields.put(string(entry.getKey()), string(entry.getValue()));
+            }
+        }
+        return new RedisBloomFilter.Layout(fields.get("key"), Long.parseLong(fields.get("bits")),
+                Integer.parseInt(fields.get("hashes")));
+    }
+
+    /**
+     * Point filter metadata at another bitmap in one write
+     */
+    void saveLayout(String metaKey, RedisBloomFilter.Layout layout) {
+        Map<byte[], byte[]> meta = new HashMap<>();
+        meta.put(FIELD_BITS, bytes(String.valueOf(layout.numBits)));
+        meta.put(FIELD_HASHES, bytes(String.valueOf(layout.numHashes)));
+        meta.put(FIELD_KEY, bytes(layout.bitmapKey));
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.hashCommands().hMSet(bytes(metaKey), meta);
+            return null;
+        });
+    }
+
+    /**
+     * Record the bitmap a rebuild is filling, every node's puts write it too until it is deleted.
+     * Expires after timeout, so a rebuild that died doesn't leave nodes writing it forever.
+     */
+    void saveRebuildTarget(String metaKey, RedisBloomFilter.Layout target, Duration timeout) {
+        byte[] value = bytes(target.bitmapKey + "|" + target.numBits + "|" + target.numHashes);
+        redisTemplate.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(bytes(rebuildKey(metaKey)), value, Expiration.from(timeout.toMillis(), TimeUnit.MILLISECONDS),
+                        RedisStringCommands.SetOption.UPSERT));
+    }
+
+    void deleteRebuildTarget(String metaKey) {
+        redisTemplate.delete(rebuildKey(metaKey));
+    }
+
+    byte[] getBitmap(String key) {
+        return redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(bytes(key)));
+    }
+
+    void setBits(String key, long[] offsets) {
+        byte[] rawKey = bytes(key);
+        for (int from = 0; from < offsets.length; from += batchSize) {
+            int start = from;
+            int end = Math.min(from + batchSize, offsets.length);
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = start; i < end; i++) {
+                    connection.stringCommands().setBit(rawKey, offsets[i], true);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Set bits like {@link #setBits(String, long[])}, reading in the last pipeline where the filter's
+     * values have to go: the bitmap its metadata points at and the one a rebuild is filling
+     *
+     * @return live layout and rebuild target, each null when absent
+     */
+    RedisBloomFilter.Layout[] setBitsAndReadTargets(String key, long[] offsets, String metaKey) {
+        byte[] rawKey = bytes(key);
+        byte[] rawMetaKey = bytes(metaKey);
+        byte[] rawRebuildKey = bytes(rebuildKey(metaKey));
+        for (int from = 0; ; from += batchSize) {
+            int start = from;
+            int end = Math.min(from + batchSize, offsets.length);
+            boolean last = end >= offsets.length;
+            List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = start; i < end; i++) {
+                    connection.stringCommands().setBit(rawKey, offsets[i], true);
+                }
+                if (last) {
+                    connection.hashCommands().hGet(rawMetaKey, FIELD_KEY);
+                    connection.hashCommands().hGet(rawMetaKey, FIELD_BITS);
+                    connection.hashCommands().hGet(rawMetaKey, FIELD_HASHES);
+                    connection.stringCommands().get(rawRebuildKey);
+                }
+                return null;
+            }, RedisSerializer.byteArray());
+            if (last) {
+                int n = results.size();
+                RedisBloomFilter.Layout live = layout((byte[]) results.get(n - 4), (byte[]) results.get(n - 3),
+                        (byte[]) results.get(n - 2));
+                RedisBloomFilter.Layout rebuild = null;
+                byte[] target = (byte[]) results.get(n - 1);
+                if (target != null) {
+                    String[] parts = string(target).split("\\|");
+                    rebuild = new RedisBloomFilter.Layout(parts[0], Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+                }
+                return new RedisBloomFilter.Layout[]{live, rebuild};
+            }
+        }
+    }
+
+    List<Object> getBits(String key, long[] offsets) {
+        byte[] rawKey = bytes(key);
+        List<Object> bits = new ArrayList<>(offsets.length);
+        for (int from = 0; from < offsets.length; from += batchSize) {
+            int start = from;
+            int end = Math.min(from + batchSize, offsets.length);
+            bits.addAll(redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = start; i < end; i++) {
+                    connection.stringCommands().getBit(rawKey, offsets[i]);
+                }
+                return null;
+            }));
+        }
+        return bits;
+    }
+
+    void expire(String key, Duration timeout) {
+        redisTemplate.expire(key, timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void publishAdded(String filter, String bitmapKey, long[] offsets) {
+        for (int from = 0; from < offsets.length; from += batchSize) {
+            StringBuilder values = new StringBuilder();
+            for (int i = from; i < Math.min(from + batchSize, offsets.length); i++) {
+                if (values.length() > 0) {
+                    values.append(',');
+                }
+                values.append(offsets[i]);
+            }
+            publish(ADDED, filter, bitmapKey, values.toString());
+        }
+    }
+
+    void publishSwitched(String filter) {
+        publish(SWITCHED, filter);
+    }
+
+    private void publish(String type, String filter, String... fields) {
+        StringBuilder message = new StringBuilder(nodeId).append('|').append(type).append('|').append(filter);
+        for (String field : fields) {
+            message.append('|').append(field);
+        }
+        try {
+            byte[] body = bytes(message.toString());
+            redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channel, body));
+        } catch (Exception e) {
+            log.warn("Failed to broadcast bloom filter message for filter: {}, it will be picked up on the next sync", filter, e);
+        }
+    }
+
+    private void syncAll() {
+        for (RedisBloomFilter filter : filters.values()) {
+            try {
+                filter.sync();
+            } catch (Exception e) {
+                log.warn("Failed to sync bloom filter: {}", filter.getName(), e);
+            }
+        }
+    }
+
+    private static String rebuildKey(String metaKey) {
+        return metaKey + ":rebuild";
+    }
+
+    private static RedisBloomFilter.Layout layout(byte[] key, byte[] bits, byte[] hashes) {
+        if (key == null || bits == null || hashes == null) {
+            return null;
+        }
+        return new RedisBloomFilter.Layout(string(key), Long.parseLong(string(bits)), Integer.parseInt(string(hashes)));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,354 @@
+package com.example.redis.bloom;
+
+import com.example.redis.config.MicroRedisProperties;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Bloom filter stored as a redis bitmap and mirrored in a local bit array.
+ * <p>
+ * {@link #mightContain(String)} only reads the local mirror, so known-absent values are rejected
+ * without touching redis. Added bits are written to redis in pipelined batches and broadcast to the
+ * other nodes; the mirror is also reloaded from redis every sync-interval to catch lost broadcasts.
+ * <p>
+ * The filter metadata hash points at the live bitmap. {@link #rebuild(Iterable, long, double)}
+ * fills a fresh bitmap, possibly with a new size and false-positive rate, and then switches the
+ * pointer in one write. The bitmap being filled is recorded in redis, and every put reads it and
+ * the live pointer in the pipeline writing its bits, so no node misses a rebuild or a switch
+ * whose broadcast it lost.
+ */
+public class RedisBloomFilter {
+
+    private static final long MAX_BITS = 1L << 32;
+
+    private final String name;
+    private final String metaKey;
+    private final MicroRedisProperties.BloomFilter.Filter properties;
+    private final BloomFilterManager manager;
+
+    private volatile State state;
+
+    /**
+     * Set while a reload asked for by a put is pending, so a burst of puts reloads once
+     */
+    private final AtomicBoolean syncRequested = new AtomicBoolean();
+
+    /**
+     * Local bit writes hold the read side, {@link #sync()} holds the write side while it merges and swaps
+     * the mirror, so no bit lands in a mirror that is being replaced
+     */
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+    RedisBloomFilter(String name, String metaKey, MicroRedisProperties.BloomFilter.Filter properties,
+                     BloomFilterManager manager) {
+        this.name = name;
+        this.metaKey = metaKey;
+        this.properties = properties;
+        this.manager = manager;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Check whether value may have been added
+     *
+     * @param value value
+     * @return false if the value was definitely never added
+     */
+    public boolean mightContain(String value) {
+        State current = state();
+        long[] offsets = current.layout.offsets(value);
+        if (current.contains(offsets)) {
+            return true;
+        }
+        if (!manager.isVerifyLocalNegatives()) {
+            return false;
+        }
+        for (Object bit : manager.getBits(current.layout.bitmapKey, offsets)) {
+            if (!Boolean.TRUE.equals(bit)) {
+                return false;
+            }
+        }
+        current.set(offsets);
+        return true;
+    }
+
+    /**
+     * Run lookup only if value may exist
+     *
+     * @param value  value checked against the filter
+     * @param lookup cache or database lookup
+     * @param <T>    result type
+     * @return lookup result, null if the value was definitely never added
+     */
+    public <T> T guard(String value, Supplier<T> lookup) {
+        return mightContain(value) ? lookup.get() : null;
+    }
+
+    /**
+     * Add value
+     *
+     * @param value value
+     */
+    public void put(String value) {
+        putAll(Collections.singletonList(value));
+    }
+
+    /**
+     * Add values, writing their bits to redis in pipelined batches
+     *
+     * @param values values
+     */
+    public void putAll(Collection<String> values) {
+        State current;
+        long[] offsets;
+        stateLock.readLock().lock();
+        try {
+            current = state();
+            offsets = current.layout.offsets(values);
+            current.set(offsets);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        Layout[] targets = manager.setBitsAndReadTargets(current.layout.bitmapKey, offsets, metaKey);
+        manager.publishAdded(name, current.layout.bitmapKey, offsets);
+        Layout live = targets[0];
+        if (live != null && !live.bitmapKey.equals(current.layout.bitmapKey)) {
+            // Switched while this mirror is behind, the values belong in the live bitmap
+            manager.setBits(live.bitmapKey, live.offsets(values));
+            if (syncRequested.compareAndSet(false, true)) {
+                manager.requestSync(this);
+            }
+        }
+        Layout target = targets[1];
+        if (target != null && !target.bitmapKey.equals(current.layout.bitmapKey)
+                && (live == null || !target.bitmapKey.equals(live.bitmapKey))) {
+            // A rebuild is filling the next bitmap, it must not miss values added meanwhile
+            manager.setBits(target.bitmapKey, target.offsets(values));
+        }
+    }
+
+    /**
+     * Rebuild from the source of truth with the configured size and false-positive rate
+     *
+     * @param values every value that should be contained
+     */
+    public void rebuild(Iterable<String> values) {
+        rebuild(values, properties.getExpectedInsertions(), properties.getFpp());
+    }
+
+    /**
+     * Rebuild from the source of truth into a fresh bitmap, then switch every node to it
+     *
+     * @param values             every value that should be contained
+     * @param expectedInsertions expected number of distinct values
+     * @param fpp                target false-positive probability
+     */
+    public synchronized void rebuild(Iterable<String> values, long expectedInsertions, double fpp) {
+        Layout target = Layout.of(metaKey + ":" + System.currentTimeMillis(), expectedInsertions, fpp);
+        String previousKey = state().layout.bitmapKey;
+        // Outlives a sync interval between chunks, renewed with every chunk
+        Duration targetTimeout = manager.getSyncInterval().multipliedBy(2);
+        // Recorded before the source is read, so a value it misses is put by a node that sees the target
+        manager.saveRebuildTarget(metaKey, target, targetTimeout);
+        try {
+            List<String> chunk = new ArrayList<>(manager.getBatchSize());
+            for (String value : values) {
+                chunk.add(value);
+                if (chunk.size() >= manager.getBatchSize()) {
+                    manager.setBits(target.bitmapKey, target.offsets(chunk));
+                    manager.saveRebuildTarget(metaKey, target, targetTimeout);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                manager.setBits(target.bitmapKey, target.offsets(chunk));
+            }
+            manager.saveLayout(metaKey, target);
+            // Leave the old bitmap to nodes that have not switched yet
+            manager.expire(previousKey, manager.getSyncInterval().multipliedBy(2));
+        } finally {
+            // After the switch, puts that still read the target already see the new live pointer
+            manager.deleteRebuildTarget(metaKey);
+        }
+        manager.publishSwitched(name);
+        sync();
+    }
+
+    /**
+     * Reload local mirror from redis, creating the filter if it does not exist yet
+     */
+    void sync() {
+        syncRequested.set(false);
+        Layout initial = Layout.of(metaKey + ":" + System.currentTimeMillis(),
+                properties.getExpectedInsertions(), properties.getFpp());
+        Layout layout = manager.loadLayout(metaKey, initial);
+        AtomicLongArray words = toWords(manager.getBitmap(layout.bitmapKey), layout.numBits);
+        stateLock.writeLock().lock();
+        try {
+            State current = state;
+            if (current != null && current.layout.bitmapKey.equals(layout.bitmapKey)) {
+                // Keep bits set locally while the bitmap was in flight
+                for (int i = 0; i < words.length(); i++) {
+                    words.set(i, words.get(i) | current.words.get(i));
+                }
+            }
+            state = new State(layout, words);
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    void onAdded(String bitmapKey, long[] offsets) {
+        stateLock.readLock().lock();
+        try {
+            State current = state;
+            if (current != null && current.layout.bitmapKey.equals(bitmapKey)) {
+                current.set(offsets);
+            }
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    void onSwitched() {
+        sync();
+    }
+
+    private State state() {
+        State current = state;
+        if (current == null) {
+            throw new IllegalStateException("Bloom filter " + name + " has not been loaded from redis yet");
+        }
+        return current;
+    }
+
+    /**
+     * Convert a redis bitmap, most significant bit first, into little-endian 64-bit words
+     */
+    private static AtomicLongArray toWords(byte[] bitmap, long numBits) {
+        long[] words = new long[(int) ((numBits + 63) >>> 6)];
+        int length = bitmap == null ? 0 : Math.min(bitmap.length, words.length * 8);
+        for (int i = 0; i < length; i++) {
+            long reversed = Integer.reverse(bitmap[i] & 0xFF) >>> 24;
+            words[i >>> 3] |= reversed << ((i & 7) * 8);
+        }
+        return new AtomicLongArray(words);
+    }
+
+    /**
+     * Bitmap location and hashing parameters
+     */
+    static final class Layout {
+        final String bitmapKey;
+        final long numBits;
+        final int numHashes;
+
+        Layout(String bitmapKey, long numBits, int numHashes) {
+            this.bitmapKey = bitmapKey;
+            this.numBits = numBits;
+            this.numHashes = numHashes;
+        }
+
+        static Layout of(String bitmapKey, long expectedInsertions, double fpp) {
+            long n = Math.max(1, expectedInsertions);
+            double ln2 = Math.log(2);
+            long numBits = (long) Math.ceil(-n * Math.log(fpp) / (ln2 * ln2));
+            numBits = Math.min(MAX_BITS, Math.max(64, numBits));
+            int numHashes = (int) Math.max(1, Math.round((double) numBits / n * ln2));
+            return new Layout(bitmapKey, numBits, numHashes);
+        }
+
+        long[] offsets(String value) {
+            long[] offsets = new long[numHashes];
+            fill(value, offsets, 0);
+            return offsets;
+        }
+
+        long[] offsets(Collection<String> values) {
+            long[] offsets = new long[values.size() * numHashes];
+            int position = 0;
+            for (String value : values) {
+                fill(value, offsets, position);
+                position += numHashes;
+            }
+            return offsets;
+        }
+
+        /**
+         * Double hashing: offset i = h1 + i * h2
+         */
+        private void fill(String value, long[] offsets, int position) {
+            long h1 = fnv1a64(value.getBytes(StandardCharsets.UTF_8));
+            long h2 = mix64(h1) | 1;
+            for (int i = 0; i < numHashes; i++) {
+                offsets[position + i] = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+            }
+        }
+
+        private static long fnv1a64(byte[] bytes) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : bytes) {
+                hash ^= b & 0xFF;
+                hash *= 0x100000001b3L;
+            }
+            return mix64(hash);
+        }
+
+        private static long mix64(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            return h ^ (h >>> 33);
+        }
+    }
+
+    /**
+     * Local mirror of the live bitmap
+     */
+    private static final class State {
+        final Layout layout;
+        final AtomicLongArray words;
+
+        State(Layout layout, AtomicLongArray words) {
+            this.layout = layout;
+            this.words = words;
+        }
+
+        boolean contains(long[] offsets) {
+            for (long offset : offsets) {
+                if ((words.get((int) (offset >>> 6)) & (1L << (offset & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void set(long[] offsets) {
+            for (long offset : offsets) {
+                int index = (int) (offset >>> 6);
+                long mask = 1L << (offset & 63);
+                long word;
+                do {
+                    word = words.get(index);
+                    if ((word & mask) != 0) {
+                        break;
+                    }
+                } while (!words.compareAndSet(index, word, word | mask));
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.redis.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Envelope stored by {@link com.example.redis.util.RedisCacheLoader}, carrying what early refresh needs
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedValue implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Loaded value
+     */
+    private Object value;
+
+    /**
+     * Time the load took, in millis
+     */
+    private long delta;
+
+    /**
+     * Logical expiry time, in epoch millis
+     */
+    private long expireAt;
+}
@@ -0,0 +1,191 @@
+package com.example.redis.cache;
+
+import com.example.redis.config.MicroRedisProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded on-heap L1 cache in front of Redis.
+ * <p>
+ * Writes through {@link com.example.redis.util.RedisUtil} drop the local entry and publish the key on
+ * the invalidation channel so every other node drops it too. Entries also expire after a short TTL,
+ * which bounds staleness if an invalidation message is lost.
+ */
+@Slf4j
+public class NearCache implements MessageListener {
+
+    /**
+     * Separates keys when one invalidation message carries several of them
+     */
+    private static final String KEY_SEPARATOR = "\n";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final byte[] channel;
+
+    private final Cache<String, Object> values;
+    private final Cache<String, ConcurrentMap<String, Object>> hashes;
+
+    /**
+     * Bumped on every invalidation; a load that raced with an invalidation is not cached
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public NearCache(RedisTemplate<String, Object> redisTemplate, MicroRedisProperties.NearCache properties) {
+        this.redisTemplate = redisTemplate;
+        this.channel = properties.getInvalidationChannel().getBytes(StandardCharsets.UTF_8);
+        this.values = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .removalListener((String key, Object value, RemovalCause cause) -> onRemoval(cause))
+                .build();
+        this.hashes = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .removalListener((String key, ConcurrentMap<String, Object> value, RemovalCause cause) -> onRemoval(cause))
+                .build();
+    }
+
+    /**
+     * Get value from L1, falling back to the loader on a miss
+     *
+     * @param key    key
+     * @param loader L2 lookup
+     * @return value
+     */
+    public Object get(String key, Supplier<Object> loader) {
+        Object value = values.getIfPresent(key);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        long stamp = generation.get();
+        value = loader.get();
+        if (value != null && stamp == generation.get()) {
+            values.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Get hash value from L1, falling back to the loader on a miss
+     *
+     * @param key     key
+     * @param hashKey hash key
+     * @param loader  L2 lookup
+     * @return hash value
+     */
+    public Object hGet(String key, String hashKey, Supplier<Object> loader) {
+        ConcurrentMap<String, Object> fields = hashes.getIfPresent(key);
+        Object value = fields == null ? null : fields.get(hashKey);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        long stamp = generation.get();
+        value = loader.get();
+        if (value != null && stamp == generation.get()) {
+            hashes.get(key, k -> new ConcurrentHashMap<>()).put(hashKey, value);
+        }
+        return value;
+    }
+
+    /**
+     * Drop key locally and broadcast the invalidation to other nodes
+     *
+     * @param key key
+     */
+    public void invalidate(String key) {
+        invalidateLocal(key);
+        publish(key);
+    }
+
+    /**
+     * Drop keys locally and broadcast them to other nodes in a single message
+     *
+     * @param keys keys
+     */
+    public void invalidate(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        for (String key : keys) {
+            invalidateLocal(key);
+        }
+        publish(String.join(KEY_SEPARATOR, keys));
+    }
+
+    /**
+     * Drop key from this node only
+     *
+     * @param key key
+     */
+    public void invalidateLocal(String key) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        values.invalidate(key);
+        hashes.invalidate(key);
+    }
+
+    /**
+     * Drop every local entry
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        values.invalidateAll();
+        hashes.invalidateAll();
+    }
+
+    /**
+     * Get hit/miss/eviction counters
+     *
+     * @return stats snapshot
+     */
+    public NearCacheStats getStats() {
+        return new NearCacheStats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(),
+                values.estimatedSize() + hashes.estimatedSize());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        for (String key : body.split(KEY_SEPARATOR)) {
+            invalidateLocal(key);
+        }
+    }
+
+    private void publish(String keys) {
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection ->
+                    connection.publish(channel, keys.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            log.warn("Failed to broadcast near cache invalidation: {}", keys.replace(KEY_SEPARATOR, ","), e);
+        }
+    }
+
+    private void onRemoval(RemovalCause cause) {
+        if (cause.wasEvicted()) {
+            evictions.increment();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.redis.cluster;
+
+import com.example.redis.config.MicroRedisProperties;
+import io.lettuce.core.cluster.SlotHash;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Runs one command per item as pipelines grouped by the node serving each key's slot, sending the
+ * groups in parallel and merging results back into item order.
+ * <p>
+ * On Redis Cluster keys are grouped by CRC16 slot and then by the master serving that slot, so no
+ * pipeline crosses nodes. On a standalone server items are simply split into pipeline batches.
+ */
+@Component
+public class SlotAwareExecutor {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private MicroRedisProperties redisProperties;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        int parallelism = Math.max(1, redisProperties.getCluster().getParallelism());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-pipeline-");
+        threadFactory.setDaemon(true);
+        // Callers run the overflow themselves rather than queueing behind other callers
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(parallelism * 4), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * Run command for each key
+     *
+     * @param keys    keys
+     * @param command command issued for each key
+     * @return command results in key order
+     */
+    public List<Object> execute(List<String> keys, BiConsumer<RedisOperations<String, Object>, String> command) {
+        return execute(keys, Function.identity(), command);
+    }
+
+    /**
+     * Run command for each item
+     *
+     * @param items   items
+     * @param keyOf   redis key an item's command touches
+     * @param command command issued for each item
+     * @param <E>     item type
+     * @return command results in item order
+     */
+    public <E> List<Object> execute(List<E> items, Function<E, String> keyOf,
+                                    BiConsumer<RedisOperations<String, Object>, E> command) {
+        if (items.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+        List<int[]> batches = batches(items, keyOf);
+        Object[] results = new Object[items.size()];
+        if (batches.size() == 1) {
+            run(items, batches.get(0), command, results);
+            return Arrays.asList(results);
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>(batches.size());
+        for (int[] batch : batches) {
+            futures.add(CompletableFuture.runAsync(() -> run(items, batch, command, results), executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Split item indexes into pipeline batches that each stay on one node
+     */
+    private <E> List<int[]> batches(List<E> items, Function<E, String> keyOf) {
+        Map<Object, List<Integer>> groups = new LinkedHashMap<>();
+        if (isCluster()) {
+            Map<Integer, RedisClusterNode> nodes = new HashMap<>();
+            RedisClusterConnection connection = redisTemplate.getRequiredConnectionFactory().getClusterConnection();
+            try {
+                for (int i = 0; i < items.size(); i++) {
+                    int slot = SlotHash.getSlot(keyOf.apply(items.get(i)));
+                    RedisClusterNode node = nodes.computeIfAbsent(slot, connection::clusterGetNodeForSlot);
+                    groups.computeIfAbsent(node.getId() != null ? node.getId() : node.asString(),
+                            k -> new ArrayList<>()).add(i);
+                }
+            } finally {
+                connection.close();
+            }
+        } else {
+            List<Integer> all = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                all.add(i);
+            }
+            groups.put("standalone", all);
+        }
+
+        int batchSize = Math.max(1, redisProperties.getPipeline().getBatchSize());
+        List<int[]> batches = new ArrayList<>();
+        for (List<Integer> group : groups.values()) {
+            for (int from = 0; from < group.size(); from += batchSize) {
+                List<Integer> chunk = group.subList(from, Math.min(from + batchSize, group.size()));
+                int[] batch = new int[chunk.size()];
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = chunk.get(i);
+                }
+                batches.add(batch);
+            }
+        }
+        return batches;
+    }
+
+    private <E> void run(List<E> items, int[] batch, BiConsumer<RedisOperations<String, Object>, E> command,
+                         Object[] results) {
+        List<Object> batchResults = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (int index : batch) {
+                    command.accept(ops, items.get(index));
+                }
+                return null;
+            }
+        });
+        for (int i = 0; i < batch.length && i < batchResults.size(); i++) {
+            results[batch[i]] = batchResults.get(i);
+        }
+    }
+
+    private boolean isCluster() {
+        RedisConnectionFactory connectionFactory = redisTemplate.getRequiredConnectionFactory();
+        return connectionFactory instanceof LettuceConnectionFactory
+                && ((LettuceConnectionFactory) connectionFactory).isClusterAware();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.redis.config;
+
+import com.example.redis.bloom.BloomFilterManager;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+@EnableConfigurationProperties(MicroRedisProperties.class)
+@ConditionalOnProperty(prefix = "micro.service.redis", name = "bloom-filter.enabled", havingValue = "true")
+public class BloomFilterConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    public BloomFilterManager bloomFilterManager(RedisTemplate<String, Object> redisTemplate,
+                                                 MicroRedisProperties properties) {
+        return new BloomFilterManager(redisTemplate, properties);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer bloomFilterListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                      BloomFilterManager bloomFilterManager,
+                                                                      MicroRedisProperties properties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(bloomFilterManager, new ChannelTopic(properties.getBloomFilter().getChannel()));
+        return container;
+    }
+}
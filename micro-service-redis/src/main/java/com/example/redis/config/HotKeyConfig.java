@@ -0,0 +1,24 @@
+package com.example.redis.config;
+
+import com.example.redis.hotkey.HotKeyDetector;
+import com.example.redis.hotkey.HotKeyEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(MicroRedisProperties.class)
+@ConditionalOnProperty(prefix = "micro.service.redis", name = "hot-key.enabled", havingValue = "true")
+public class HotKeyConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    public HotKeyDetector hotKeyDetector(MicroRedisProperties properties) {
+        return new HotKeyDetector(properties.getHotKey());
+    }
+
+    @Bean
+    public HotKeyEndpoint hotKeyEndpoint(HotKeyDetector hotKeyDetector) {
+        return new HotKeyEndpoint(hotKeyDetector);
+    }
+}
@@ -0,0 +1,418 @@
+package com.example.redis.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "micro.service.redis")
+public class MicroRedisProperties {
+
+    /**
+     * Local L1 cache in front of RedisUtil reads
+     */
+    private NearCache nearCache = new NearCache();
+
+    /**
+     * Pipelined bulk operations
+     */
+    private Pipeline pipeline = new Pipeline();
+
+    /**
+     * Value serialization of RedisTemplate
+     */
+    private Serializer serializer = new Serializer();
+
+    /**
+     * Stampede-safe loading through RedisCacheLoader
+     */
+    private Loader loader = new Loader();
+
+    /**
+     * Cluster-wide rate limits through RedisRateLimiter
+     */
+    private RateLimiter rateLimiter = new RateLimiter();
+
+    /**
+     * Hot-key detection and local promotion of RedisUtil reads
+     */
+    private HotKey hotKey = new HotKey();
+
+    /**
+     * Cursor-based key iteration
+     */
+    private Scan scan = new Scan();
+
+    /**
+     * Bloom filters guarding read-through lookups
+     */
+    private BloomFilter bloomFilter = new BloomFilter();
+
+    /**
+     * Sharded counters through RedisShardedCounter
+     */
+    private Counter counter = new Counter();
+
+    /**
+     * Slot-aware execution and replica routing on Redis Cluster
+     */
+    private Cluster cluster = new Cluster();
+
+    /**
+     * Per-command latency histograms, pool wait time and slow command capture
+     */
+    private Metrics metrics = new Metrics();
+
+    @Data
+    public static class NearCache {
+        /**
+         * Enable the near cache (default: false)
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of entries kept on heap
+         */
+        private long maximumSize = 10000;
+
+        /**
+         * Time to live of a local entry, bounds staleness when an invalidation is lost
+         */
+        private Duration expireAfterWrite = Duration.ofSeconds(30);
+
+        /**
+         * Pub/sub channel used to broadcast invalidations to every node
+         */
+        private String invalidationChannel = "micro:near-cache:invalidate";
+    }
+
+    @Data
+    public static class Pipeline {
+        /**
+         * Maximum number of commands sent in one pipeline round trip
+         */
+        private int batchSize = 200;
+    }
+
+    @Data
+    public static class Serializer {
+        /**
+         * Value format (default: json)
+         */
+        private Format format = Format.JSON;
+
+        /**
+         * Compression applied to values above the threshold (default: none)
+         */
+        private Compression compression = Compression.NONE;
+
+        /**
+         * Minimum serialized size in bytes before a value is compressed
+         */
+        private int compressionThreshold = 1024;
+
+        /**
+         * Type id to fully qualified class name, used by the compact format instead of class names.
+         * Ids must never be reused for another class while values written with them are alive.
+         */
+        private Map<Integer, String> typeIds = new LinkedHashMap<>();
+
+        public enum Format {
+            /**
+             * Jackson JSON with class names
+             */
+            JSON,
+            /**
+             * Smile binary behind a registered type id, JSON for unregistered types
+             */
+            COMPACT
+        }
+
+        public enum Compression {
+            NONE,
+            LZ4
+        }
+    }
+
+    @Data
+    public static class Loader {
+        /**
+         * Cross-node lease held by the node loading a missing key
+         */
+        private Duration leaseTime = Duration.ofSeconds(3);
+
+        /**
+         * Poll interval of nodes waiting for another node's load
+         */
+        private Duration waitInterval = Duration.ofMillis(50);
+
+        /**
+         * Early refresh aggressiveness, larger values refresh earlier (0 disables early refresh)
+         */
+        private double beta = 1.0;
+
+        /**
+         * Threads running early refreshes in the background
+         */
+        private int refreshThreads = 2;
+
+        /**
+         * Pending early refreshes before new ones are dropped
+         */
+        private int refreshQueueCapacity = 1000;
+    }
+
+    @Data
+    public static class RateLimiter {
+        /**
+         * Prefix of the redis keys holding limiter state
+         */
+        private String keyPrefix = "micro:rate-limit:";
+
+        /**
+         * How long permits leased from redis may be spent locally before they are dropped
+         */
+        private Duration leaseTime = Duration.ofSeconds(1);
+
+        /**
+         * Maximum number of limited keys (tenants, APIs) with local leases kept on heap
+         */
+        private long maximumKeys = 100000;
+
+        /**
+         * Nodes expected to share each rule, sizes the default lease batch
+         */
+        private int nodes = 4;
+
+        /**
+         * Rules by name
+         */
+        private Map<String, Rule> rules = new LinkedHashMap<>();
+
+        @Data
+        public static class Rule {
+            /**
+             * Limiting algorithm (default: token-bucket)
+             */
+            private Algorithm algorithm = Algorithm.TOKEN_BUCKET;
+
+            /**
+             * Permits per period across the cluster
+             */
+            private long permits = 100;
+
+            /**
+             * Refill period of the token bucket, or length of the sliding window
+             */
+            private Duration period = Duration.ofSeconds(1);
+
+            /**
+             * Burst size of the token bucket, defaults to permits
+             */
+            private Long capacity;
+
+            /**
+             * Permits leased from redis per round trip and spent locally, 0 for a tenth of a node's
+             * share of permits. 1 checks redis on every call; larger values save round trips at the
+             * cost of idle nodes holding permits for up to lease-time.
+             */
+            private int batchSize = 0;
+        }
+
+        public enum Algorithm {
+            TOKEN_BUCKET,
+            SLIDING_WINDOW
+        }
+    }
+
+    @Data
+    public static class HotKey {
+        /**
+         * Enable hot-key detection (default: false)
+         */
+        private boolean enabled = false;
+
+        /**
+         * Record one in every N reads
+         */
+        private int sampleInterval = 8;
+
+        /**
+         * Counters of the count-min sketch per row
+         */
+        private int sketchWidth = 4096;
+
+        /**
+         * Rows of the count-min sketch
+         */
+        private int sketchDepth = 4;
+
+        /**
+         * Number of hottest keys tracked
+         */
+        private int topK = 32;
+
+        /**
+         * Estimated reads per window above which a key is promoted
+         */
+        private long threshold = 5000;
+
+        /**
+         * Counters are halved once per window
+         */
+        private Duration window = Duration.ofSeconds(10);
+
+        /**
+         * Time to live of a promoted local copy
+         */
+        private Duration promotionTtl = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Scan {
+        /**
+         * COUNT hint per SCAN call, also the UNLINK batch size of deleteByPattern
+         */
+        private int batchSize = 500;
+
+        /**
+         * Pause between deleteByPattern batches, leaves room for other clients
+         */
+        private Duration deletePause = Duration.ofMillis(10);
+    }
+
+    @Data
+    public static class BloomFilter {
+        /**
+         * Enable bloom filters (default: false)
+         */
+        private boolean enabled = false;
+
+        /**
+         * Prefix of the redis keys holding filter metadata and bitmaps
+         */
+        private String keyPrefix = "micro:bloom:";
+
+        /**
+         * Pub/sub channel used to share added bits and rebuilds between nodes
+         */
+        private String channel = "micro:bloom:sync";
+
+        /**
+         * Interval of the full reload of local mirrors from redis
+         */
+        private Duration syncInterval = Duration.ofSeconds(60);
+
+        /**
+         * Confirm a local negative against redis before rejecting. Covers bits added by other nodes
+         * whose broadcast was missed, at the cost of one round trip per rejected lookup.
+         */
+        private boolean verifyLocalNegatives = false;
+
+        /**
+         * Filters by name
+         */
+        private Map<String, Filter> filters = new LinkedHashMap<>();
+
+        @Data
+        public static class Filter {
+            /**
+             * Expected number of distinct values
+             */
+            private long expectedInsertions = 1000000;
+
+            /**
+             * Target false-positive probability, applied on creation and on rebuild
+             */
+            private double fpp = 0.01;
+        }
+    }
+
+    @Data
+    public static class Counter {
+        /**
+         * Prefix of the redis sub-keys of a counter
+         */
+        private String keyPrefix = "micro:counter:";
+
+        /**
+         * Sub-keys each logical counter is spread over
+         */
+        private int shards = 16;
+
+        /**
+         * Interval at which locally summed deltas are written to redis
+         */
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        /**
+         * Increments of one counter on this node that trigger an early flush
+         */
+        private long flushThreshold = 1000;
+
+        /**
+         * How long an approximate read reuses the last redis total
+         */
+        private Duration readCacheTtl = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Cluster {
+        /**
+         * Pipelines of one multi-key call sent in parallel
+         */
+        private int parallelism = 4;
+
+        /**
+         * Lettuce ReadFrom for read-only commands, e.g. upstream, upstreamPreferred, replica,
+         * replicaPreferred, nearest, any. Writes always go to the master. Unset keeps Lettuce's default.
+         */
+        private String readFrom;
+    }
+
+    @Data
+    public static class Metrics {
+        /**
+         * Whether redisTemplate commands are timed
+         */
+        private boolean enabled = false;
+
+        /**
+         * Key prefix tag is the part of the key before the first delimiter
+         */
+        private String keyDelimiter = ":";
+
+        /**
+         * Distinct key prefixes tagged before the rest are reported as "other"
+         */
+        private int maximumPrefixes = 100;
+
+        /**
+         * Publish histogram buckets for server-side percentile aggregation
+         */
+        private boolean histogram = true;
+
+        /**
+         * Percentiles computed locally and shown by the actuator endpoint
+         */
+        private double[] percentiles = {0.5, 0.95, 0.99};
+
+        /**
+         * Upper bound of the histogram buckets
+         */
+        private Duration maximumExpectedValue = Duration.ofSeconds(1);
+
+        /**
+         * Commands at least this slow are kept in the slow command buffer
+         */
+        private Duration slowThreshold = Duration.ofMillis(10);
+
+        /**
+         * Number of slow commands kept, oldest are overwritten
+         */
+        private int slowCapacity = 128;
+    }
+}
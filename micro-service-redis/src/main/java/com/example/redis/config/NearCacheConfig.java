@@ -0,0 +1,32 @@
+package com.example.redis.config;
+
+import com.example.redis.cache.NearCache;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+@EnableConfigurationProperties(MicroRedisProperties.class)
+@ConditionalOnProperty(prefix = "micro.service.redis", name = "near-cache.enabled", havingValue = "true")
+public class NearCacheConfig {
+
+    @Bean
+    public NearCache nearCache(RedisTemplate<String, Object> redisTemplate, MicroRedisProperties properties) {
+        return new NearCache(redisTemplate, properties.getNearCache());
+    }
+
+    @Bean
+    public RedisMessageListenerContainer nearCacheListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                    NearCache nearCache,
+                                                                    MicroRedisProperties properties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(nearCache, new ChannelTopic(properties.getNearCache().getInvalidationChannel()));
+        return container;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.redis.config;
+
+import io.lettuce.core.ReadFrom;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientConfigurationBuilderCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(MicroRedisProperties.class)
+@ConditionalOnProperty(prefix = "micro.service.redis", name = "cluster.read-from")
+public class RedisClusterConfig {
+
+    /**
+     * Route read-only commands per cluster.read-from; Lettuce keeps writes on the master
+     */
+    @Bean
+    public LettuceClientConfigurationBuilderCustomizer readFromCustomizer(MicroRedisProperties properties) {
+        ReadFrom readFrom = ReadFrom.valueOf(properties.getCluster().getReadFrom());
+        return builder -> builder.readFrom(readFrom);
+    }
+}
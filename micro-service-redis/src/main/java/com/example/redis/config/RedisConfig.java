@@ -1,32 +1,61 @@
 package com.example.redis.config;
 
+import com.example.redis.metrics.MeteredRedisTemplate;
+import com.example.redis.metrics.RedisCommandMetrics;
+import com.example.redis.serializer.CompactRedisSerializer;
+import com.example.redis.serializer.RedisTypeRegistry;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(MicroRedisProperties.class)
 public class RedisConfig {
 
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
-        RedisTemplate<String, Object> template = new RedisTemplate<>();
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
+                                                       MicroRedisProperties properties,
+                                                       ObjectProvider<RedisCommandMetrics> commandMetrics) {
+        // Time every command when micro.service.redis.metrics is enabled
+        RedisCommandMetrics metrics = commandMetrics.getIfAvailable();
+        RedisTemplate<String, Object> template = metrics != null
+                ? new MeteredRedisTemplate<>(metrics)
+                : new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
         // Use Jackson2JsonRedisSerializer to serialize and deserialize redis value
-        Jackson2JsonRedisSerializer<Object> serializer = new Jackson2JsonRedisSerializer<>(Object.class);
+        Jackson2JsonRedisSerializer<Object> jsonSerializer = new Jackson2JsonRedisSerializer<>(Object.class);
         ObjectMapper mapper = new ObjectMapper();
         mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
         mapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance, ObjectMapper.DefaultTyping.NON_FINAL);
-        serializer.setObjectMapper(mapper);
+        jsonSerializer.setObjectMapper(mapper);
+
+        // Use CompactRedisSerializer for type-id binary values and/or compression, it still reads plain JSON values
+        RedisSerializer<Object> serializer = jsonSerializer;
+        MicroRedisProperties.Serializer serializerProperties = properties.getSerializer();
+        boolean compact = serializerProperties.getFormat() == MicroRedisProperties.Serializer.Format.COMPACT;
+        if (compact || serializerProperties.getCompression() != MicroRedisProperties.Serializer.Compression.NONE) {
+            RedisTypeRegistry typeRegistry = compact
+                    ? RedisTypeRegistry.of(serializerProperties.getTypeIds())
+                    : new RedisTypeRegistry();
+            serializer = new CompactRedisSerializer(jsonSerializer, typeRegistry,
+                    serializerProperties.getCompression(), serializerProperties.getCompressionThreshold());
+        }
 
         // Use StringRedisSerializer to serialize and deserialize redis key
         template.setKeySerializer(new StringRedisSerializer());
@@ -39,4 +68,19 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
-} 
\ No newline at end of file
+
+    @Bean
+    @SuppressWarnings("unchecked")
+    public ReactiveRedisTemplate<String, Object> reactiveRedisTemplate(ReactiveRedisConnectionFactory connectionFactory,
+                                                                       RedisTemplate<String, Object> redisTemplate) {
+        // Same serializers as redisTemplate, so both templates read each other's values
+        RedisSerializationContext<String, Object> context = RedisSerializationContext
+                .<String, Object>newSerializationContext(new StringRedisSerializer())
+                .key((RedisSerializer<String>) redisTemplate.getKeySerializer())
+                .value((RedisSerializer<Object>) redisTemplate.getValueSerializer())
+                .hashKey(redisTemplate.getHashKeySerializer())
+                .hashValue(redisTemplate.getHashValueSerializer())
+                .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, context);
+    }
+}
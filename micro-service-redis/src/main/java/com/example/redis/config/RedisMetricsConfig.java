@@ -0,0 +1,25 @@
+package com.example.redis.config;
+
+import com.example.redis.metrics.RedisCommandEndpoint;
+import com.example.redis.metrics.RedisCommandMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(MicroRedisProperties.class)
+@ConditionalOnProperty(prefix = "micro.service.redis", name = "metrics.enabled", havingValue = "true")
+public class RedisMetricsConfig {
+
+    @Bean
+    public RedisCommandMetrics redisCommandMetrics(MeterRegistry meterRegistry, MicroRedisProperties properties) {
+        return new RedisCommandMetrics(meterRegistry, properties.getMetrics());
+    }
+
+    @Bean
+    public RedisCommandEndpoint redisCommandEndpoint(RedisCommandMetrics redisCommandMetrics) {
+        return new RedisCommandEndpoint(redisCommandMetrics);
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.redis.counter;
+
+import com.example.redis.config.MicroRedisProperties;
+import io.lettuce.core.RedisCommandExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter spread over {@code shards} redis sub-keys so writers on a hot counter do not serialize
+ * on one key and one slot.
+ * <p>
+ * Increments are summed locally and written every flush-interval, or earlier once flush-threshold
+ * increments are pending, as one pipelined INCRBY per counter on a random sub-key. Suited to page
+ * views and quota usage; not to stock that must never go below zero, since no single key holds the
+ * total.
+ * <p>
+ * A flush that could not connect, and INCRBYs answered with an error, are retried on the next
+ * flush. INCRBYs whose outcome is unknown, after a timeout or a dropped connection, are logged
+ * and dropped, since they may have been applied and a retry could count them twice.
+ */
+@Slf4j
+@Component
+public class RedisShardedCounter {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private MicroRedisProperties redisProperties;
+
+    private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CachedTotal> totals = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-counter-flush-");
+        threadFactory.setDaemon(true);
+        scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long interval = redisProperties.getCounter().getFlushInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdown();
+        flush();
+    }
+
+    /**
+     * Add delta to counter, buffered locally until the next flush
+     *
+     * @param name  counter name
+     * @param delta increment, negative to decrement
+     */
+    public void increment(String name, long delta) {
+        Pending counter = pending.computeIfAbsent(name, k -> new Pending());
+        counter.delta.addAndGet(delta);
+        if (counter.ops.incrementAndGet() == redisProperties.getCounter().getFlushThreshold()) {
+            scheduler.execute(this::flush);
+        }
+    }
+
+    /**
+     * Get counter value
+     *
+     * @param name  counter name
+     * @param exact true to flush this node's pending deltas and sum every sub-key now; false to reuse a
+     *              total up to read-cache-ttl old plus this node's pending deltas
+     * @return counter value; deltas other nodes have not flushed yet are never included
+     */
+    public long get(String name, boolean exact) {
+        if (exact) {
+            flush(name);
+            long total = readTotal(name);
+            totals.put(name, new CachedTotal(total, System.currentTimeMillis()));
+            return total;
+        }
+        long now = System.currentTimeMillis();
+        CachedTotal cached = totals.get(name);
+        if (cached == null || now - cached.readAt > redisProperties.getCounter().getReadCacheTtl().toMillis()) {
+            cached = new CachedTotal(readTotal(name), now);
+            totals.put(name, cached);
+        }
+        Pending local = pending.get(name);
+        return cached.value + (local == null ? 0 : local.delta.get());
+    }
+
+    /**
+     * Delete counter
+     *
+     * @param name counter name
+     */
+    public void delete(String name) {
+        pending.remove(name);
+        totals.remove(name);
+        List<String> keys = new ArrayList<>();
+        for (int shard = 0; shard < redisProperties.getCounter().getShards(); shard++) {
+            keys.add(shardKey(name, shard));
+        }
+        redisTemplate.delete(keys);
+    }
+
+    /**
+     * Write every pending delta to redis
+     */
+    public synchronized void flush() {
+        List<String> keys = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+            entry.getValue().ops.set(0);
+            long delta = entry.getValue().delta.getAndSet(0);
+            if (delta != 0) {
+                keys.add(entry.getKey());
+                deltas.add(delta);
+            }
+        }
+        write(keys, deltas);
+    }
+
+    private synchronized void flush(String name) {
+        Pending counter = pending.get(name);
+        if (counter == null) {
+            return;
+        }
+        counter.ops.set(0);
+        long delta = counter.delta.getAndSet(0);
+        if (delta != 0) {
+            List<String> keys = new ArrayList<>(1);
+            List<Long> deltas = new ArrayList<>(1);
+            keys.add(name);
+            deltas.add(delta);
+            write(keys, deltas);
+        }
+    }
+
+    private void write(List<String> names, List<Long> deltas) {
+        if (names.isEmpty()) {
+            return;
+        }
+        int shards = redisProperties.getCounter().getShards();
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int i = 0; i < names.size(); i++) {
+                    String key = shardKey(names.get(i), ThreadLocalRandom.current().nextInt(shards));
+                    connection.stringCommands().incrBy(key.getBytes(StandardCharsets.UTF_8), deltas.get(i));
+                }
+                return null;
+            });
+        } catch (RedisPipelineException e) {
+            // An error reply was not applied; a missing or failed result may have been
+            List<Object> results = e.getResults();
+            int retried = 0;
+            List<String> unknown = new ArrayList<>();
+            for (int i = 0; i < names.size(); i++) {
+                Object result = i < results.size() ? results.get(i) : null;
+                if (result instanceof Throwable && isErrorReply((Throwable) result)) {
+                    requeue(names.get(i), deltas.get(i));
+                    retried++;
+                } else if (i >= results.size() || result instanceof Throwable) {
+                    unknown.add(names.get(i) + "=" + deltas.get(i));
+                }
+            }
+            if (retried > 0) {
+                log.warn("Redis rejected {} of {} sharded counter increments, retrying on next flush",
+                        retried, names.size(), e);
+            }
+            if (!unknown.isEmpty()) {
+                log.error("Dropped {} sharded counter increments that may or may not have been applied: {}",
+                        unknown.size(), unknown, e);
+            }
+        } catch (RedisConnectionFailureException e) {
+            // No connection, nothing was sent
+            for (int i = 0; i < names.size(); i++) {
+                requeue(names.get(i), deltas.get(i));
+            }
+            log.warn("Failed to flush {} sharded counters, retrying on next flush", names.size(), e);
+        } catch (Exception e) {
+            List<String> unknown = new ArrayList<>(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                unknown.add(names.get(i) + "=" + deltas.get(i));
+            }
+            log.error("Dropped {} sharded counter increments that may or may not have been applied: {}",
+                    unknown.size(), unknown, e);
+        }
+    }
+
+    /**
+     * Whether redis answered the command with an error, so it was not applied
+     */
+    private static boolean isErrorReply(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RedisCommandExecutionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void requeue(String name, long delta) {
+        pending.computeIfAbsent(name, k -> new Pending()).delta.addAndGet(delta);
+    }
+
+    private long readTotal(String name) {
+        int shards = redisProperties.getCounter().getShards();
+        List<Object> values = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int shard = 0; shard < shards; shard++) {
+                connection.stringCommands().get(shardKey(name, shard).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        }, redisTemplate.getStringSerializer());
+        long total = 0;
+        for (Object value : values) {
+            if (value != null) {
+                total += Long.parseLong(value.toString());
+            }
+        }
+        return total;
+    }
+
+    private String shardKey(String name, int shard) {
+        return redisProperties.getCounter().getKeyPrefix() + name + ":" + shard;
+    }
+
+    private static final class Pending {
+        final AtomicLong delta = new AtomicLong();
+        final AtomicLong ops = new AtomicLong();
+    }
+
+    private static final class CachedTotal {
+        final long value;
+        final long readAt;
+
+        CachedTotal(long value, long readAt) {
+            this.value = value;
+            this.readAt = readAt;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.redis.hotkey;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-min sketch over string keys. Estimates never undercount; collisions may overcount.
+ */
+class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray table;
+
+    CountMinSketch(int width, int depth) {
+        int size = Integer.highestOneBit(Math.max(16, width - 1) << 1);
+        this.depth = depth;
+        this.mask = size - 1;
+        this.table = new AtomicLongArray(size * depth);
+    }
+
+    /**
+     * Count one occurrence of key
+     *
+     * @param key key
+     * @return estimated count after adding
+     */
+    long add(String key) {
+        int h1 = spread(key.hashCode());
+        int h2 = spread(h1);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = row * (mask + 1) + ((h1 + row * h2) & mask);
+            estimate = Math.min(estimate, table.incrementAndGet(index));
+        }
+        return estimate;
+    }
+
+    /**
+     * Halve every counter so old traffic fades out
+     */
+    void decay() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, table.get(i) >>> 1);
+        }
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.redis.hotkey;
+
+import com.example.redis.config.MicroRedisProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Samples RedisUtil reads into a count-min sketch, tracks the top-K keys, and serves keys above the
+ * hot threshold from a short-lived local copy so they stop hitting one shard.
+ * <p>
+ * Counters are halved every window, so a key that cools down loses its promotion. Writes through
+ * RedisUtil drop the local copy on this node; other nodes keep theirs until promotion-ttl passes.
+ */
+public class HotKeyDetector {
+
+    private final int sampleInterval;
+    private final long threshold;
+    private final int topK;
+
+    private final CountMinSketch sketch;
+    private final ConcurrentMap<String, Long> candidates = new ConcurrentHashMap<>();
+
+    private final Cache<String, Object> values;
+    private final Cache<String, ConcurrentMap<String, Object>> hashes;
+
+    /**
+     * Bumped on every invalidation; a read that raced with a write is not promoted
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder promotedHits = new LongAdder();
+
+    private final ScheduledExecutorService scheduler;
+
+    public HotKeyDetector(MicroRedisProperties.HotKey properties) {
+        this.sampleInterval = Math.max(1, properties.getSampleInterval());
+        this.threshold = properties.getThreshold();
+        this.topK = properties.getTopK();
+        this.sketch = new CountMinSketch(properties.getSketchWidth(), properties.getSketchDepth());
+        this.values = Caffeine.newBuilder()
+                .maximumSize(topK)
+                .expireAfterWrite(properties.getPromotionTtl())
+                .build();
+        this.hashes = Caffeine.newBuilder()
+                .maximumSize(topK)
+                .expireAfterWrite(properties.getPromotionTtl())
+                .build();
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-hot-key-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long window = properties.getWindow().toMillis();
+        this.scheduler.scheduleAtFixedRate(this::decay, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Read value, serving a local copy while the key is hot
+     *
+     * @param key    key
+     * @param loader redis lookup
+     * @return value
+     */
+    public Object get(String key, Supplier<Object> loader) {
+        record(key);
+        Object value = values.getIfPresent(key);
+        if (value != null) {
+            promotedHits.increment();
+            return value;
+        }
+        long stamp = generation.get();
+        value = loader.get();
+        if (value != null && stamp == generation.get() && isHot(key)) {
+            promotions.increment();
+            values.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Read hash value, serving a local copy while the key is hot
+     *
+     * @param key     key
+     * @param hashKey hash key
+     * @param loader  redis lookup
+     * @return hash value
+     */
+    public Object hGet(String key, String hashKey, Supplier<Object> loader) {
+        record(key);
+        ConcurrentMap<String, Object> fields = hashes.getIfPresent(key);
+        Object value = fields == null ? null : fields.get(hashKey);
+        if (value != null) {
+            promotedHits.increment();
+            return value;
+        }
+        long stamp = generation.get();
+        value = loader.get();
+        if (value != null && stamp == generation.get() && isHot(key)) {
+            promotions.increment();
+            hashes.get(key, k -> new ConcurrentHashMap<>()).put(hashKey, value);
+        }
+        return value;
+    }
+
+    /**
+     * Drop local copy of key
+     *
+     * @param key key
+     */
+    public void invalidate(String key) {
+        generation.incrementAndGet();
+        values.invalidate(key);
+        hashes.invalidate(key);
+    }
+
+    /**
+     * Drop local copies of keys
+     *
+     * @param keys keys
+     */
+    public void invalidate(Collection<String> keys) {
+        generation.incrementAndGet();
+        values.invalidateAll(keys);
+        hashes.invalidateAll(keys);
+    }
+
+    /**
+     * Check whether key is currently above the hot threshold
+     *
+     * @param key key
+     * @return true if hot
+     */
+    public boolean isHot(String key) {
+        Long count = candidates.get(key);
+        return count != null && count * sampleInterval >= threshold;
+    }
+
+    /**
+     * Get current hot keys and promotion counters
+     *
+     * @return stats snapshot
+     */
+    public HotKeyStats getStats() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(candidates.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        Map<String, Long> hotKeys = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries) {
+            long estimate = entry.getValue() * sampleInterval;
+            if (estimate >= threshold) {
+                hotKeys.put(entry.getKey(), estimate);
+            }
+        }
+        return new HotKeyStats(hotKeys, promotions.sum(), promotedHits.sum(),
+                values.estimatedSize() + hashes.estimatedSize());
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void record(String key) {
+        if (sampleInterval > 1 && ThreadLocalRandom.current().nextInt(sampleInterval) != 0) {
+            return;
+        }
+        long estimate = sketch.add(key);
+        if (candidates.containsKey(key) || candidates.size() < topK) {
+            candidates.put(key, estimate);
+            return;
+        }
+        synchronized (candidates) {
+            String coldest = null;
+            long coldestCount = Long.MAX_VALUE;
+            for (Map.Entry<String, Long> entry : candidates.entrySet()) {
+                if (entry.getValue() < coldestCount) {
+                    coldest = entry.getKey();
+                    coldestCount = entry.getValue();
+                }
+            }
+            if (coldest != null && estimate > coldestCount) {
+                candidates.remove(coldest);
+                candidates.put(key, estimate);
+            }
+        }
+    }
+
+    private void decay() {
+        sketch.decay();
+        for (Map.Entry<String, Long> entry : candidates.entrySet()) {
+            long count = entry.getValue() >>> 1;
+            if (count == 0) {
+                candidates.remove(entry.getKey(), entry.getValue());
+            } else {
+                candidates.replace(entry.getKey(), entry.getValue(), count);
+            }
+        }
+    }
+}
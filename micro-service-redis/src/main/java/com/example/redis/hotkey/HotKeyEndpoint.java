@@ -0,0 +1,22 @@
+package com.example.redis.hotkey;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Exposes hot keys and promotion counters at /actuator/redishotkeys
+ */
+@Endpoint(id = "redishotkeys")
+public class HotKeyEndpoint {
+
+    private final HotKeyDetector hotKeyDetector;
+
+    public HotKeyEndpoint(HotKeyDetector hotKeyDetector) {
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    @ReadOperation
+    public HotKeyStats hotKeys() {
+        return hotKeyDetector.getStats();
+    }
+}
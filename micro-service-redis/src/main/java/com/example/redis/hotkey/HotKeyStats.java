@@ -0,0 +1,33 @@
+package com.example.redis.hotkey;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class HotKeyStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Hot keys with their estimated accesses per window, hottest first
+     */
+    private Map<String, Long> hotKeys;
+
+    /**
+     * Number of times a value was copied to the local cache
+     */
+    private long promotionCount;
+
+    /**
+     * Reads served from a local copy
+     */
+    private long promotedHitCount;
+
+    /**
+     * Local copies currently held
+     */
+    private long promotedSize;
+}
@@ -0,0 +1,134 @@
+package com.example.redis.metrics;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RedisTemplate that times every command issued on its connections.
+ * <p>
+ * With Lettuce, plain commands share one native connection and only pipelines, transactions and
+ * blocking commands borrow a dedicated connection from the pool; openPipeline and multi are where
+ * that borrow happens, so their time is recorded as pool wait. Commands queued inside a pipeline or
+ * transaction are not timed one by one, the pipeline is timed as a whole when it is closed.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class MeteredRedisTemplate<K, V> extends RedisTemplate<K, V> {
+
+    private static final Set<String> UNTIMED = new HashSet<>(Arrays.asList(
+            "close", "isClosed", "getNativeConnection", "isPipelined", "isQueueing", "getSentinelConnection",
+            "discard", "toString", "equals", "hashCode"));
+
+    private static final Set<String> FLUSH = new HashSet<>(Arrays.asList("closePipeline", "exec"));
+
+    private static final Set<String> POOL_WAIT = new HashSet<>(Arrays.asList("openPipeline", "multi"));
+
+    private final RedisCommandMetrics commandMetrics;
+
+    private final Map<Method, String> commandNames = new ConcurrentHashMap<>();
+
+    public MeteredRedisTemplate(RedisCommandMetrics commandMetrics) {
+        this.commandMetrics = commandMetrics;
+    }
+
+    @Override
+    protected RedisConnection preProcessConnection(RedisConnection connection, boolean existingConnection) {
+        return (RedisConnection) proxy(connection, connection);
+    }
+
+    private Object proxy(Object target, RedisConnection connection) {
+        ClassLoader classLoader = getClass().getClassLoader();
+        return Proxy.newProxyInstance(classLoader, ClassUtils.getAllInterfacesForClass(target.getClass(), classLoader),
+                new MeteredInvocationHandler(target, connection));
+    }
+
+    private class MeteredInvocationHandler implements InvocationHandler {
+
+        private final Object target;
+
+        private final RedisConnection connection;
+
+        MeteredInvocationHandler(Object target, RedisConnection connection) {
+            this.target = target;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (UNTIMED.contains(name) || (isBuffering() && !FLUSH.contains(name))) {
+                return invokeTarget(method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                Object result = invokeTarget(method, args);
+                // Newer operations call e.g. connection.stringCommands().getDel(..), time those too
+                if (result != null && name.endsWith("Commands") && method.getReturnType().isInterface()) {
+                    return proxy(result, connection);
+                }
+                return result;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                if (POOL_WAIT.contains(name)) {
+                    commandMetrics.recordPoolWait(nanos);
+                } else if (!name.endsWith("Commands")) {
+                    commandMetrics.record("closePipeline".equals(name) ? "pipeline" : commandName(method),
+                            firstKey(name, args), nanos);
+                }
+            }
+        }
+
+        private boolean isBuffering() {
+            return connection.isPipelined() || connection.isQueueing();
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+    private String commandName(Method method) {
+        return commandNames.computeIfAbsent(method, m -> m.getName().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * First key of a command: the leading byte[] argument, or the first of keysAndArgs for scripts
+     */
+    private static byte[] firstKey(String name, Object[] args) {
+        if (args == null || args.length == 0) {
+            return null;
+        }
+        if (name.startsWith("eval")) {
+            // eval(script, returnType, numKeys, keysAndArgs...)
+            if (args.length == 4 && args[2] instanceof Integer && (Integer) args[2] > 0
+                    && args[3] instanceof byte[][] && ((byte[][]) args[3]).length > 0) {
+                return ((byte[][]) args[3])[0];
+            }
+            return null;
+        }
+        if (args[0] instanceof byte[]) {
+            return (byte[]) args[0];
+        }
+        if (args[0] instanceof byte[][] && ((byte[][]) args[0]).length > 0) {
+            return ((byte[][]) args[0])[0];
+        }
+        return null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.redis.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Exposes command latency, pool wait and slow commands at /actuator/rediscommands
+ */
+@Endpoint(id = "rediscommands")
+public class RedisCommandEndpoint {
+
+    private final RedisCommandMetrics commandMetrics;
+
+    public RedisCommandEndpoint(RedisCommandMetrics commandMetrics) {
+        this.commandMetrics = commandMetrics;
+    }
+
+    @ReadOperation
+    public RedisCommandStats commands() {
+        return commandMetrics.getStats();
+    }
+}
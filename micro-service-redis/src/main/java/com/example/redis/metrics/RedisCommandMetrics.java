@@ -0,0 +1,158 @@
+package com.example.redis.metrics;
+
+import com.example.redis.config.MicroRedisProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records redisTemplate command latency into Micrometer timers tagged by command and key prefix,
+ * pool wait time into its own timer, and commands above the slow threshold into a ring buffer.
+ * <p>
+ * Timers publish histogram buckets (HdrHistogram-backed, decaying over the registry's step), so
+ * percentiles can be aggregated across nodes. Key prefixes are capped to keep tag cardinality bounded.
+ */
+public class RedisCommandMetrics {
+
+    public static final String COMMAND_TIMER = "redis.command";
+
+    public static final String POOL_WAIT_TIMER = "redis.pool.wait";
+
+    private static final String NO_PREFIX = "-";
+
+    private static final String OTHER_PREFIX = "other";
+
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final MeterRegistry registry;
+    private final MicroRedisProperties.Metrics properties;
+    private final byte delimiter;
+    private final long slowThresholdNanos;
+
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Boolean> prefixes = new ConcurrentHashMap<>();
+    private final Timer poolWait;
+
+    private final AtomicReferenceArray<SlowCommand> slowCommands;
+    private final AtomicLong slowIndex = new AtomicLong();
+
+    public RedisCommandMetrics(MeterRegistry registry, MicroRedisProperties.Metrics properties) {
+        this.registry = registry;
+        this.properties = properties;
+        this.delimiter = properties.getKeyDelimiter().getBytes(StandardCharsets.UTF_8)[0];
+        this.slowThresholdNanos = properties.getSlowThreshold().toNanos();
+        this.slowCommands = new AtomicReferenceArray<>(Math.max(1, properties.getSlowCapacity()));
+        this.poolWait = timer(Timer.builder(POOL_WAIT_TIMER)
+                .description("Time spent borrowing a dedicated redis connection from the pool"));
+    }
+
+    /**
+     * Record one command
+     *
+     * @param command command name
+     * @param key     first key of the command, null for keyless commands
+     * @param nanos   duration in nanoseconds
+     */
+    public void record(String command, byte[] key, long nanos) {
+        String prefix = prefix(key);
+        timers.computeIfAbsent(command + ' ' + prefix, k -> timer(Timer.builder(COMMAND_TIMER)
+                .description("Redis command latency")
+                .tag("command", command)
+                .tag("prefix", prefix)))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (nanos >= slowThresholdNanos) {
+            String keyText = key == null ? null
+                    : new String(key, 0, Math.min(key.length, MAX_KEY_LENGTH), StandardCharsets.UTF_8);
+            SlowCommand slowCommand = new SlowCommand(command, keyText, TimeUnit.NANOSECONDS.toMicros(nanos),
+                    System.currentTimeMillis(), Thread.currentThread().getName());
+            slowCommands.set((int) (slowIndex.getAndIncrement() % slowCommands.length()), slowCommand);
+        }
+    }
+
+    /**
+     * Record time spent waiting for a pooled connection
+     *
+     * @param nanos duration in nanoseconds
+     */
+    public void recordPoolWait(long nanos) {
+        poolWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get latency per command and prefix, pool wait and recent slow commands
+     *
+     * @return stats snapshot
+     */
+    public RedisCommandStats getStats() {
+        List<Map.Entry<String, Timer>> entries = new ArrayList<>(timers.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Timer> entry) -> entry.getValue().count()).reversed());
+        Map<String, RedisCommandStats.Latency> commands = new LinkedHashMap<>();
+        for (Map.Entry<String, Timer> entry : entries) {
+            commands.put(entry.getKey(), latency(entry.getValue()));
+        }
+
+        List<SlowCommand> slow = new ArrayList<>();
+        for (int i = 0; i < slowCommands.length(); i++) {
+            SlowCommand slowCommand = slowCommands.get(i);
+            if (slowCommand != null) {
+                slow.add(slowCommand);
+            }
+        }
+        slow.sort(Comparator.comparingLong(SlowCommand::getDurationMicros).reversed());
+        return new RedisCommandStats(commands, latency(poolWait), slow);
+    }
+
+    private Timer timer(Timer.Builder builder) {
+        return builder
+                .publishPercentileHistogram(properties.isHistogram())
+                .publishPercentiles(properties.getPercentiles())
+                .maximumExpectedValue(properties.getMaximumExpectedValue())
+                .register(registry);
+    }
+
+    private String prefix(byte[] key) {
+        if (key == null || key.length == 0) {
+            return NO_PREFIX;
+        }
+        int end = 0;
+        while (end < key.length && key[end] != delimiter) {
+            end++;
+        }
+        if (end == key.length) {
+            // No delimiter, the whole key would be its own tag
+            return OTHER_PREFIX;
+        }
+        String prefix = new String(key, 0, end, StandardCharsets.UTF_8);
+        if (prefixes.containsKey(prefix)) {
+            return prefix;
+        }
+        if (prefixes.size() >= properties.getMaximumPrefixes()) {
+            return OTHER_PREFIX;
+        }
+        prefixes.putIfAbsent(prefix, Boolean.TRUE);
+        return prefix;
+    }
+
+    private static RedisCommandStats.Latency latency(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        Map<Double, Double> percentiles = new LinkedHashMap<>();
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            percentiles.put(value.percentile(), value.value(TimeUnit.MICROSECONDS));
+        }
+        return new RedisCommandStats.Latency(snapshot.count(), snapshot.mean(TimeUnit.MICROSECONDS),
+                snapshot.max(TimeUnit.MICROSECONDS), percentiles);
+    }
+}
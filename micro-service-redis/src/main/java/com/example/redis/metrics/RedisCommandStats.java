@@ -0,0 +1,46 @@
+package com.example.redis.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class RedisCommandStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Latency per "command prefix", busiest first
+     */
+    private Map<String, Latency> commands;
+
+    /**
+     * Time spent borrowing a dedicated connection from the pool
+     */
+    private Latency poolWait;
+
+    /**
+     * Recent commands above the slow threshold, slowest first
+     */
+    private List<SlowCommand> slowCommands;
+
+    @Data
+    @AllArgsConstructor
+    public static class Latency implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private long count;
+
+        private double meanMicros;
+
+        private double maxMicros;
+
+        /**
+         * Percentile to latency in microseconds
+         */
+        private Map<Double, Double> percentileMicros;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.redis.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+public class SlowCommand implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Command name, e.g. hget
+     */
+    private String command;
+
+    /**
+     * First key of the command, truncated, or null for keyless commands
+     */
+    private String key;
+
+    /**
+     * Time spent in the command including pool wait, in microseconds
+     */
+    private long durationMicros;
+
+    /**
+     * Epoch millis when the command finished
+     */
+    private long timestamp;
+
+    /**
+     * Calling thread
+     */
+    private String thread;
+}
@@ -0,0 +1,149 @@
+package com.example.redis.ratelimit;
+
+import com.example.redis.config.MicroRedisProperties;
+import com.example.redis.script.RedisScriptExecutor;
+import com.example.redis.script.RedisScripts;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster-wide rate limiter backed by Lua scripts.
+ * <p>
+ * Each node leases permits from redis in batches of {@code batch-size}, by default a tenth of its
+ * share of permits, and spends them locally, so most decisions never leave the JVM. When redis
+ * grants less than a batch, calls are rejected locally until a batch could have refilled. Redis
+ * never grants more than the configured rate, leased permits a node does not spend within
+ * {@code lease-time} are dropped rather than handed back.
+ */
+@Component
+public class RedisRateLimiter {
+
+    @Autowired
+    private RedisScriptExecutor scriptExecutor;
+
+    @Autowired
+    private MicroRedisProperties redisProperties;
+
+    private Cache<String, LocalPermits> leases;
+
+    @PostConstruct
+    public void init() {
+        MicroRedisProperties.RateLimiter properties = redisProperties.getRateLimiter();
+        leases = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumKeys())
+                .expireAfterAccess(properties.getLeaseTime().toMillis() * 10, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Try to take one permit
+     *
+     * @param ruleName rule name under micro.service.redis.rate-limiter.rules
+     * @param key      limited key, such as a tenant id or API name
+     * @return true if permitted
+     */
+    public boolean tryAcquire(String ruleName, String key) {
+        return tryAcquire(ruleName, key, 1);
+    }
+
+    /**
+     * Try to take permits
+     *
+     * @param ruleName rule name under micro.service.redis.rate-limiter.rules
+     * @param key      limited key, such as a tenant id or API name
+     * @param permits  permits
+     * @return true if permitted
+     */
+    public boolean tryAcquire(String ruleName, String key, int permits) {
+        MicroRedisProperties.RateLimiter.Rule rule = redisProperties.getRateLimiter().getRules().get(ruleName);
+        if (rule == null) {
+            throw new IllegalArgumentException("Unknown rate limit rule: " + ruleName);
+        }
+        return tryAcquire(ruleName, key, rule, permits);
+    }
+
+    /**
+     * Try to take permits under an ad-hoc rule
+     *
+     * @param ruleName rule name, part of the redis key
+     * @param key      limited key, such as a tenant id or API name
+     * @param rule     rule
+     * @param permits  permits
+     * @return true if permitted
+     */
+    public boolean tryAcquire(String ruleName, String key, MicroRedisProperties.RateLimiter.Rule rule, int permits) {
+        String redisKey = redisProperties.getRateLimiter().getKeyPrefix() + ruleName + ":" + key;
+        LocalPermits local = leases.get(redisKey, k -> new LocalPermits());
+        synchronized (local) {
+            long now = System.currentTimeMillis();
+            if (local.tryTake(permits, now)) {
+                return true;
+            }
+            if (now < local.retryAt) {
+                return false;
+            }
+            // Lease a batch; at most one round trip per key at a time on this node
+            long requested = Math.max(permits, batchSize(rule));
+            long granted = lease(redisKey, rule, requested);
+            local.add(granted, now + redisProperties.getRateLimiter().getLeaseTime().toMillis());
+            if (granted < requested) {
+                // Redis is short of permits, don't ask again before a batch could have refilled
+                local.retryAt = now + requested * rule.getPeriod().toMillis() / Math.max(1, rule.getPermits());
+            }
+            return local.tryTake(permits, now);
+        }
+    }
+
+    private int batchSize(MicroRedisProperties.RateLimiter.Rule rule) {
+        if (rule.getBatchSize() > 0) {
+            return rule.getBatchSize();
+        }
+        long share = rule.getPermits() / Math.max(1, redisProperties.getRateLimiter().getNodes());
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, share / 10));
+    }
+
+    private long lease(String redisKey, MicroRedisProperties.RateLimiter.Rule rule, long requested) {
+        long periodMillis = rule.getPeriod().toMillis();
+        Long granted;
+        if (rule.getAlgorithm() == MicroRedisProperties.RateLimiter.Algorithm.SLIDING_WINDOW) {
+            granted = scriptExecutor.execute(RedisScripts.SLIDING_WINDOW, Collections.singletonList(redisKey),
+                    rule.getPermits(), periodMillis, requested);
+        } else {
+            long capacity = rule.getCapacity() != null ? rule.getCapacity() : rule.getPermits();
+            granted = scriptExecutor.execute(RedisScripts.TOKEN_BUCKET, Collections.singletonList(redisKey),
+                    rule.getPermits(), periodMillis, capacity, requested);
+        }
+        return granted == null ? 0 : granted;
+    }
+
+    /**
+     * Permits leased from redis and not spent yet
+     */
+    private static final class LocalPermits {
+        private long available;
+        private long expireAt;
+        private long retryAt;
+
+        boolean tryTake(int permits, long now) {
+            if (now >= expireAt) {
+                available = 0;
+            }
+            if (available < permits) {
+                return false;
+            }
+            available -= permits;
+            return true;
+        }
+
+        void add(long permits, long expireAt) {
+            this.available += permits;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.redis.script;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Runs Lua scripts by SHA through EVALSHA. Scripts are loaded once at startup; if the server has
+ * lost a script (restart, SCRIPT FLUSH, another cluster node), the NOSCRIPT reply falls back to
+ * EVAL, which loads it again.
+ * <p>
+ * Arguments are passed as-is when they are {@code byte[]} and as their string form otherwise, so
+ * values should be converted with {@link #value(Object)} or {@link #hashValue(Object)} before being
+ * handed to a script.
+ */
+@Slf4j
+@Component
+public class RedisScriptExecutor {
+
+    private static final RedisSerializer<Object> ARGS_SERIALIZER = new RedisSerializer<Object>() {
+        @Override
+        public byte[] serialize(Object value) {
+            if (value instanceof byte[]) {
+                return (byte[]) value;
+            }
+            return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return bytes;
+        }
+    };
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @PostConstruct
+    public void loadBuiltInScripts() {
+        for (RedisScript<?> script : RedisScripts.builtIn()) {
+            load(script);
+        }
+    }
+
+    /**
+     * Load script into the script cache of the server
+     *
+     * @param script script
+     */
+    public void load(RedisScript<?> script) {
+        try {
+            byte[] body = script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands().scriptLoad(body));
+        } catch (Exception e) {
+            log.warn("Failed to preload redis script {}, it will be loaded on first use", script.getSha1(), e);
+        }
+    }
+
+    /**
+     * Execute script
+     *
+     * @param script script
+     * @param keys   keys
+     * @param args   arguments, see {@link #value(Object)}
+     * @param <T>    result type
+     * @return script result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        return redisTemplate.execute(script, ARGS_SERIALIZER, (RedisSerializer<T>) redisTemplate.getValueSerializer(), keys, args);
+    }
+
+    /**
+     * Get serializer of script arguments, {@code byte[]} as-is and anything else as its string form
+     *
+     * @return arguments serializer
+     */
+    public static RedisSerializer<Object> argsSerializer() {
+        return ARGS_SERIALIZER;
+    }
+
+    /**
+     * Serialize value the same way RedisTemplate stores values
+     *
+     * @param value value
+     * @return serialized value
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] value(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(value);
+    }
+
+    /**
+     * Serialize hash value the same way RedisTemplate stores hash values
+     *
+     * @param value hash value
+     * @return serialized hash value
+     */
+    @SuppressWarnings("unchecked")
+    public byte[] hashValue(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getHashValueSerializer()).serialize(value);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.redis.script;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Built-in Lua scripts. Each script hashes its SHA1 once and is invoked through EVALSHA.
+ */
+public final class RedisScripts {
+
+    /**
+     * KEYS[1] hash, ARGV[1] ttl in millis, ARGV[2..] field/value pairs
+     */
+    public static final RedisScript<Long> HSET_EXPIRE = RedisScript.of(
+            "for i = 2, #ARGV, 2 do\n" +
+            "  redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+            "end\n" +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[1])\n" +
+            "return (#ARGV - 1) / 2", Long.class);
+
+    /**
+     * KEYS[1] set, ARGV[1] ttl in millis, ARGV[2..] members; returns number of added members
+     */
+    public static final RedisScript<Long> SADD_EXPIRE = RedisScript.of(
+            "local added = 0\n" +
+            "for i = 2, #ARGV do\n" +
+            "  added = added + redis.call('SADD', KEYS[1], ARGV[i])\n" +
+            "end\n" +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[1])\n" +
+            "return added", Long.class);
+
+    /**
+     * KEYS[1] key, ARGV[1] expected value, ARGV[2] new value, ARGV[3] ttl in millis (0 keeps no ttl);
+     * returns 1 if swapped
+     */
+    public static final RedisScript<Long> COMPARE_AND_SET = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then\n" +
+            "  return 0\n" +
+            "end\n" +
+            "if tonumber(ARGV[3]) > 0 then\n" +
+            "  redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3])\n" +
+            "else\n" +
+            "  redis.call('SET', KEYS[1], ARGV[2])\n" +
+            "end\n" +
+            "return 1", Long.class);
+
+    /**
+     * KEYS[1] key, ARGV[1] expected value; returns 1 if deleted
+     */
+    public static final RedisScript<Long> COMPARE_AND_DELETE = RedisScript.of(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then\n" +
+            "  return redis.call('DEL', KEYS[1])\n" +
+            "end\n" +
+            "return 0", Long.class);
+
+    /**
+     * KEYS[1] list, ARGV[1] max size, ARGV[2] ttl in millis (0 keeps no ttl), ARGV[3..] values;
+     * returns list size after trimming
+     */
+    public static final RedisScript<Long> CAPPED_LIST_PUSH = RedisScript.of(
+            "for i = 3, #ARGV do\n" +
+            "  redis.call('LPUSH', KEYS[1], ARGV[i])\n" +
+            "end\n" +
+            "redis.call('LTRIM', KEYS[1], 0, tonumber(ARGV[1]) - 1)\n" +
+            "if tonumber(ARGV[2]) > 0 then\n" +
+            "  redis.call('PEXPIRE', KEYS[1], ARGV[2])\n" +
+            "end\n" +
+            "return redis.call('LLEN', KEYS[1])", Long.class);
+
+    /**
+     * KEYS[1] bucket hash, ARGV[1] permits per period, ARGV[2] period in millis, ARGV[3] capacity,
+     * ARGV[4] requested permits; returns granted permits, possibly fewer than requested
+     */
+    public static final RedisScript<Long> TOKEN_BUCKET = RedisScript.of(
+            "redis.replicate_commands()\n" +
+            "local permits = tonumber(ARGV[1])\n" +
+            "local period = tonumber(ARGV[2])\n" +
+            "local capacity = tonumber(ARGV[3])\n" +
+            "local requested = tonumber(ARGV[4])\n" +
+            "local time = redis.call('TIME')\n" +
+            "local now = time[1] * 1000 + math.floor(time[2] / 1000)\n" +
+            "local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'ts')\n" +
+            "local tokens = tonumber(bucket[1]) or capacity\n" +
+            "local ts = tonumber(bucket[2]) or now\n" +
+            "tokens = math.min(capacity, tokens + math.max(0, now - ts) * permits / period)\n" +
+            "local granted = math.max(0, math.min(requested, math.floor(tokens)))\n" +
+            "redis.call('HSET', KEYS[1], 'tokens', tokens - granted, 'ts', now)\n" +
+            "redis.call('PEXPIRE', KEYS[1], math.ceil(capacity * period / permits) + 1000)\n" +
+            "return granted", Long.class);
+
+    /**
+     * KEYS[1] window hash, ARGV[1] permits per window, ARGV[2] window in millis, ARGV[3] requested permits;
+     * returns granted permits, possibly fewer than requested. The previous window is weighted by its
+     * overlap with the sliding window.
+     */
+    public static final RedisScript<Long> SLIDING_WINDOW = RedisScript.of(
+            "redis.replicate_commands()\n" +
+            "local permits = tonumber(ARGV[1])\n" +
+            "local window = tonumber(ARGV[2])\n" +
+            "local requested = tonumber(ARGV[3])\n" +
+            "local time = redis.call('TIME')\n" +
+            "local now = time[1] * 1000 + math.floor(time[2] / 1000)\n" +
+            "local current = math.floor(now / window)\n" +
+            "local counts = redis.call('HMGET', KEYS[1], tostring(current), tostring(current - 1))\n" +
+            "local used = (tonumber(counts[1]) or 0)\n" +
+            "  + (tonumber(counts[2]) or 0) * (1 - (now % window) / window)\n" +
+            "local granted = math.max(0, math.min(requested, math.floor(permits - used)))\n" +
+            "if granted > 0 then\n" +
+            "  redis.call('HINCRBY', KEYS[1], tostring(current), granted)\n" +
+            "end\n" +
+            "redis.call('HDEL', KEYS[1], tostring(current - 2))\n" +
+            "redis.call('PEXPIRE', KEYS[1], window * 2)\n" +
+            "return granted", Long.class);
+
+    private static final List<RedisScript<?>> BUILT_IN = Collections.unmodifiableList(Arrays.<RedisScript<?>>asList(
+            HSET_EXPIRE, SADD_EXPIRE, COMPARE_AND_SET, COMPARE_AND_DELETE, CAPPED_LIST_PUSH,
+            TOKEN_BUCKET, SLIDING_WINDOW));
+
+    private RedisScripts() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Get all built-in scripts
+     *
+     * @return built-in scripts
+     */
+    public static List<RedisScript<?>> builtIn() {
+        return BUILT_IN;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.redis.serializer;
+
+import com.example.redis.config.MicroRedisProperties;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Value serializer writing registered types as Smile (binary JSON) behind a small type id instead of
+ * a class name, and compressing payloads above a size threshold.
+ * <p>
+ * Layout: {@code header [type id] [original length] payload}. The header byte lies in 0x10-0x1F
+ * and never collides with the first byte of a JSON document, so values written by the plain JSON
+ * serializer are still read during a rolling migration. Unregistered types fall back to the JSON
+ * serializer, and small uncompressed JSON values are written without a header at all.
+ * <p>
+ * Registered types are read with their declared field types; fields declared as {@code Object}
+ * come back as maps and lists, since no class names are stored.
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    static final int MAGIC = 0x10;
+    static final int MAGIC_MASK = 0xF0;
+    static final int FLAG_COMPACT = 0x01;
+    static final int FLAG_COMPRESSED = 0x02;
+
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    private final RedisSerializer<Object> jsonSerializer;
+    private final RedisTypeRegistry typeRegistry;
+    private final MicroRedisProperties.Serializer.Compression compression;
+    private final int compressionThreshold;
+    private final ObjectMapper smileMapper;
+
+    private final LZ4Compressor compressor;
+    private final LZ4FastDecompressor decompressor;
+
+    public CompactRedisSerializer(RedisSerializer<Object> jsonSerializer,
+                                  RedisTypeRegistry typeRegistry,
+                                  MicroRedisProperties.Serializer.Compression compression,
+                                  int compressionThreshold) {
+        this.jsonSerializer = jsonSerializer;
+        this.typeRegistry = typeRegistry;
+        this.compression = compression;
+        this.compressionThreshold = compressionThreshold;
+
+        ObjectMapper mapper = new ObjectMapper(new SmileFactory());
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.findAndRegisterModules();
+        this.smileMapper = mapper;
+
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.fastDecompressor();
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY_ARRAY;
+        }
+        Integer typeId = typeRegistry.getId(value.getClass());
+        int flags = 0;
+        byte[] payload;
+        if (typeId != null) {
+            flags |= FLAG_COMPACT;
+            try {
+                payload = smileMapper.writeValueAsBytes(value);
+            } catch (IOException e) {
+                throw new SerializationException("Could not write compact value: " + e.getMessage(), e);
+            }
+        } else {
+            payload = jsonSerializer.serialize(value);
+        }
+
+        byte[] compressed = null;
+        int compressedLength = 0;
+        if (compression == MicroRedisProperties.Serializer.Compression.LZ4 && payload.length >= compressionThreshold) {
+            compressed = new byte[compressor.maxCompressedLength(payload.length)];
+            compressedLength = compressor.compress(payload, 0, payload.length, compressed, 0, compressed.length);
+            if (compressedLength < payload.length) {
+                flags |= FLAG_COMPRESSED;
+            }
+        }
+        if (flags == 0) {
+            return payload;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + 8);
+        out.write(MAGIC | flags);
+        if (typeId != null) {
+            writeVarInt(out, typeId);
+        }
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            writeVarInt(out, payload.length);
+            out.write(compressed, 0, compressedLength);
+        } else {
+            out.write(payload, 0, payload.length);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        int header = bytes[0] & 0xFF;
+        if ((header & MAGIC_MASK) != MAGIC) {
+            // Plain JSON written by Jackson2JsonRedisSerializer
+            return jsonSerializer.deserialize(bytes);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+        Class<?> type = null;
+        if ((header & FLAG_COMPACT) != 0) {
+            int typeId = readVarInt(buffer);
+            type = typeRegistry.getType(typeId);
+            if (type == null) {
+                throw new SerializationException("Unknown redis value type id: " + typeId);
+            }
+        }
+        byte[] payload;
+        if ((header & FLAG_COMPRESSED) != 0) {
+            int length = readVarInt(buffer);
+            payload = new byte[length];
+            decompressor.decompress(bytes, buffer.position(), payload, 0, length);
+        } else {
+            payload = Arrays.copyOfRange(bytes, buffer.position(), bytes.length);
+        }
+
+        if (type == null) {
+            return jsonSerializer.deserialize(payload);
+        }
+        try {
+            return smileMapper.readValue(payload, type);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read compact value: " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varint in redis value header");
+    }
+}
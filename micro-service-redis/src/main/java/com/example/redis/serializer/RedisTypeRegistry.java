@@ -0,0 +1,81 @@
+package com.example.redis.serializer;
+
+import org.springframework.util.ClassUtils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Two-way table between value classes and the small integer ids written in their place
+ */
+public class RedisTypeRegistry {
+
+    private final Map<Class<?>, Integer> idsByType = new HashMap<>();
+    private final Map<Integer, Class<?>> typesById = new HashMap<>();
+
+    /**
+     * Build registry from an id to class name table
+     *
+     * @param typeIds id to fully qualified class name
+     * @return registry
+     */
+    public static RedisTypeRegistry of(Map<Integer, String> typeIds) {
+        RedisTypeRegistry registry = new RedisTypeRegistry();
+        if (typeIds == null) {
+            return registry;
+        }
+        ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+        for (Map.Entry<Integer, String> entry : typeIds.entrySet()) {
+            registry.register(entry.getKey(), ClassUtils.resolveClassName(entry.getValue().trim(), classLoader));
+        }
+        return registry;
+    }
+
+    /**
+     * Register type
+     *
+     * @param id   type id
+     * @param type type
+     */
+    public void register(int id, Class<?> type) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Type id must not be negative: " + id);
+        }
+        Class<?> existing = typesById.get(id);
+        if (existing != null && existing != type) {
+            throw new IllegalArgumentException("Type id " + id + " is already registered for " + existing.getName());
+        }
+        idsByType.put(type, id);
+        typesById.put(id, type);
+    }
+
+    /**
+     * Get id of type
+     *
+     * @param type type
+     * @return type id, null if not registered
+     */
+    public Integer getId(Class<?> type) {
+        return idsByType.get(type);
+    }
+
+    /**
+     * Get type of id
+     *
+     * @param id type id
+     * @return type, null if not registered
+     */
+    public Class<?> getType(int id) {
+        return typesById.get(id);
+    }
+
+    /**
+     * Get registered types
+     *
+     * @return type id table
+     */
+    public Map<Integer, Class<?>> getTypes() {
+        return Collections.unmodifiableMap(typesById);
+    }
+}
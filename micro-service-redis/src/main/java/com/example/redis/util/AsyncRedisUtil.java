@@ -0,0 +1,454 @@
+package com.example.redis.util;
+
+import com.example.redis.cache.NearCache;
+import com.example.redis.hotkey.HotKeyDetector;
+import com.example.redis.script.RedisScriptExecutor;
+import com.example.redis.script.RedisScripts;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Non-blocking counterpart of {@link RedisUtil}.
+ * <p>
+ * Commands run on the shared, multiplexed Lettuce connection behind {@link ReactiveRedisTemplate},
+ * so independent reads issued together are in flight concurrently without holding a thread each.
+ * Reads go straight to redis; writes drop the key from the near cache and hot-key copies like
+ * {@link RedisUtil} does.
+ */
+@Component
+public class AsyncRedisUtil {
+
+    private static final RedisElementWriter<Object> ARGS_WRITER = RedisElementWriter.from(RedisScriptExecutor.argsSerializer());
+    private static final RedisElementReader<Long> LONG_READER = RedisElementReader.from(new GenericToStringSerializer<>(Long.class));
+
+    @Autowired
+    private ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+
+    @Autowired
+    private RedisScriptExecutor scriptExecutor;
+
+    @Autowired(required = false)
+    private NearCache nearCache;
+
+    @Autowired(required = false)
+    private HotKeyDetector hotKeyDetector;
+
+    /**
+     * Set key-value
+     *
+     * @param key   key
+     * @param value value
+     * @return true if set
+     */
+    public CompletableFuture<Boolean> set(String key, Object value) {
+        return invalidateAfter(key, reactiveRedisTemplate.opsForValue().set(key, value));
+    }
+
+    /**
+     * Set key-value with expiration
+     *
+     * @param key      key
+     * @param value    value
+     * @param timeout  timeout
+     * @param timeUnit time unit
+     * @return true if set
+     */
+    public CompletableFuture<Boolean> set(String key, Object value, long timeout, TimeUnit timeUnit) {
+        return invalidateAfter(key, reactiveRedisTemplate.opsForValue().set(key, value, toDuration(timeout, timeUnit)));
+    }
+
+    /**
+     * Get value by key
+     *
+     * @param key key
+     * @return value, null if missing
+     */
+    public CompletableFuture<Object> get(String key) {
+        return reactiveRedisTemplate.opsForValue().get(key).toFuture();
+    }
+
+    /**
+     * Get multiple values with one MGET
+     *
+     * @param keys keys
+     * @return values in key order, null for missing keys
+     */
+    public CompletableFuture<List<Object>> mGet(List<String> keys) {
+        return reactiveRedisTemplate.opsForValue().multiGet(keys).toFuture();
+    }
+
+    /**
+     * Delete key
+     *
+     * @param key key
+     * @return true if deleted
+     */
+    public CompletableFuture<Boolean> delete(String key) {
+        return invalidateAfter(key, reactiveRedisTemplate.delete(key).map(count -> count > 0));
+    }
+
+    /**
+     * Delete multiple keys
+     *
+     * @param keys keys
+     * @return number of deleted keys
+     */
+    public CompletableFuture<Long> delete(Collection<String> keys) {
+        return invalidateAfter(keys, reactiveRedisTemplate.delete(keys.toArray(new String[0])));
+    }
+
+    /**
+     * Set expiration
+     *
+     * @param key      key
+     * @param timeout  timeout
+     * @param timeUnit time unit
+     * @return true if set
+     */
+    public CompletableFuture<Boolean> expire(String key, long timeout, TimeUnit timeUnit) {
+        return reactiveRedisTemplate.expire(key, toDuration(timeout, timeUnit)).toFuture();
+    }
+
+    /**
+     * Get expiration
+     *
+     * @param key key
+     * @return expiration in seconds
+     */
+    public CompletableFuture<Long> getExpire(String key) {
+        return reactiveRedisTemplate.getExpire(key).map(Duration::getSeconds).toFuture();
+    }
+
+    /**
+     * Check if key exists
+     *
+     * @param key key
+     * @return true if exists
+     */
+    public CompletableFuture<Boolean> hasKey(String key) {
+        return reactiveRedisTemplate.hasKey(key).toFuture();
+    }
+
+    /**
+     * Increment value
+     *
+     * @param key   key
+     * @param delta increment
+     * @return new value
+     */
+    public CompletableFuture<Long> increment(String key, long delta) {
+        return invalidateAfter(key, reactiveRedisTemplate.opsForValue().increment(key, delta));
+    }
+
+    /**
+     * Decrement value
+     *
+     * @param key   key
+     * @param delta decrement
+     * @return new value
+     */
+    public CompletableFuture<Long> decrement(String key, long delta) {
+        return invalidateAfter(key, reactiveRedisTemplate.opsForValue().decrement(key, delta));
+    }
+
+    /**
+     * Get hash value
+     *
+     * @param key     key
+     * @param hashKey hash key
+     * @return hash value, null if missing
+     */
+    public CompletableFuture<Object> hGet(String key, String hashKey) {
+        return reactiveRedisTemplate.<Object, Object>opsForHash().get(key, hashKey).toFuture();
+    }
+
+    /**
+     * Set hash value
+     *
+     * @param key     key
+     * @param hashKey hash key
+     * @param value   value
+     * @return true if a new field was created
+     */
+    public CompletableFuture<Boolean> hSet(String key, String hashKey, Object value) {
+        return invalidateAfter(key, reactiveRedisTemplate.<Object, Object>opsForHash().put(key, hashKey, value));
+    }
+
+    /**
+     * Set hash value with expiration in one atomic round trip
+     *
+     * @param key      key
+     * @param hashKey  hash key
+     * @param value    value
+     * @param timeout  timeout
+     * @param timeUnit time unit
+     * @return number of fields written
+     */
+    public CompletableFuture<Long> hSet(String key, String hashKey, Object value, long timeout, TimeUnit timeUnit) {
+        return invalidateAfter(key, executeScript(RedisScripts.HSET_EXPIRE, key,
+                timeUnit.toMillis(timeout), hashKey, scriptExecutor.hashValue(value)));
+    }
+
+    /**
+     * Get all hash entries
+     *
+     * @param key key
+     * @return hash entries
+     */
+    public CompletableFuture<Map<Object, Object>> hGetAll(String key) {
+        return reactiveRedisTemplate.<Object, Object>opsForHash().entries(key)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .toFuture();
+    }
+
+    /**
+     * Set multiple hash entries
+     *
+     * @param key key
+     * @param map entries
+     * @return true if set
+     */
+    public CompletableFuture<Boolean> hSetAll(String key, Map<String, Object> map) {
+        return invalidateAfter(key, reactiveRedisTemplate.<String, Object>opsForHash().putAll(key, map));
+    }
+
+    /**
+     * Set multiple hash entries with expiration in one atomic round trip
+     *
+     * @param key      key
+     * @param map      entries
+     * @param timeout  timeout
+     * @param timeUnit time unit
+     * @return number of fields written
+     */
+    public CompletableFuture<Long> hSetAll(String key, Map<String, Object> map, long timeout, TimeUnit timeUnit) {
+        Object[] args = new Object[1 + map.size() * 2];
+        args[0] = timeUnit.toMillis(timeout);
+        int i = 1;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            args[i++] = entry.getKey();
+            args[i++] = scriptExecutor.hashValue(entry.getValue());
+        }
+        return invalidateAfter(key, executeScript(RedisScripts.HSET_EXPIRE, key, args));
+    }
+
+    /**
+     * Delete hash entries
+     *
+     * @param key      key
+     * @param hashKeys hash keys
+     * @return number of deleted entries
+     */
+    public CompletableFuture<Long> hDelete(String key, Object... hashKeys) {
+        return invalidateAfter(key, reactiveRedisTemplate.<Object, Object>opsForHash().remove(key, hashKeys));
+    }
+
+    /**
+     * Check if hash key exists
+     *
+     * @param key     key
+     * @param hashKey hash key
+     * @return true if exists
+     */
+    public CompletableFuture<Boolean> hHasKey(String key, String hashKey) {
+        return reactiveRedisTemplate.<Object, Object>opsForHash().hasKey(key, hashKey).toFuture();
+    }
+
+    /**
+     * Increment hash value
+     *
+     * @param key     key
+     * @param hashKey hash key
+     * @param delta   increment
+     * @return new value
+     */
+    public CompletableFuture<Long> hIncrement(String key, String hashKey, long delta) {
+        return invalidateAfter(key, reactiveRedisTemplate.<Object, Object>opsForHash().increment(key, hashKey, delta));
+    }
+
+    /**
+     * Get set members
+     *
+     * @param key key
+     * @return set members
+     */
+    public CompletableFuture<Set<Object>> sMembers(String key) {
+        return reactiveRedisTemplate.opsForSet().members(key).collect(Collectors.toSet()).toFuture();
+    }
+
+    /**
+     * Check if value is member of set
+     *
+     * @param key   key
+     * @param value value
+     * @return true if member
+     */
+    public CompletableFuture<Boolean> sIsMember(String key, Object value) {
+        return reactiveRedisTemplate.opsForSet().isMember(key, value).toFuture();
+    }
+
+    /**
+     * Add set members
+     *
+     * @param key    key
+     * @param values values
+     * @return number of added members
+     */
+    public CompletableFuture<Long> sAdd(String key, Object... values) {
+        return reactiveRedisTemplate.opsForSet().add(key, values).toFuture();
+    }
+
+    /**
+     * Add set members with expiration in one atomic round trip
+     *
+     * @param key      key
+     * @param timeout  timeout
+     * @param timeUnit time unit
+     * @param values   values
+     * @return number of added members
+     */
+    public CompletableFuture<Long> sAdd(String key, long timeout, TimeUnit timeUnit, Object... values) {
+        Object[] args = new Object[1 + values.length];
+        args[0] = timeUnit.toMillis(timeout);
+        for (int i = 0; i < values.length; i++) {
+            args[i + 1] = scriptExecutor.value(values[i]);
+        }
+        return executeScript(RedisScripts.SADD_EXPIRE, key, args).toFuture();
+    }
+
+    /**
+     * Get set size
+     *
+     * @param key key
+     * @return set size
+     */
+    public CompletableFuture<Long> sSize(String key) {
+        return reactiveRedisTemplate.opsForSet().size(key).toFuture();
+    }
+
+    /**
+     * Remove set members
+     *
+     * @param key    key
+     * @param values values
+     * @return number of removed members
+     */
+    public CompletableFuture<Long> sRemove(String key, Object... values) {
+        return reactiveRedisTemplate.opsForSet().remove(key, values).toFuture();
+    }
+
+    /**
+     * Get list range
+     *
+     * @param key   key
+     * @param start start index
+     * @param end   end index
+     * @return list range
+     */
+    public CompletableFuture<List<Object>> lRange(String key, long start, long end) {
+        return reactiveRedisTemplate.opsForList().range(key, start, end).collectList().toFuture();
+    }
+
+    /**
+     * Get list size
+     *
+     * @param key key
+     * @return list size
+     */
+    public CompletableFuture<Long> lSize(String key) {
+        return reactiveRedisTemplate.opsForList().size(key).toFuture();
+    }
+
+    /**
+     * Get list element by index
+     *
+     * @param key   key
+     * @param index index
+     * @return element
+     */
+    public CompletableFuture<Object> lIndex(String key, long index) {
+        return reactiveRedisTemplate.opsForList().index(key, index).toFuture();
+    }
+
+    /**
+     * Set list element by index
+     *
+     * @param key   key
+     * @param index index
+     * @param value value
+     * @return true if set
+     */
+    public CompletableFuture<Boolean> lSet(String key, long index, Object value) {
+        return reactiveRedisTemplate.opsForList().set(key, index, value).toFuture();
+    }
+
+    /**
+     * Remove list elements
+     *
+     * @param key   key
+     * @param count count
+     * @param value value
+     * @return number of removed elements
+     */
+    public CompletableFuture<Long> lRemove(String key, long count, Object value) {
+        return reactiveRedisTemplate.opsForList().remove(key, count, value).toFuture();
+    }
+
+    /**
+     * Run a Long-returning script on the reactive connection
+     *
+     * @param script script
+     * @param key    key
+     * @param args   arguments, see {@link RedisScriptExecutor#value(Object)}
+     * @return script result
+     */
+    private Mono<Long> executeScript(RedisScript<Long> script, String key, Object... args) {
+        return reactiveRedisTemplate.execute(script, Collections.singletonList(key), Arrays.asList(args),
+                ARGS_WRITER, LONG_READER).next();
+    }
+
+    private <T> CompletableFuture<T> invalidateAfter(String key, Mono<T> write) {
+        return invalidateAfter(Collections.singletonList(key), write);
+    }
+
+    /**
+     * Drop keys from local caches once the write has completed
+     *
+     * @param keys  keys
+     * @param write write command
+     * @param <T>   result type
+     * @return write result
+     */
+    private <T> CompletableFuture<T> invalidateAfter(Collection<String> keys, Mono<T> write) {
+        if (hotKeyDetector != null) {
+            write = write.doOnSuccess(result -> hotKeyDetector.invalidate(keys));
+        }
+        if (nearCache != null) {
+            // The broadcast is a blocking publish, keep it off the Lettuce event loop
+            write = write.publishOn(Schedulers.boundedElastic()).doOnSuccess(result -> nearCache.invalidate(keys));
+        }
+        return write.toFuture();
+    }
+
+    private static Duration toDuration(long timeout, TimeUnit timeUnit) {
+        return Duration.ofMillis(timeUnit.toMillis(timeout));
+    }
+}
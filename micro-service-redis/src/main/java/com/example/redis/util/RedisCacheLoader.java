@@ -0,0 +1,235 @@
+package com.example.redis.util;
+
+import com.example.redis.bloom.RedisBloomFilter;
+import com.example.redis.cache.CachedValue;
+import com.example.redis.config.MicroRedisProperties;
+import com.example.redis.script.RedisScriptExecutor;
+import com.example.redis.script.RedisScripts;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Read-through loading that keeps a hot key from stampeding the database when it expires.
+ * <ul>
+ *     <li>Within a JVM at most one load per key runs at a time, every caller waits on the same future.</li>
+ *     <li>Across nodes the loading node holds a short Redis lease, other nodes poll for its value.</li>
+ *     <li>Hits refresh the value in the background with a probability that grows towards expiry,
+ *     so a hot key is reloaded before it goes cold.</li>
+ * </ul>
+ * Values are stored wrapped in a {@link CachedValue}, so keys written here should only be read here.
+ */
+@Slf4j
+@Component
+public class RedisCacheLoader {
+
+    private static final String LEASE_SUFFIX = ":lease";
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisScriptExecutor scriptExecutor;
+
+    @Autowired
+    private MicroRedisProperties redisProperties;
+
+    /**
+     * Miss loads; callers join these and expect the loaded value
+     */
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Keys with a background refresh running; kept apart so a miss never joins a refresh that lost the lease
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor refreshExecutor;
+
+    @PostConstruct
+    public void init() {
+        MicroRedisProperties.Loader properties = redisProperties.getLoader();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-refresh-");
+        threadFactory.setDaemon(true);
+        refreshExecutor = new ThreadPoolExecutor(properties.getRefreshThreads(), properties.getRefreshThreads(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(properties.getRefreshQueueCapacity()),
+                threadFactory, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Get value, loading it at most once per key across the cluster on a miss
+     *
+     * @param key      key
+     * @param timeout  timeout
+     * @param timeUnit time unit
+     * @param loader   loads the value on a miss, null results are not cached
+     * @param <T>      value type
+     * @return value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrLoad(String key, long timeout, TimeUnit timeUnit, Supplier<T> loader) {
+        Object cached = redisUtil.get(key);
+        if (cached instanceof CachedValue) {
+            CachedValue value = (CachedValue) cached;
+            if (shouldRefreshEarly(value)) {
+                refreshExecutor.execute(() -> refresh(key, timeout, timeUnit, loader));
+            }
+            return (T) value.getValue();
+        }
+        return (T) join(load(key, timeout, timeUnit, loader));
+    }
+
+    /**
+     * Get value like {@link #getOrLoad(String, long, TimeUnit, Supplier)}, rejecting ids the bloom filter
+     * has never seen without touching redis or the loader
+     *
+     * @param key      key
+     * @param timeout  timeout
+     * @param timeUnit time unit
+     * @param filter   bloom filter of existing ids
+     * @param id       id checked against the filter
+     * @param loader   loads the value on a miss, null results are not cached
+     * @param <T>      value type
+     * @return value, null if the id is known to be absent
+     */
+    public <T> T getOrLoad(String key, long timeout, TimeUnit timeUnit, RedisBloomFilter filter, String id,
+                           Supplier<T> loader) {
+        return filter.guard(id, () -> getOrLoad(key, timeout, timeUnit, loader));
+    }
+
+    /**
+     * XFetch: refresh when now - delta * beta * ln(random) passes the expiry
+     */
+    private boolean shouldRefreshEarly(CachedValue value) {
+        double beta = redisProperties.getLoader().getBeta();
+        if (beta <= 0) {
+            return false;
+        }
+        double gap = -value.getDelta() * beta * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= value.getExpireAt();
+    }
+
+    private CompletableFuture<Object> load(String key, long timeout, TimeUnit timeUnit, Supplier<?> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            future.complete(loadWithLease(key, timeout, timeUnit, loader, false));
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key, future);
+        }
+        return future;
+    }
+
+    private void refresh(String key, long timeout, TimeUnit timeUnit, Supplier<?> loader) {
+        if (inFlight.containsKey(key) || !refreshing.add(key)) {
+            return;
+        }
+        try {
+            loadWithLease(key, timeout, timeUnit, loader, true);
+        } catch (Throwable e) {
+            log.warn("Failed to refresh redis key: {}", key, e);
+        } finally {
+            refreshing.remove(key);
+        }
+    }
+
+    private Object loadWithLease(String key, long timeout, TimeUnit timeUnit, Supplier<?> loader, boolean refresh) {
+        MicroRedisProperties.Loader properties = redisProperties.getLoader();
+        String leaseKey = key + LEASE_SUFFIX;
+        String token = UUID.randomUUID().toString();
+        long leaseMillis = properties.getLeaseTime().toMillis();
+
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(leaseKey, token, leaseMillis, TimeUnit.MILLISECONDS);
+        if (Boolean.TRUE.equals(acquired)) {
+            try {
+                if (!refresh) {
+                    // Another node may have stored the value between our miss and the lease
+                    Object cached = redisUtil.get(key);
+                    if (cached instanceof CachedValue) {
+                        return ((CachedValue) cached).getValue();
+                    }
+                }
+                return loadAndStore(key, timeout, timeUnit, loader);
+            } finally {
+                scriptExecutor.execute(RedisScripts.COMPARE_AND_DELETE, Collections.singletonList(leaseKey),
+                        scriptExecutor.value(token));
+            }
+        }
+        if (refresh) {
+            // Another node is already refreshing
+            return null;
+        }
+
+        // Another node is loading, wait for its value up to the lease time
+        long deadline = System.currentTimeMillis() + leaseMillis;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(properties.getWaitInterval().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            Object cached = redisUtil.get(key);
+            if (cached instanceof CachedValue) {
+                return ((CachedValue) cached).getValue();
+            }
+        }
+        log.warn("Lease holder did not load redis key: {} within {}ms, loading locally", key, leaseMillis);
+        return loadAndStore(key, timeout, timeUnit, loader);
+    }
+
+    private Object loadAndStore(String key, long timeout, TimeUnit timeUnit, Supplier<?> loader) {
+        long start = System.currentTimeMillis();
+        Object value = loader.get();
+        long now = System.currentTimeMillis();
+        if (value != null) {
+            redisUtil.set(key, new CachedValue(value, now - start, now + timeUnit.toMillis(timeout)), timeout, timeUnit);
+        }
+        return value;
+    }
+
+    private static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -1,15 +1,29 @@
 package com.example.redis.util;
 
+import com.example.redis.cache.NearCache;
+import com.example.redis.cluster.SlotAwareExecutor;
+import com.example.redis.config.MicroRedisProperties;
+import com.example.redis.hotkey.HotKeyDetector;
+import com.example.redis.script.RedisScriptExecutor;
+import com.example.redis.script.RedisScripts;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ConvertingCursor;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 @Slf4j
 @Component
@@ -18,6 +32,21 @@ public class RedisUtil {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private MicroRedisProperties redisProperties;
+
+    @Autowired
+    private RedisScriptExecutor scriptExecutor;
+
+    @Autowired
+    private SlotAwareExecutor slotAwareExecutor;
+
+    @Autowired(required = false)
+    private NearCache nearCache;
+
+    @Autowired(required = false)
+    private HotKeyDetector hotKeyDetector;
+
     /**
      * Set key-value
      *
@@ -26,6 +55,7 @@ public class RedisUtil {
      */
     public void set(String key, Object value) {
         redisTemplate.opsForValue().set(key, value);
+        invalidate(key);
     }
 
     /**
@@ -38,6 +68,7 @@ public class RedisUtil {
      */
     public void set(String key, Object value, long timeout, TimeUnit timeUnit) {
         redisTemplate.opsForValue().set(key, value, timeout, timeUnit);
+        invalidate(key);
     }
 
     /**
@@ -47,7 +78,10 @@ public class RedisUtil {
      * @return value
      */
     public Object get(String key) {
-        return redisTemplate.opsForValue().get(key);
+        if (hotKeyDetector != null) {
+            return hotKeyDetector.get(key, () -> readValue(key));
+        }
+        return readValue(key);
     }
 
     /**
@@ -57,17 +91,83 @@ public class RedisUtil {
      * @return true if deleted
      */
     public Boolean delete(String key) {
-        return redisTemplate.delete(key);
+        Boolean deleted = redisTemplate.delete(key);
+        invalidate(key);
+        return deleted;
     }
 
     /**
-     * Delete multiple keys
+     * Delete multiple keys, pipelined per cluster node
      *
      * @param keys keys
      * @return number of deleted keys
      */
     public Long delete(Collection<String> keys) {
-        return redisTemplate.delete(keys);
+        long count = 0;
+        for (Object result : slotAwareExecutor.execute(new ArrayList<>(keys), RedisOperations::delete)) {
+            if (Boolean.TRUE.equals(result) || (result instanceof Number && ((Number) result).longValue() > 0)) {
+                count++;
+            }
+        }
+        invalidate(keys);
+        return count;
+    }
+
+    /**
+     * Iterate keys matching pattern with SCAN, without blocking redis like KEYS does.
+     * The cursor holds a connection until closed, use it in try-with-resources.
+     *
+     * @param pattern   glob-style pattern
+     * @param batchSize COUNT hint per SCAN call
+     * @return key cursor
+     */
+    @SuppressWarnings("unchecked")
+    public Cursor<String> scan(String pattern, int batchSize) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(batchSize).build();
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        return redisTemplate.executeWithStickyConnection(
+                connection -> new ConvertingCursor<>(connection.scan(options), keySerializer::deserialize));
+    }
+
+    /**
+     * Delete keys matching pattern in UNLINK pipelines of scan.batch-size keys,
+     * pausing scan.delete-pause between batches
+     *
+     * @param pattern glob-style pattern
+     * @return number of deleted keys
+     */
+    public long deleteByPattern(String pattern) {
+        MicroRedisProperties.Scan properties = redisProperties.getScan();
+        return deleteByPattern(pattern, properties.getBatchSize(), properties.getDeletePause().toMillis());
+    }
+
+    /**
+     * Delete keys matching pattern in UNLINK pipelines, pausing between batches
+     *
+     * @param pattern     glob-style pattern
+     * @param batchSize   keys per batch
+     * @param pauseMillis pause between batches in millis
+     * @return number of deleted keys
+     */
+    public long deleteByPattern(String pattern, int batchSize, long pauseMillis) {
+        long deleted = 0;
+        List<String> batch = new ArrayList<>(batchSize);
+        try (Cursor<String> cursor = scan(pattern, batchSize)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= batchSize) {
+                    deleted += unlink(batch);
+                    batch.clear();
+                    if (!pause(pauseMillis)) {
+                        return deleted;
+                    }
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleted += unlink(batch);
+        }
+        return deleted;
     }
 
     /**
@@ -110,7 +210,9 @@ public class RedisUtil {
      * @return new value
      */
     public Long increment(String key, long delta) {
-        return redisTemplate.opsForValue().increment(key, delta);
+        Long value = redisTemplate.opsForValue().increment(key, delta);
+        invalidate(key);
+        return value;
     }
 
     /**
@@ -121,7 +223,26 @@ public class RedisUtil {
      * @return new value
      */
     public Long decrement(String key, long delta) {
-        return redisTemplate.opsForValue().decrement(key, delta);
+        Long value = redisTemplate.opsForValue().decrement(key, delta);
+        invalidate(key);
+        return value;
+    }
+
+    /**
+     * Set value only if the current value equals the expected one
+     *
+     * @param key      key
+     * @param expect   expected value
+     * @param update   new value
+     * @param timeout  timeout, 0 for no expiration
+     * @param timeUnit time unit
+     * @return true if swapped
+     */
+    public Boolean compareAndSet(String key, Object expect, Object update, long timeout, TimeUnit timeUnit) {
+        Long swapped = scriptExecutor.execute(RedisScripts.COMPARE_AND_SET, Collections.singletonList(key),
+                scriptExecutor.value(expect), scriptExecutor.value(update), timeUnit.toMillis(timeout));
+        invalidate(key);
+        return swapped != null && swapped == 1L;
     }
 
     /**
@@ -132,7 +253,10 @@ public class RedisUtil {
      * @return hash value
      */
     public Object hGet(String key, String hashKey) {
-        return redisTemplate.opsForHash().get(key, hashKey);
+        if (hotKeyDetector != null) {
+            return hotKeyDetector.hGet(key, hashKey, () -> readHashValue(key, hashKey));
+        }
+        return readHashValue(key, hashKey);
     }
 
     /**
@@ -144,10 +268,11 @@ public class RedisUtil {
      */
     public void hSet(String key, String hashKey, Object value) {
         redisTemplate.opsForHash().put(key, hashKey, value);
+        invalidate(key);
     }
 
     /**
-     * Set hash value with expiration
+     * Set hash value with expiration in one atomic round trip
      *
      * @param key      key
      * @param hashKey  hash key
@@ -156,8 +281,9 @@ public class RedisUtil {
      * @param timeUnit time unit
      */
     public void hSet(String key, String hashKey, Object value, long timeout, TimeUnit timeUnit) {
-        redisTemplate.opsForHash().put(key, hashKey, value);
-        redisTemplate.expire(key, timeout, timeUnit);
+        scriptExecutor.execute(RedisScripts.HSET_EXPIRE, Collections.singletonList(key),
+                timeUnit.toMillis(timeout), hashKey, scriptExecutor.hashValue(value));
+        invalidate(key);
     }
 
     /**
@@ -178,10 +304,11 @@ public class RedisUtil {
      */
     public void hSetAll(String key, Map<String, Object> map) {
         redisTemplate.opsForHash().putAll(key, map);
+        invalidate(key);
     }
 
     /**
-     * Set multiple hash entries with expiration
+     * Set multiple hash entries with expiration in one atomic round trip
      *
      * @param key      key
      * @param map      entries
@@ -189,8 +316,15 @@ public class RedisUtil {
      * @param timeUnit time unit
      */
     public void hSetAll(String key, Map<String, Object> map, long timeout, TimeUnit timeUnit) {
-        redisTemplate.opsForHash().putAll(key, map);
-        redisTemplate.expire(key, timeout, timeUnit);
+        Object[] args = new Object[1 + map.size() * 2];
+        args[0] = timeUnit.toMillis(timeout);
+        int i = 1;
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            args[i++] = entry.getKey();
+            args[i++] = scriptExecutor.hashValue(entry.getValue());
+        }
+        scriptExecutor.execute(RedisScripts.HSET_EXPIRE, Collections.singletonList(key), args);
+        invalidate(key);
     }
 
     /**
@@ -201,7 +335,22 @@ public class RedisUtil {
      * @return number of deleted entries
      */
     public Long hDelete(String key, Object... hashKeys) {
-        return redisTemplate.opsForHash().delete(key, hashKeys);
+        Long count = redisTemplate.opsForHash().delete(key, hashKeys);
+        invalidate(key);
+        return count;
+    }
+
+    /**
+     * Iterate hash entries with HSCAN.
+     * The cursor holds a connection until closed, use it in try-with-resources.
+     *
+     * @param key       key
+     * @param pattern   glob-style pattern on hash keys
+     * @param batchSize COUNT hint per HSCAN call
+     * @return entry cursor
+     */
+    public Cursor<Map.Entry<Object, Object>> hScan(String key, String pattern, int batchSize) {
+        return redisTemplate.opsForHash().scan(key, ScanOptions.scanOptions().match(pattern).count(batchSize).build());
     }
 
     /**
@@ -224,7 +373,9 @@ public class RedisUtil {
      * @return new value
      */
     public Long hIncrement(String key, String hashKey, long delta) {
-        return redisTemplate.opsForHash().increment(key, hashKey, delta);
+        Long value = redisTemplate.opsForHash().increment(key, hashKey, delta);
+        invalidate(key);
+        return value;
     }
 
     /**
@@ -236,7 +387,9 @@ public class RedisUtil {
      * @return new value
      */
     public Long hDecrement(String key, String hashKey, long delta) {
-        return redisTemplate.opsForHash().increment(key, hashKey, -delta);
+        Long value = redisTemplate.opsForHash().increment(key, hashKey, -delta);
+        invalidate(key);
+        return value;
     }
 
     /**
@@ -272,7 +425,7 @@ public class RedisUtil {
     }
 
     /**
-     * Add set members with expiration
+     * Add set members with expiration in one atomic round trip
      *
      * @param key      key
      * @param timeout  timeout
@@ -281,9 +434,25 @@ public class RedisUtil {
      * @return number of added members
      */
     public Long sAdd(String key, long timeout, TimeUnit timeUnit, Object... values) {
-        Long count = redisTemplate.opsForSet().add(key, values);
-        redisTemplate.expire(key, timeout, timeUnit);
-        return count;
+        Object[] args = new Object[1 + values.length];
+        args[0] = timeUnit.toMillis(timeout);
+        for (int i = 0; i < values.length; i++) {
+            args[i + 1] = scriptExecutor.value(values[i]);
+        }
+        return scriptExecutor.execute(RedisScripts.SADD_EXPIRE, Collections.singletonList(key), args);
+    }
+
+    /**
+     * Iterate set members with SSCAN.
+     * The cursor holds a connection until closed, use it in try-with-resources.
+     *
+     * @param key       key
+     * @param pattern   glob-style pattern
+     * @param batchSize COUNT hint per SSCAN call
+     * @return member cursor
+     */
+    public Cursor<Object> sScan(String key, String pattern, int batchSize) {
+        return redisTemplate.opsForSet().scan(key, ScanOptions.scanOptions().match(pattern).count(batchSize).build());
     }
 
     /**
@@ -351,6 +520,26 @@ public class RedisUtil {
         redisTemplate.opsForList().set(key, index, value);
     }
 
+    /**
+     * Push list elements to the head and trim the list to a maximum size in one atomic round trip
+     *
+     * @param key      key
+     * @param maxSize  maximum list size
+     * @param timeout  timeout, 0 for no expiration
+     * @param timeUnit time unit
+     * @param values   values
+     * @return list size after trimming
+     */
+    public Long lPushCapped(String key, long maxSize, long timeout, TimeUnit timeUnit, Object... values) {
+        Object[] args = new Object[2 + values.length];
+        args[0] = maxSize;
+        args[1] = timeUnit.toMillis(timeout);
+        for (int i = 0; i < values.length; i++) {
+            args[i + 2] = scriptExecutor.value(values[i]);
+        }
+        return scriptExecutor.execute(RedisScripts.CAPPED_LIST_PUSH, Collections.singletonList(key), args);
+    }
+
     /**
      * Remove list elements
      *
@@ -362,4 +551,175 @@ public class RedisUtil {
     public Long lRemove(String key, long count, Object value) {
         return redisTemplate.opsForList().remove(key, count, value);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Get multiple values in pipelined batches
+     *
+     * @param keys keys
+     * @return values in key order, null for missing keys
+     */
+    public List<Object> mGet(List<String> keys) {
+        return executePipelined(keys, (operations, key) -> operations.opsForValue().get(key));
+    }
+
+    /**
+     * Set multiple key-values in pipelined batches
+     *
+     * @param map key-values
+     */
+    public void mSet(Map<String, Object> map) {
+        slotAwareExecutor.execute(new ArrayList<>(map.entrySet()), Map.Entry::getKey,
+                (operations, entry) -> operations.opsForValue().set(entry.getKey(), entry.getValue()));
+        invalidate(map.keySet());
+    }
+
+    /**
+     * Set multiple key-values with expiration in pipelined batches
+     *
+     * @param map      key-values
+     * @param timeout  timeout
+     * @param timeUnit time unit
+     */
+    public void mSet(Map<String, Object> map, long timeout, TimeUnit timeUnit) {
+        slotAwareExecutor.execute(new ArrayList<>(map.entrySet()), Map.Entry::getKey,
+                (operations, entry) -> operations.opsForValue().set(entry.getKey(), entry.getValue(), timeout, timeUnit));
+        invalidate(map.keySet());
+    }
+
+    /**
+     * Get all entries of multiple hashes in pipelined batches
+     *
+     * @param keys keys
+     * @return hash entries in key order, empty for missing keys
+     */
+    @SuppressWarnings("unchecked")
+    public List<Map<Object, Object>> mHGetAll(List<String> keys) {
+        List<Object> results = executePipelined(keys, (operations, key) -> operations.opsForHash().entries(key));
+        List<Map<Object, Object>> entries = new ArrayList<>(results.size());
+        for (Object result : results) {
+            entries.add((Map<Object, Object>) result);
+        }
+        return entries;
+    }
+
+    /**
+     * Set expiration of multiple keys in pipelined batches
+     *
+     * @param keys     keys
+     * @param timeout  timeout
+     * @param timeUnit time unit
+     * @return true if set, in key order
+     */
+    public List<Boolean> mExpire(List<String> keys, long timeout, TimeUnit timeUnit) {
+        List<Object> results = executePipelined(keys, (operations, key) -> operations.expire(key, timeout, timeUnit));
+        List<Boolean> expired = new ArrayList<>(results.size());
+        for (Object result : results) {
+            expired.add((Boolean) result);
+        }
+        return expired;
+    }
+
+    /**
+     * Run one command per key, at most pipeline.batch-size commands per round trip and per cluster node
+     *
+     * @param keys    keys
+     * @param command command issued for each key
+     * @return command results in key order
+     */
+    private List<Object> executePipelined(List<String> keys, BiConsumer<RedisOperations<String, Object>, String> command) {
+        return slotAwareExecutor.execute(keys, command);
+    }
+
+    /**
+     * UNLINK keys in one pipeline, one command per key so keys may span cluster slots
+     *
+     * @param keys keys
+     * @return number of unlinked keys
+     */
+    private long unlink(List<String> keys) {
+        long count = 0;
+        for (Object result : executePipelined(keys, RedisOperations::unlink)) {
+            if (result instanceof Number) {
+                count += ((Number) result).longValue();
+            } else if (Boolean.TRUE.equals(result)) {
+                count++;
+            }
+        }
+        invalidate(keys);
+        return count;
+    }
+
+    /**
+     * Sleep between batches
+     *
+     * @param millis pause in millis
+     * @return false if interrupted
+     */
+    private static boolean pause(long millis) {
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Read value through the near cache when enabled
+     *
+     * @param key key
+     * @return value
+     */
+    private Object readValue(String key) {
+        if (nearCache != null) {
+            return nearCache.get(key, () -> redisTemplate.opsForValue().get(key));
+        }
+        return redisTemplate.opsForValue().get(key);
+    }
+
+    /**
+     * Read hash value through the near cache when enabled
+     *
+     * @param key     key
+     * @param hashKey hash key
+     * @return hash value
+     */
+    private Object readHashValue(String key, String hashKey) {
+        if (nearCache != null) {
+            return nearCache.hGet(key, hashKey, () -> redisTemplate.opsForHash().get(key, hashKey));
+        }
+        return redisTemplate.opsForHash().get(key, hashKey);
+    }
+
+    /**
+     * Drop keys from the near cache on every node and from local hot-key copies
+     *
+     * @param keys keys
+     */
+    private void invalidate(Collection<String> keys) {
+        if (nearCache != null) {
+            nearCache.invalidate(keys);
+        }
+        if (hotKeyDetector != null) {
+            hotKeyDetector.invalidate(keys);
+        }
+    }
+
+    /**
+     * Drop key from the near cache on every node and from local hot-key copies
+     *
+     * @param key key
+     */
+    private void invalidate(String key) {
+        if (nearCache != null) {
+            nearCache.invalidate(key);
+        }
+        if (hotKeyDetector != null) {
+            hotKeyDetector.invalidate(key);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.redis.cache;
+
+import com.example.redis.config.MicroRedisProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class NearCacheTest {
+
+    private static final String CHANNEL = "micro:near-cache:invalidate";
+
+    private RedisConnection connection;
+
+    private NearCache nearCache;
+
+    @BeforeEach
+    void setUp() {
+        connection = mock(RedisConnection.class);
+        nearCache = new NearCache(new StubTemplate(connection), new MicroRedisProperties.NearCache());
+    }
+
+    @Test
+    void loadedValueIsServedLocally() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(nearCache.get("k", () -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+        assertThat(nearCache.get("k", () -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(nearCache.getStats().getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidateDropsLocalEntryAndBroadcastsKey() {
+        nearCache.get("k", () -> "old");
+        nearCache.hGet("k", "field", () -> "old");
+
+        nearCache.invalidate("k");
+
+        assertThat(nearCache.get("k", () -> "new")).isEqualTo("new");
+        assertThat(nearCache.hGet("k", "field", () -> "new")).isEqualTo("new");
+        assertThat(published()).isEqualTo("k");
+    }
+
+    @Test
+    void multiKeyInvalidationIsOneMessage() {
+        nearCache.get("a", () -> "old");
+        nearCache.get("b", () -> "old");
+
+        nearCache.invalidate(Arrays.asList("a", "b"));
+
+        assertThat(nearCache.get("a", () -> "new")).isEqualTo("new");
+        assertThat(nearCache.get("b", () -> "new")).isEqualTo("new");
+        assertThat(published()).isEqualTo("a\nb");
+    }
+
+    @Test
+    void invalidationFromAnotherNodeDropsEveryKeyOfTheMessage() {
+        nearCache.get("a", () -> "old");
+        nearCache.get("b", () -> "old");
+        nearCache.get("c", () -> "old");
+
+        nearCache.onMessage(new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "a\nb".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertThat(nearCache.get("a", () -> "new")).isEqualTo("new");
+        assertThat(nearCache.get("b", () -> "new")).isEqualTo("new");
+        assertThat(nearCache.get("c", () -> "new")).isEqualTo("old");
+        // Received invalidations are not broadcast again
+        verify(connection, never()).publish(any(), any());
+    }
+
+    @Test
+    void loadRacingWithInvalidationIsNotCached() {
+        Object loaded = nearCache.get("k", () -> {
+            nearCache.invalidateLocal("k");
+            return "stale";
+        });
+
+        assertThat(loaded).isEqualTo("stale");
+        assertThat(nearCache.get("k", () -> "fresh")).isEqualTo("fresh");
+    }
+
+    @Test
+    void failedBroadcastStillDropsLocalEntry() {
+        NearCache cache = new NearCache(new StubTemplate(null), new MicroRedisProperties.NearCache());
+        cache.get("k", () -> "old");
+
+        cache.invalidate("k");
+
+        assertThat(cache.get("k", () -> "new")).isEqualTo("new");
+    }
+
+    private String published() {
+        ArgumentCaptor<byte[]> channel = ArgumentCaptor.forClass(byte[].class);
+        ArgumentCaptor<byte[]> message = ArgumentCaptor.forClass(byte[].class);
+        verify(connection).publish(channel.capture(), message.capture());
+        assertThat(new String(channel.getValue(), StandardCharsets.UTF_8)).isEqualTo(CHANNEL);
+        return new String(message.getValue(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs callbacks against the given connection, or fails like an unreachable server when it is null
+     */
+    private static final class StubTemplate extends RedisTemplate<String, Object> {
+        private final RedisConnection connection;
+
+        private StubTemplate(RedisConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public <T> T execute(RedisCallback<T> action) {
+            if (connection == null) {
+                throw new IllegalStateException("Redis is down");
+            }
+            return action.doInRedis(connection);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.redis.cluster;
+
+import com.example.redis.config.MicroRedisProperties;
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SlotAwareExecutorTest {
+
+    private static final RedisClusterNode LOW = node("low", 7000);
+    private static final RedisClusterNode HIGH = node("high", 7001);
+
+    /**
+     * Keys the current pipeline was asked to run
+     */
+    private static final ThreadLocal<List<String>> PIPELINE = new ThreadLocal<>();
+
+    private SlotAwareExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.destroy();
+        }
+    }
+
+    @Test
+    void clusterPipelinesNeverCrossNodes() {
+        RecordingTemplate template = new RecordingTemplate(clusterFactory());
+        executor = executor(template, 3);
+        List<String> keys = Arrays.asList("foo", "bar", "{user1}.a", "{user1}.b", "{user1}.c", "{user1}.d",
+                "baz", "qux", "k1", "k2");
+
+        executor.execute(keys, (operations, key) -> PIPELINE.get().add(key));
+
+        assertThat(template.pipelines.stream().mapToInt(List::size).sum()).isEqualTo(keys.size());
+        for (List<String> pipeline : template.pipelines) {
+            assertThat(pipeline).hasSizeLessThanOrEqualTo(3);
+            assertThat(pipeline.stream().map(SlotAwareExecutorTest::nodeOf).distinct()).hasSize(1);
+        }
+    }
+
+    @Test
+    void keysAreGroupedByCrc16Slot() {
+        // CLUSTER KEYSLOT: foo is 12182, bar is 5061
+        assertThat(SlotHash.getSlot("foo")).isEqualTo(12182);
+        assertThat(SlotHash.getSlot("bar")).isEqualTo(5061);
+        RecordingTemplate template = new RecordingTemplate(clusterFactory());
+        executor = executor(template, 200);
+
+        executor.execute(Arrays.asList("foo", "bar", "{bar}.x", "{foo}.y"), (operations, key) -> PIPELINE.get().add(key));
+
+        assertThat(template.pipelines).containsExactlyInAnyOrder(
+                Arrays.asList("foo", "{foo}.y"), Arrays.asList("bar", "{bar}.x"));
+    }
+
+    @Test
+    void resultsComeBackInItemOrder() {
+        RecordingTemplate template = new RecordingTemplate(clusterFactory());
+        executor = executor(template, 2);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            keys.add("key:" + i);
+        }
+
+        List<Object> results = executor.execute(keys, (operations, key) -> PIPELINE.get().add(key));
+
+        assertThat(results).isEqualTo(keys.stream().map(key -> key + "=value").collect(Collectors.toList()));
+    }
+
+    @Test
+    void standaloneOnlySplitsByBatchSize() {
+        LettuceConnectionFactory factory = mock(LettuceConnectionFactory.class);
+        when(factory.isClusterAware()).thenReturn(false);
+        RecordingTemplate template = new RecordingTemplate(factory);
+        executor = executor(template, 2);
+
+        executor.execute(Arrays.asList("foo", "bar", "baz"), (operations, key) -> PIPELINE.get().add(key));
+
+        assertThat(template.pipelines).containsExactlyInAnyOrder(Arrays.asList("foo", "bar"),
+                Collections.singletonList("baz"));
+        verify(factory, never()).getClusterConnection();
+    }
+
+    private static SlotAwareExecutor executor(RedisTemplate<String, Object> template, int batchSize) {
+        MicroRedisProperties properties = new MicroRedisProperties();
+        properties.getPipeline().setBatchSize(batchSize);
+        SlotAwareExecutor executor = new SlotAwareExecutor();
+        ReflectionTestUtils.setField(executor, "redisTemplate", template);
+        ReflectionTestUtils.setField(executor, "redisProperties", properties);
+        executor.init();
+        return executor;
+    }
+
+    /**
+     * Two masters splitting the slot range in half
+     */
+    private static LettuceConnectionFactory clusterFactory() {
+        RedisClusterConnection connection = mock(RedisClusterConnection.class);
+        when(connection.clusterGetNodeForSlot(anyInt())).thenAnswer(invocation -> nodeOfSlot(invocation.getArgument(0)));
+        LettuceConnectionFactory factory = mock(LettuceConnectionFactory.class);
+        when(factory.isClusterAware()).thenReturn(true);
+        when(factory.getClusterConnection()).thenReturn(connection);
+        return factory;
+    }
+
+    private static RedisClusterNode nodeOf(String key) {
+        return nodeOfSlot(SlotHash.getSlot(key));
+    }
+
+    private static RedisClusterNode nodeOfSlot(int slot) {
+        return slot < SlotHash.SLOT_COUNT / 2 ? LOW : HIGH;
+    }
+
+    private static RedisClusterNode node(String id, int port) {
+        return RedisClusterNode.newRedisClusterNode().listeningAt("127.0.0.1", port).withId(id).build();
+    }
+
+    /**
+     * Records the keys of every pipeline and answers each command with key=value
+     */
+    private static final class RecordingTemplate extends RedisTemplate<String, Object> {
+        private final List<List<String>> pipelines = Collections.synchronizedList(new ArrayList<>());
+
+        private RecordingTemplate(LettuceConnectionFactory connectionFactory) {
+            setConnectionFactory(connectionFactory);
+        }
+
+        @Override
+        public List<Object> executePipelined(SessionCallback<?> session) {
+            List<String> keys = new ArrayList<>();
+            PIPELINE.set(keys);
+            try {
+                session.execute(this);
+            } finally {
+                PIPELINE.remove();
+            }
+            pipelines.add(keys);
+            return keys.stream().map(key -> key + "=value").collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.redis.ratelimit;
+
+import com.example.redis.config.MicroRedisProperties;
+import com.example.redis.script.RedisScriptExecutor;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisRateLimiterTest {
+
+    private static final String RULE = "api";
+    private static final int NODES = 4;
+    private static final long PERMITS = 1000;
+    private static final Duration PERIOD = Duration.ofMillis(200);
+
+    @Test
+    void nodesNeverSpendMoreThanRedisGrantsUnderConcurrentLoad() throws Exception {
+        FakeRedis redis = new FakeRedis();
+        Load load = run(nodes(redis), 16, Duration.ofSeconds(1));
+
+        assertThat(load.accepted.sum()).isLessThanOrEqualTo(redis.granted.get());
+        assertThat(redis.granted.get()).isLessThanOrEqualTo(PERMITS * redis.grantsByWindow.size());
+        // Saturated nodes spend their leases at once, at most a batch per node and window is stranded
+        long batch = PERMITS / NODES / 10;
+        assertThat(load.accepted.sum())
+                .isGreaterThanOrEqualTo(redis.granted.get() - NODES * batch * redis.grantsByWindow.size());
+    }
+
+    @Test
+    void mostDecisionsStayInTheJvm() throws Exception {
+        FakeRedis redis = new FakeRedis();
+        Load load = run(nodes(redis), 16, Duration.ofSeconds(1));
+
+        assertThat(load.attempts.sum()).isGreaterThan(0);
+        assertThat(redis.calls.get() * 10).isLessThan(load.attempts.sum());
+    }
+
+    @Test
+    void explicitBatchSizeIsLeasedAsConfigured() {
+        FakeRedis redis = new FakeRedis();
+        MicroRedisProperties properties = properties();
+        properties.getRateLimiter().getRules().get(RULE).setBatchSize(50);
+        RedisRateLimiter limiter = limiter(redis, properties);
+
+        for (int i = 0; i < 50; i++) {
+            assertThat(limiter.tryAcquire(RULE, "tenant")).isTrue();
+        }
+        assertThat(redis.calls.get()).isEqualTo(1);
+    }
+
+    private static Load run(List<RedisRateLimiter> nodes, int threadsPerNode, Duration duration) throws Exception {
+        Load load = new Load();
+        ExecutorService pool = Executors.newFixedThreadPool(nodes.size() * threadsPerNode);
+        CountDownLatch start = new CountDownLatch(1);
+        long end = System.nanoTime() + duration.toNanos();
+        try {
+            for (RedisRateLimiter node : nodes) {
+                for (int t = 0; t < threadsPerNode; t++) {
+                    pool.execute(() -> {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        while (System.nanoTime() < end) {
+                            load.attempts.increment();
+                            if (node.tryAcquire(RULE, "tenant")) {
+                                load.accepted.increment();
+                            }
+                        }
+                    });
+                }
+            }
+            start.countDown();
+        } finally {
+            pool.shutdown();
+        }
+        assertThat(pool.awaitTermination(duration.toMillis() + 5000, TimeUnit.MILLISECONDS)).isTrue();
+        return load;
+    }
+
+    private static List<RedisRateLimiter> nodes(FakeRedis redis) {
+        List<RedisRateLimiter> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            nodes.add(limiter(redis, properties()));
+        }
+        return nodes;
+    }
+
+    private static RedisRateLimiter limiter(FakeRedis redis, MicroRedisProperties properties) {
+        RedisRateLimiter limiter = new RedisRateLimiter();
+        ReflectionTestUtils.setField(limiter, "scriptExecutor", redis);
+        ReflectionTestUtils.setField(limiter, "redisProperties", properties);
+        limiter.init();
+        return limiter;
+    }
+
+    private static MicroRedisProperties properties() {
+        MicroRedisProperties properties = new MicroRedisProperties();
+        MicroRedisProperties.RateLimiter rateLimiter = properties.getRateLimiter();
+        rateLimiter.setNodes(NODES);
+        rateLimiter.setLeaseTime(PERIOD);
+        MicroRedisProperties.RateLimiter.Rule rule = new MicroRedisProperties.RateLimiter.Rule();
+        rule.setPermits(PERMITS);
+        rule.setPeriod(PERIOD);
+        rateLimiter.getRules().put(RULE, rule);
+        return properties;
+    }
+
+    private static final class Load {
+        final LongAdder attempts = new LongAdder();
+        final LongAdder accepted = new LongAdder();
+    }
+
+    /**
+     * Stand-in for the limiter scripts: a fixed window of permits per period, shared by all nodes
+     */
+    private static final class FakeRedis extends RedisScriptExecutor {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong granted = new AtomicLong();
+        final Map<Long, Long> grantsByWindow = new ConcurrentHashMap<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            calls.incrementAndGet();
+            long permits = ((Number) args[0]).longValue();
+            long period = ((Number) args[1]).longValue();
+            long requested = ((Number) args[args.length - 1]).longValue();
+            long window = System.currentTimeMillis() / period;
+            long used = grantsByWindow.getOrDefault(window, 0L);
+            long grant = Math.max(0, Math.min(requested, permits - used));
+            grantsByWindow.put(window, used + grant);
+            granted.addAndGet(grant);
+            return (T) Long.valueOf(grant);
+        }
+    }
+}
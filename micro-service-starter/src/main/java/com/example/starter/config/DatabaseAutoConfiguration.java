@@ -1,16 +1,65 @@
 package com.example.starter.config;
 
+import com.example.database.batch.BatchWriter;
 import com.example.database.config.DynamicDataSourceConfig;
+import com.example.database.config.IdGeneratorConfig;
 import com.example.database.config.MybatisPlusConfig;
+import com.example.database.config.QueryCacheConfig;
+import com.example.database.config.ReadWriteRoutingConfig;
+import com.example.database.config.ShardingConfig;
+import com.example.database.config.SqlProfilerConfig;
+import com.example.database.config.TenantRoutingConfig;
+import com.example.database.config.WriteBehindConfig;
+import com.example.database.routing.ReadWriteContext;
+import com.example.database.stream.StreamQuery;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.Ordered;
+
+import javax.servlet.Filter;
 
 @Configuration
 @ConditionalOnProperty(prefix = "micro.service", name = "database.enabled", havingValue = "true")
 @Import({
+    TenantRoutingConfig.class,
     DynamicDataSourceConfig.class,
-    MybatisPlusConfig.class
+    MybatisPlusConfig.class,
+    IdGeneratorConfig.class,
+    ReadWriteRoutingConfig.class,
+    QueryCacheConfig.class,
+    SqlProfilerConfig.class,
+    ShardingConfig.class,
+    WriteBehindConfig.class,
+    BatchWriter.class,
+    StreamQuery.class
 })
 public class DatabaseAutoConfiguration {
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnProperty(prefix = "micro.service.database", name = "read-write.enabled", havingValue = "true")
+    static class ReadWriteContextWebConfig {
+
+        /**
+         * Reads stick to the primary after a write of the same request only, not of an earlier
+         * request served by the same pooled thread
+         */
+        @Bean
+        public FilterRegistrationBean<Filter> readWriteContextFilter() {
+            FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>((request, response, chain) -> {
+                ReadWriteContext.clear();
+                try {
+                    chain.doFilter(request, response);
+                } finally {
+                    ReadWriteContext.clear();
+                }
+            });
+            registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+            return registration;
+        }
+    }
 } 
\ No newline at end of file
@@ -1,7 +1,12 @@
 package com.example.starter.config;
 
+import com.example.mq.config.OutboxConfig;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 
 @Configuration
+@Import({
+    OutboxConfig.class
+})
 public class MQAutoConfiguration {
 } 
\ No newline at end of file
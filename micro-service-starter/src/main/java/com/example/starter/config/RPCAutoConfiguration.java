@@ -1,9 +1,12 @@
 package com.example.starter.config;
 
+import com.example.database.tenant.TenantResolver;
 import com.example.rpc.config.DubboConfig;
 import com.example.rpc.config.FeignConfig;
+import com.example.rpc.util.RpcContextUtil;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
@@ -15,4 +18,12 @@ import org.springframework.context.annotation.Import;
     FeignConfig.class
 })
 public class RPCAutoConfiguration {
+
+    /**
+     * Route database connections by the tenantId attachment of the RPC context
+     */
+    @Bean
+    public TenantResolver rpcTenantResolver() {
+        return RpcContextUtil::getTenantId;
+    }
 } 
\ No newline at end of file
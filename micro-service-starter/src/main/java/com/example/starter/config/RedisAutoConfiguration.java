@@ -1,6 +1,17 @@
 package com.example.starter.config;
 
+import com.example.redis.cluster.SlotAwareExecutor;
+import com.example.redis.config.BloomFilterConfig;
+import com.example.redis.counter.RedisShardedCounter;
+import com.example.redis.config.HotKeyConfig;
+import com.example.redis.config.NearCacheConfig;
+import com.example.redis.config.RedisClusterConfig;
 import com.example.redis.config.RedisConfig;
+import com.example.redis.config.RedisMetricsConfig;
+import com.example.redis.ratelimit.RedisRateLimiter;
+import com.example.redis.script.RedisScriptExecutor;
+import com.example.redis.util.AsyncRedisUtil;
+import com.example.redis.util.RedisCacheLoader;
 import com.example.redis.util.RedisUtil;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
@@ -10,7 +21,18 @@ import org.springframework.context.annotation.Import;
 @ConditionalOnProperty(prefix = "micro.service", name = "redis.enabled", havingValue = "true")
 @Import({
     RedisConfig.class,
-    RedisUtil.class
+    RedisMetricsConfig.class,
+    RedisClusterConfig.class,
+    NearCacheConfig.class,
+    HotKeyConfig.class,
+    BloomFilterConfig.class,
+    RedisScriptExecutor.class,
+    SlotAwareExecutor.class,
+    RedisUtil.class,
+    AsyncRedisUtil.class,
+    RedisCacheLoader.class,
+    RedisRateLimiter.class,
+    RedisShardedCounter.class
 })
 public class RedisAutoConfiguration {
 } 
\ No newline at end of file
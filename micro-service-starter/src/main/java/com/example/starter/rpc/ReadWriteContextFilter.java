@@ -0,0 +1,49 @@
+package com.example.starter.rpc;
+
+import com.example.database.routing.ReadWriteContext;
+import org.apache.dubbo.common.constants.CommonConstants;
+import org.apache.dubbo.common.extension.Activate;
+import org.apache.dubbo.rpc.Filter;
+import org.apache.dubbo.rpc.Invocation;
+import org.apache.dubbo.rpc.Invoker;
+import org.apache.dubbo.rpc.Result;
+import org.apache.dubbo.rpc.RpcException;
+import org.springframework.util.StringUtils;
+
+/**
+ * Carries the caller's last write over Dubbo calls, so a provider reading what the consumer just
+ * wrote stays on the primary too. Providers run each call with the caller's mark only, and give the
+ * pooled thread its own mark back afterwards.
+ */
+@Activate(group = {CommonConstants.CONSUMER, CommonConstants.PROVIDER})
+public class ReadWriteContextFilter implements Filter {
+
+    /**
+     * Nanoseconds since the consumer last wrote
+     */
+    private static final String LAST_WRITE_AGE = "lastWriteAge";
+
+    @Override
+    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+        if (CommonConstants.CONSUMER_SIDE.equals(invoker.getUrl().getParameter(CommonConstants.SIDE_KEY))) {
+            long age = ReadWriteContext.sinceLastWrite();
+            if (age >= 0) {
+                invocation.setAttachment(LAST_WRITE_AGE, String.valueOf(age));
+            }
+            return invoker.invoke(invocation);
+        }
+        return ReadWriteContext.call(lastWrite(invocation.getAttachment(LAST_WRITE_AGE)),
+                () -> invoker.invoke(invocation));
+    }
+
+    private static Long lastWrite(String age) {
+        if (!StringUtils.hasText(age)) {
+            return null;
+        }
+        try {
+            return System.nanoTime() - Math.max(0, Long.parseLong(age));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}